@@ -3,6 +3,9 @@ package ENSDF_data;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import averagingAlgorithms.*;
@@ -91,17 +94,19 @@ public class ENSDFDataset {
         this.Gammas = new ArrayList<>();
         this.Lines = null;
         
-        List<String> parentFinalPairs = new ArrayList<>();
+        Map<String, gamma> parentFinalPairs = new HashMap<>();
         String parentFinalPairString;
         
         gamma[] oldGammas = data.getGammas();
         level[] oldLevels = data.getLevelsWithGammas();
         String[] oldSources = data.getSources();
+        Map<level, Integer> levelIndex = indexLevels(oldLevels);
+        Map<level, Integer> firstLevelIndex = indexLevels(oldLevels, true);
+        Map<String, List<gamma>> gammasBySource = groupBySource(oldGammas);
         
         List<gammaEquivalenceClass> tmp;
         boolean hasNonAdopted;
-        int i, j, k, count, parentIndex, finalIndex;
-        String s;
+        int i, k, count, parentIndex, finalIndex;
         gamma g,newg;
         level p, f;
         
@@ -115,41 +120,41 @@ public class ENSDFDataset {
         parentIndex = 0;
         finalIndex = 0;
         //parse in same order as to make Eg column vector (see GAMUT_Algorithms)
-        for(i=0; i<oldSources.length; i++){
-            s = oldSources[i];
-            for(j=0; j<oldGammas.length; j++){
-                g = oldGammas[j];
+        for(String s : oldSources){
+            for(gamma gam : getSourceGroup(gammasBySource, s)){
+                g = gam;
                 if(g.getCMEnergy().toDouble() <= 0.0d){
                     continue; //skip gammas with no energy since they did not
                               //contribuate to the energy fitting
                 }
-                if(g.getSource().equals(s)){
-                    p = g.getParent();
-                    f = g.getFinalLevel();
-                    if(p == null || f == null){ 
-                        continue;
-                    }
-                    for(k=0; k<oldLevels.length; k++){ //loop over levels to find parent/final indecies
-                        if(p.equals(oldLevels[k])){
-                            parentIndex = k;
-                        }else if(f.equals(oldLevels[k])){
-                            finalIndex = k;
-                        }
-                    }
-                    parentFinalPairString = String.valueOf(parentIndex) + " " +
-                            String.valueOf(finalIndex);
-                    //only add each gamma ray (i.e. transition between this pair of levels) once
-                    if(!parentFinalPairs.contains(parentFinalPairString)){
-                        parentFinalPairs.add(parentFinalPairString);
-                        newg = new gamma(new ENSDFGammaRecord(g.getGammaRecord().toString()), "GAMUT RESULT");
-                        newg.setNumericEnergy(Eg.get(count, 0) - newg.recoilCorrection(), dEg.get(count, 0));
-                        newg.setIg(""); //intensity is blank by default
-                        newg.setDIg("");
-                        this.addGamma(newg, this.Levels.get(parentIndex));
-                        this.getLastGamma().setFinalLevel(Levels.get(finalIndex));
-                    }
-                    count += 1;
+                p = g.getParent();
+                f = g.getFinalLevel();
+                if(p == null || f == null){ 
+                    continue;
+                }
+                k = getLevelIndex(levelIndex, oldLevels, p);
+                if(k >= 0){
+                    parentIndex = k;
+                }
+                //a final level equal to the parent level is never matched,
+                //as in createPlacementMatrix
+                k = getLevelIndex(levelIndex, oldLevels, f);
+                if(k >= 0 && !p.equals(f)){
+                    finalIndex = k;
+                }
+                parentFinalPairString = String.valueOf(parentIndex) + " " +
+                        String.valueOf(finalIndex);
+                //only add each gamma ray (i.e. transition between this pair of levels) once
+                if(!parentFinalPairs.containsKey(parentFinalPairString)){
+                    newg = new gamma(new ENSDFGammaRecord(g.getGammaRecord().toString()), "GAMUT RESULT");
+                    newg.setNumericEnergy(Eg.get(count, 0) - newg.recoilCorrection(), dEg.get(count, 0));
+                    newg.setIg(""); //intensity is blank by default
+                    newg.setDIg("");
+                    this.addGamma(newg, this.Levels.get(parentIndex));
+                    this.getLastGamma().setFinalLevel(Levels.get(finalIndex));
+                    parentFinalPairs.put(parentFinalPairString, this.getLastGamma());
                 }
+                count += 1;
             }
         }
         
@@ -174,22 +179,14 @@ public class ENSDFDataset {
                 if(Ig.get(i, 0) > 0.0d){
                     g = G.getGammas().get(0);
                     f = g.getFinalLevel();
-                    finalIndex = -1;
-                    for(j=0; j<oldLevels.length; j++){
-                        if(f.equals(oldLevels[j])){
-                            finalIndex = j;
-                            break;
-                        }
-                    }
+                    finalIndex = getLevelIndex(firstLevelIndex, oldLevels, f, true);
                     if(finalIndex == -1){ //final level not found
                         continue;
                     }
-                    for(gamma gam : this.Gammas){
-                        if(gam.getParent().equals(this.Levels.get(k)) &&
-                                gam.getFinalLevel().equals(this.Levels.get(finalIndex))){
-                            gam.setNumericIntensity(Ig.get(i, 0), dIg.get(i, 0));
-                            break;
-                        }
+                    newg = parentFinalPairs.get(String.valueOf(k) + " " + 
+                            String.valueOf(finalIndex));
+                    if(newg != null){
+                        newg.setNumericIntensity(Ig.get(i, 0), dIg.get(i, 0));
                     }
                 }
                 i += 1;
@@ -276,6 +273,139 @@ public class ENSDFDataset {
         return sources.size();
     }
     
+    /**
+     * Returns the given gamma-rays grouped by the title of the dataset they
+     * come from. The gamma-rays in each group are in the same order as in the
+     * given array, so iterating over the groups in the order given by 
+     * {@link #getSources() getSources} visits the gamma-rays in the same order
+     * as filtering the whole array once per source.
+     * @param gammas the gamma-rays to group
+     * @return map from dataset title to the gamma-rays from that dataset
+     */
+    public static final Map<String, List<gamma>> groupBySource(gamma[] gammas){
+        Map<String, List<gamma>> result = new HashMap<>();
+        for(gamma g : gammas){
+            result.computeIfAbsent(g.getSource(), k -> new ArrayList<>()).add(g);
+        }
+        return result;
+    }
+    /**
+     * Returns the gamma-rays from the dataset with the given title, in the
+     * same order as in the array used to make the given groups.
+     * @param groups the result of {@link #groupBySource(ENSDF_data.gamma[]) groupBySource}
+     * @param source the dataset title
+     * @return the gamma-rays from the dataset with the given title
+     */
+    public static final List<gamma> getSourceGroup(Map<String, List<gamma>> groups,
+            String source){
+        List<gamma> result = groups.get(source);
+        if(result == null){
+            return Collections.emptyList();
+        }
+        return result;
+    }
+    
+    /**
+     * Returns a map from each of the given levels to the index of the last
+     * level in the given array which is equal to it (has the same level
+     * record), as found by scanning the whole array. The map uses object
+     * identity, which is always the case for the parent and final levels of
+     * gamma-rays in a dataset, so lookups do not need to compare level 
+     * records. Use 
+     * {@link #getLevelIndex(java.util.Map, ENSDF_data.level[], ENSDF_data.level) getLevelIndex}
+     * to look up levels which may be equal, but not identical, to one in the
+     * array.
+     * @param levels the levels to index
+     * @return a map from each of the given levels to its index in the array
+     */
+    public static final Map<level, Integer> indexLevels(level[] levels){
+        return indexLevels(levels, false);
+    }
+    /**
+     * Returns a map from each of the given levels to the index of the first
+     * or last level in the given array which is equal to it (has the same 
+     * level record). The levels are only compared with the levels of the
+     * same energy.
+     * @param levels the levels to index
+     * @param firstMatch <code>true</code> to map to the first equal level, 
+     * <code>false</code> to map to the last
+     * @return a map from each of the given levels to its index in the array
+     */
+    public static final Map<level, Integer> indexLevels(level[] levels, 
+            boolean firstMatch){
+        Map<level, Integer> result = new IdentityHashMap<>();
+        Map<String, List<Integer>> byEnergy = new HashMap<>();
+        int k, match;
+        
+        for(k=0; k<levels.length; k++){
+            byEnergy.computeIfAbsent(levels[k].getLvlRecord().getE(), 
+                    e -> new ArrayList<>()).add(k);
+        }
+        for(k=0; k<levels.length; k++){
+            match = k;
+            for(int j : byEnergy.get(levels[k].getLvlRecord().getE())){
+                if(levels[k].equals(levels[j])){
+                    match = j;
+                    if(firstMatch){
+                        break;
+                    }
+                }
+            }
+            result.put(levels[k], match);
+        }
+        return result;
+    }
+    /**
+     * Returns the index of the last level in the given array which is equal
+     * to the given level, or -1 if the level is not in the array. The index
+     * map is checked first, and only if the level object is not found there
+     * are the level records compared.
+     * @param index the result of {@link #indexLevels(ENSDF_data.level[]) indexLevels}
+     * @param levels the array which was indexed
+     * @param l the level to find
+     * @return the index of the given level in the given array, or -1 if the
+     * level is not in the array
+     */
+    public static final int getLevelIndex(Map<level, Integer> index, 
+            level[] levels, level l){
+        return getLevelIndex(index, levels, l, false);
+    }
+    /**
+     * Returns the index of the first or last level in the given array which
+     * is equal to the given level, or -1 if the level is not in the array.
+     * @param index the result of {@link #indexLevels(ENSDF_data.level[], boolean) indexLevels}
+     * for the same <code>firstMatch</code>
+     * @param levels the array which was indexed
+     * @param l the level to find
+     * @param firstMatch <code>true</code> to find the first equal level, 
+     * <code>false</code> to find the last
+     * @return the index of the given level in the given array, or -1 if the
+     * level is not in the array
+     */
+    public static final int getLevelIndex(Map<level, Integer> index, 
+            level[] levels, level l, boolean firstMatch){
+        Integer result = index.get(l);
+        int k;
+        
+        if(result != null){
+            return result;
+        }
+        if(firstMatch){
+            for(k=0; k<levels.length; k++){
+                if(l.equals(levels[k])){
+                    return k;
+                }
+            }
+        }else{
+            for(k=levels.length-1; k>=0; k--){
+                if(l.equals(levels[k])){
+                    return k;
+                }
+            }
+        }
+        return -1;
+    }
+    
     /**
      * Returns the gamma-rays in this dataset which have energy greater
      * than zero. I.e. only returns gammas which actually have an energy
@@ -1300,10 +1430,110 @@ public class ENSDFDataset {
      */
     public static final List<String> generateAveragesTable(List<gammaEquivalenceClass> gammaGroups, 
             boolean limitMinUncert, boolean useNonNumericUncert, boolean decayData){
+        return generateAveragesTable(gammaGroups, limitMinUncert, useNonNumericUncert,
+                decayData, null);
+    }
+    
+    /**
+     * Computes the average gamma-ray energy and intensity for each group, as
+     * {@link #generateAveragesTable(java.util.List, boolean, boolean, boolean) 
+     * generateAveragesTable}, but only averages the groups whose measurements
+     * are not in the given cache of previous averages (see {@link averageCache}).
+     * The new averages are added to the cache; it is up to the caller to save it.
+     * @param gammaGroups List of groups of gammas. Each group represents a single
+     * unique gamma-ray and contains all measurements of that gamma-ray
+     * @param limitMinUncert if <code>true</code> then the uncertainty on the
+     * averages will not be lower than the lowest measurement which contributed
+     * to the average
+     * @param useNonNumericUncert if <code>true</code> then the unweighted
+     * average will use all measurements, even those with non-numeric uncertainties.
+     * @param decayData <code>true</code> if the data should be normalized like
+     * a decay dataset (as opposed to an Adopted Levels, Gammas dataset
+     * @param cache the cache of previous averages, or <code>null</code> to
+     * average every group
+     * @return the lines of the averages file produced by the "gamma-by-gamma"
+     * approach.
+     */
+    public static final List<String> generateAveragesTable(List<gammaEquivalenceClass> gammaGroups, 
+            boolean limitMinUncert, boolean useNonNumericUncert, boolean decayData,
+            averageCache cache){
+        return generateAveragesTable(gammaGroups, averageGammaGroups(gammaGroups, 
+                limitMinUncert, useNonNumericUncert, cache), decayData);
+    }
+    
+    /**
+     * Clears the unresolved intensities of each group of gammas (see
+     * {@link gammaEquivalenceClass#clearUnresolvedIntensities() clearUnresolvedIntensities})
+     * then averages all the groups together (see {@link averagingBatch}). The
+     * groups found in the given cache are not averaged again.
+     * @param gammaGroups List of groups of gammas. Each group represents a single
+     * unique gamma-ray and contains all measurements of that gamma-ray
+     * @param limitMinUncert if <code>true</code> then the uncertainty on the
+     * averages will not be lower than the lowest measurement which contributed
+     * to the average
+     * @param useNonNumericUncert if <code>true</code> then the unweighted
+     * average will use all measurements, even those with non-numeric uncertainties.
+     * @param cache the cache of previous averages, or <code>null</code> to
+     * average every group
+     * @return the average of each group, in the same order, <code>null</code>
+     * for the empty groups
+     */
+    public static final gamma[] averageGammaGroups(List<gammaEquivalenceClass> gammaGroups, 
+            boolean limitMinUncert, boolean useNonNumericUncert, averageCache cache){
+        for(gammaEquivalenceClass group : gammaGroups){
+            group.clearUnresolvedIntensities();
+        }
+        return averagingContext.DEFAULT.averageAll(gammaGroups, limitMinUncert,
+                useNonNumericUncert, cache);
+    }
+    
+    /**
+     * Generates the averages file from the given averages of the groups (see
+     * {@link #averageGammaGroups(java.util.List, boolean, boolean, ENSDF_data.averageCache)
+     * averageGammaGroups}), as {@link #generateAveragesTable(java.util.List, boolean, boolean, boolean) 
+     * generateAveragesTable}. The averages are renormalized; each average is
+     * replaced by the renormalized gamma-ray added to its group, so that the
+     * same array can be passed on to {@link #generateAdoptedDataset(java.util.List, ENSDF_data.gamma[]) 
+     * generateAdoptedDataset}.
+     * @param gammaGroups List of groups of gammas. Each group represents a single
+     * unique gamma-ray and contains all measurements of that gamma-ray
+     * @param averages the average of each group, <code>null</code> for the
+     * empty groups
+     * @param decayData <code>true</code> if the data should be normalized like
+     * a decay dataset (as opposed to an Adopted Levels, Gammas dataset
+     * @return the lines of the averages file produced by the "gamma-by-gamma"
+     * approach.
+     */
+    public static final List<String> generateAveragesTable(List<gammaEquivalenceClass> gammaGroups, 
+            gamma[] averages, boolean decayData){
+        return generateAveragesTable(gammaGroups, averages, decayData, null);
+    }
+    
+    /**
+     * Generates the averages file from the given averages of the groups, as
+     * {@link #generateAveragesTable(java.util.List, ENSDF_data.gamma[], boolean) 
+     * generateAveragesTable}, with columns for the bootstrap and LWM averages
+     * of each group (see {@link robustAverages}) added if the settings are
+     * given.
+     * @param gammaGroups List of groups of gammas. Each group represents a single
+     * unique gamma-ray and contains all measurements of that gamma-ray
+     * @param averages the average of each group, <code>null</code> for the
+     * empty groups
+     * @param decayData <code>true</code> if the data should be normalized like
+     * a decay dataset (as opposed to an Adopted Levels, Gammas dataset
+     * @param robust the settings of the bootstrap and LWM averages, or
+     * <code>null</code> to leave out these columns
+     * @return the lines of the averages file produced by the "gamma-by-gamma"
+     * approach.
+     */
+    public static final List<String> generateAveragesTable(List<gammaEquivalenceClass> gammaGroups, 
+            gamma[] averages, boolean decayData, robustAverages robust){
         textTable result;
+        String[][] robustResults;
+        List<String> lines;
         gammaEquivalenceClass G;
         gamma g,G_av;
-        int i, count;
+        int i, j, count;
         String energy, intensity;
         ENSDFDataset averageDataset;
         boolean hasLevel;
@@ -1325,9 +1555,14 @@ public class ENSDFDataset {
             return new ArrayList<>();
         }
         
+        //taken before the average gammas are added to the groups
+        robustResults = null;
+        if(robust != null){
+            robustResults = robust.average(gammaGroups, averagingContext.DEFAULT);
+        }
+        
         for(i=0; i<gammaGroups.size(); i++){
             G = gammaGroups.get(i);
-            G.clearUnresolvedIntensities();
             if(G.isEmpty()){
                 continue;
             }
@@ -1374,7 +1609,7 @@ public class ENSDFDataset {
 
             //at this stage both the parent and final levels of g are in
             //the dataset and the pointers p and f have been assigned
-            G_av = G.average(limitMinUncert, useNonNumericUncert);
+            G_av = averages[i];
             averageDataset.addGamma(G_av, p);
             if(f != null){
                 averageDataset.getLastGamma().setFinalLevel(f);
@@ -1397,6 +1632,12 @@ public class ENSDFDataset {
                 result.setCell(count, 1, "Eg Chi^2");
                 result.setCell(count, 2, "Average Ig");
                 result.setCell(count, 3, "Ig Chi^2");
+                if(robustResults != null){
+                    result.setCell(count, 4, "Bootstrap Eg");
+                    result.setCell(count, 5, "Bootstrap Ig");
+                    result.setCell(count, 6, "LWM Eg");
+                    result.setCell(count, 7, "LWM Ig");
+                }
                 result.addHrule(count);
                 count += 1;
             }else if( !G.getLevelString().equals(gammaGroups.get(i-1).getLevelString()) ){
@@ -1408,16 +1649,22 @@ public class ENSDFDataset {
                 result.setCell(count, 1, "Eg Chi^2");
                 result.setCell(count, 2, "Average Ig");
                 result.setCell(count, 3, "Ig Chi^2");
+                if(robustResults != null){
+                    result.setCell(count, 4, "Bootstrap Eg");
+                    result.setCell(count, 5, "Bootstrap Ig");
+                    result.setCell(count, 6, "LWM Eg");
+                    result.setCell(count, 7, "LWM Ig");
+                }
                 result.addHrule(count);
                 count += 1;
             }
             g = G.getGammas().get(0);
             G_av = averageDataset.getGamma(g.getParent(), g.getFinalLevel());
-            //G_av = G.average(limitMinUncert, useNonNumericUncert);
             if(G_av == null){
-                G_av = G.average(limitMinUncert, useNonNumericUncert);
+                G_av = averages[i];
             }
             G.add(G_av);
+            averages[i] = G_av;
             energy = G_av.getEg() + " " + G_av.getDEg();
             if(!(G_av.energyAveragingMethod.equals("WtAve") || 
                     G_av.energyAveragingMethod.equals(""))){
@@ -1434,10 +1681,20 @@ public class ENSDFDataset {
             result.setCell(count, 1, G_av.energyChiSq);
             result.setCell(count, 2, intensity);
             result.setCell(count, 3, G_av.intensityChiSq);
+            if(robustResults != null){
+                for(j=0; j<robustResults[i].length; j++){
+                    result.setCell(count, 4 + j, robustResults[i][j]);
+                }
+            }
             count += 1;
         }
         
-        return result.toStringList();
+        lines = result.toStringList();
+        if(robust != null){
+            lines.add("");
+            lines.addAll(robust.getNotes());
+        }
+        return lines;
     }
     
     /**
@@ -1458,6 +1715,35 @@ public class ENSDFDataset {
     public static final List<String> generateReportTable(ENSDFDataset orig,
             ENSDFDataset modified, ENSDFDataset adopted, Matrix beta,
             Matrix energyShifts, Matrix dEnergyShifts){
+        return generateReportTable(orig, modified, adopted, beta, energyShifts,
+                dEnergyShifts, null, null);
+    }
+    
+    /**
+     * Generates the averages file produced after the GAMUT method, followed
+     * by the given additional lines (e.g. the record of the decisions made
+     * about discrepant measurements).
+     * @param orig the combined dataset read from the intermediate file with no
+     * adjustments made
+     * @param modified the combined dataset read of the intermediate file with
+     * any modifications made by the user during the GAMUT chi^2 analysis.
+     * @param adopted the dataset produced by running the GAMUT algorithms on
+     * the combined dataset read from the intermediate file
+     * @param beta the fitted scale factors from the GAMUT intensity algorithm
+     * @param energyShifts the fitted systematic energy shifts from the
+     * GAMUT energy algorithm
+     * @param dEnergyShifts uncertainty in the fitted systematic energy shifts from the
+     * GAMUT energy algorithm
+     * @param columns additional columns to add to the right of the table of 
+     * gamma-rays, may be <code>null</code>
+     * @param notes lines to add at the end of the file, may be <code>null</code>
+     * @return the lines of the averages file produced after the GAMUT method
+     */
+    public static final List<String> generateReportTable(ENSDFDataset orig,
+            ENSDFDataset modified, ENSDFDataset adopted, Matrix beta,
+            Matrix energyShifts, Matrix dEnergyShifts, 
+            List<gammaReportColumn> columns, List<String> notes){
+        List<String> lines;
         textTable result;
         int linecount, lvlcount, gammacount;
         level tmp;
@@ -1508,6 +1794,11 @@ public class ENSDFDataset {
             result.setCell(linecount, 5, "Chi^2 (Ig)");
             result.setCell(linecount, 6, "Init. Level");
             result.setCell(linecount, 7, "Final Level");
+            if(columns != null){
+                for(j=0; j<columns.size(); j++){
+                    result.setCell(linecount, 8+j, columns.get(j).getHeader());
+                }
+            }
             linecount += 1;
             
             groupedGammas = groupByGamma(modLevels[lvlcount]);
@@ -1582,7 +1873,7 @@ public class ENSDFDataset {
                     if(!g.getSource().contains("GAMUT")){ //chi^2 calculated wrt GMAUT gamma ray
                         //set Eg chi^2
                         if (g.eg.isPresent() && gamma0.eg.isPresent()) {
-                            dataPt dp = dataPt.constructFromString(g.getEg() + " " + g.getDEg());
+                            dataPt dp = g.getEnergyDataPt();
                             double uncert;
                             if (dp == null) {
                                 uncert = 0d;
@@ -1606,7 +1897,7 @@ public class ENSDFDataset {
                         //skip gamma rays without normalized uncertainty
                         //(probably only gamma from that level, not fitted)
                         if(!g.getDIg(true).equals("") && g.ig.isPresent() && gamma0.ig.isPresent()) {
-                            dataPt dp = dataPt.constructFromString(g.getIg() + " " + g.getDIg());
+                            dataPt dp = g.getIntensityDataPt();
                             double uncert;
                             if (dp == null) {
                                 uncert = 0d;
@@ -1648,6 +1939,11 @@ public class ENSDFDataset {
                         result.setCell(linecount, 7, tmp.getLvlRecord().getE() + " " 
                                 + tmp.getLvlRecord().getJ());
                     }
+                    if(columns != null){
+                        for(j=0; j<columns.size(); j++){
+                            result.setCell(linecount, 8+j, columns.get(j).get(g));
+                        }
+                    }
                     linecount += 1;
                 }
                 linecount += 1; //blank line between sets of gamma rays
@@ -1705,7 +2001,12 @@ public class ENSDFDataset {
         }
         result.addHrule(linecount);
         
-        return result.toStringList();
+        lines = result.toStringList();
+        if(notes != null && !notes.isEmpty()){
+            lines.add("");
+            lines.addAll(notes);
+        }
+        return lines;
     }
     
     /**
@@ -1724,19 +2025,39 @@ public class ENSDFDataset {
      */
     public static final List<String> generateAdoptedDataset(List<gammaEquivalenceClass> gammaGroups,
             ENSDFDataset orig_adopted){
+        return generateAdoptedDataset(gammaGroups, findAverages(gammaGroups), orig_adopted);
+    }
+    
+    /**
+     * Replaces the numbers for the gamma-ray energies and intensities in the
+     * original ADOPTED LEVELS, GAMMAS dataset with the given averages, as
+     * {@link #generateAdoptedDataset(java.util.List, ENSDF_data.ENSDFDataset) 
+     * generateAdoptedDataset}.
+     * @param gammaGroups the groups of gammas
+     * @param averages the average of each group, as returned by <code>
+     * {@link #generateAveragesTable(java.util.List, ENSDF_data.gamma[], boolean) 
+     * generateAveragesTable}</code>, <code>null</code> for the groups with
+     * no average
+     * @param orig_adopted the lines from the original ADOPTED LEVELS, GAMMAS
+     * dataset
+     * @return the lines of the new ADOPTED LEVELS, GAMMAS dataset, with the
+     * numbers for the gamma-ray energies and intensities replaced.
+     */
+    public static final List<String> generateAdoptedDataset(List<gammaEquivalenceClass> gammaGroups,
+            gamma[] averages, ENSDFDataset orig_adopted){
         List<String> result = new ArrayList();
+        gammaEquivalenceClass G;
         String rType;
         ENSDFGammaRecord gamRec;
         boolean foundGamma;
         int i;
         String s;
-        gamma gam;
+        gamma gam, average;
+        int j;
         
-        for(gammaEquivalenceClass G : gammaGroups){
-            for(gamma g : G.getGammas()){
-                if(g.getSource().toLowerCase().contains("average")){
-                    g.matched = false;
-                }
+        for(gamma g : averages){
+            if(g != null){
+                g.matched = false;
             }
         }
         
@@ -1749,7 +2070,8 @@ public class ENSDFDataset {
                 //search for the matching gamma ray in one of the 
                 //gamma equivalence classes
                 foundGamma = false;
-                for(gammaEquivalenceClass G : gammaGroups){
+                for(j=0; j<gammaGroups.size(); j++){
+                    G = gammaGroups.get(j);
                     for(gamma g : G.getGammas()){
                         if(g.isAdopted()){
                             //only check that NICID, E, DE, RI, DRI, M, MR and Q
@@ -1757,17 +2079,13 @@ public class ENSDFDataset {
                             if(g.partialEquals(gamRec)){
                                 //change the energy and intensity to match
                                 //those from the average of this group
-                                for(gamma g2 : G.getGammas()){
-                                    if(g2.getSource().toLowerCase()
-                                            .contains("average")){
-                                        gamRec.setE(g2.getEg());
-                                        gamRec.setDE(g2.getDEg());
-                                        gamRec.setRI(g2.getIg(true));
-                                        gamRec.setDRI(g2.getDIg(true));
-                                        g2.matched = true;
-                                        foundGamma = true;
-                                        break;
-                                    }
+                                if(averages[j] != null){
+                                    gamRec.setE(averages[j].getEg());
+                                    gamRec.setDE(averages[j].getDEg());
+                                    gamRec.setRI(averages[j].getIg(true));
+                                    gamRec.setDRI(averages[j].getDIg(true));
+                                    averages[j].matched = true;
+                                    foundGamma = true;
                                 }
                                 break;
                             }
@@ -1785,41 +2103,39 @@ public class ENSDFDataset {
         
         //look for new gamma rays which were not in the original adopted
         //data set
-        for(gammaEquivalenceClass G : gammaGroups){
-            for(gamma g : G.getGammas()){
-                if(g.getSource().toLowerCase().contains("average")){
-                    if(!g.matched){
-                        //insert the new gamma
-                        for(i=0; i<result.size(); i++){
-                            s = result.get(i);
-                            rType = ENSDFRecord.getCol(s, 6, 8);
-                            if(rType.equals("L")){
-                                if(trimTail(ENSDFRecord.getCol(s, 1, 39)).equals(G.getLevelString())){
-                                    //found the parent level, now we need to add it in
-                                    //the right place (maintaining the energy-sorted
-                                    //gamma ray order)
-                                    OUTER:
-                                    while (true) {
-                                        i+= 1;
-                                        s = result.get(i);
-                                        rType = ENSDFRecord.getCol(s, 6, 8);
-                                        switch (rType) {
-                                            case "G":
-                                                gam = new gamma(new ENSDFGammaRecord(s), orig_adopted.title);
-                                                if (gamma.energyComparator.compare(g, gam) < 0) {
-                                                    result.add(i, g.getGammaRecord().toString());
-                                                    break OUTER;
-                                                }
-                                                break;
-                                            case "L":
-                                                //reached next level, need to add gamma ray now
-                                                result.add(i, g.getGammaRecord().toString());
-                                                break OUTER;
+        for(j=0; j<gammaGroups.size(); j++){
+            G = gammaGroups.get(j);
+            average = averages[j];
+            if(average != null && !average.matched){
+                //insert the new gamma
+                for(i=0; i<result.size(); i++){
+                    s = result.get(i);
+                    rType = ENSDFRecord.getCol(s, 6, 8);
+                    if(rType.equals("L")){
+                        if(trimTail(ENSDFRecord.getCol(s, 1, 39)).equals(G.getLevelString())){
+                            //found the parent level, now we need to add it in
+                            //the right place (maintaining the energy-sorted
+                            //gamma ray order)
+                            OUTER:
+                            while (true) {
+                                i+= 1;
+                                s = result.get(i);
+                                rType = ENSDFRecord.getCol(s, 6, 8);
+                                switch (rType) {
+                                    case "G":
+                                        gam = new gamma(new ENSDFGammaRecord(s), orig_adopted.title);
+                                        if (gamma.energyComparator.compare(average, gam) < 0) {
+                                            result.add(i, average.getGammaRecord().toString());
+                                            break OUTER;
                                         }
-                                    }
-                                    break;
+                                        break;
+                                    case "L":
+                                        //reached next level, need to add gamma ray now
+                                        result.add(i, average.getGammaRecord().toString());
+                                        break OUTER;
                                 }
                             }
+                            break;
                         }
                     }
                 }
@@ -1841,6 +2157,23 @@ public class ENSDFDataset {
      * averages
      */
     public static final List<String> generateAdoptedDataset(List<gammaEquivalenceClass> gammaGroups){
+        return generateAdoptedDataset(gammaGroups, findAverages(gammaGroups));
+    }
+    
+    /**
+     * Generates a skeleton ADOPTED LEVELS, GAMMAS dataset from the given
+     * gamma-by-gamma averages, as {@link #generateAdoptedDataset(java.util.List) 
+     * generateAdoptedDataset}.
+     * @param gammaGroups the groups of gammas
+     * @param averages the average of each group, as returned by <code>
+     * {@link #generateAveragesTable(java.util.List, ENSDF_data.gamma[], boolean) 
+     * generateAveragesTable}</code>, <code>null</code> for the groups with
+     * no average
+     * @return skeleton ADOPTED LEVELS, GAMMAS dataset from the gamma-by-gamma
+     * averages
+     */
+    public static final List<String> generateAdoptedDataset(List<gammaEquivalenceClass> gammaGroups,
+            gamma[] averages){
         String nucid;
         List<String> result = new ArrayList<>();
         int i;
@@ -1857,15 +2190,10 @@ public class ENSDFDataset {
         result.add(nucid + "    ADOPTED LEVELS, GAMMAS                                                 ");
         //first level record
         result.add(gammaGroups.get(0).getLevelString());
-        if(!gammaGroups.get(0).isEmpty()){
-            for(gamma g : gammaGroups.get(0).getGammas()){
-                //add average gamma records
-                if(g.getSource().toLowerCase().contains("average")){
-                    g.getGammaRecord().setNucid(nucid);
-                    result.add(g.getGammaRecord().toString());
-                    break;
-                }
-            }
+        //add average gamma records
+        if(averages[0] != null){
+            averages[0].getGammaRecord().setNucid(nucid);
+            result.add(averages[0].getGammaRecord().toString());
         }
         
         //add other level and average gamma records
@@ -1876,15 +2204,29 @@ public class ENSDFDataset {
                     result.add(gammaGroups.get(i).getLevelString());
                 }
             }
+            if(averages[i] != null){
+                averages[i].getGammaRecord().setNucid(nucid);
+                result.add(averages[i].getGammaRecord().toString());
+            }
+        }
+        
+        return result;
+    }
+    
+    //the average gamma-ray added to each group by generateAveragesTable, i.e.
+    //the first gamma-ray of the group with "average" in its source, or null
+    private static gamma[] findAverages(List<gammaEquivalenceClass> gammaGroups){
+        gamma[] result = new gamma[gammaGroups.size()];
+        int i;
+        
+        for(i=0; i<result.length; i++){
             for(gamma g : gammaGroups.get(i).getGammas()){
                 if(g.getSource().toLowerCase().contains("average")){
-                    g.getGammaRecord().setNucid(nucid);
-                    result.add(g.getGammaRecord().toString());
+                    result[i] = g;
                     break;
                 }
             }
         }
-        
         return result;
     }
     
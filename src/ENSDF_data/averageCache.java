@@ -0,0 +1,218 @@
+package ENSDF_data;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import text_io.textFileIO;
+
+/**
+ * This class remembers the outcome of averaging groups of gammas (see
+ * {@link gammaEquivalenceClass#average(boolean, boolean, ENSDF_data.averagingContext)
+ * average}) between runs, so that only the groups whose measurements have
+ * changed need to be averaged again. Each outcome is keyed by a hash of the
+ * measurements of the group (source, energy, intensity and their
+ * uncertainties) and of the averaging options, and is kept in a text file with
+ * one outcome per line. Groups of a single gamma are not remembered since
+ * they are not averaged.
+ *
+ * The cache can be used by several threads at once.
+ *
+ * Date Modified: 18/10/2026
+ *
+ * @author agent
+ */
+public class averageCache {
+
+    /**
+     * The largest number of outcomes kept in the file. Outcomes used or
+     * added in the current run are kept first.
+     */
+    public static final int MAX_ENTRIES = 100000;
+
+    private static final String HEADER = "#JGAMUT averages cache v1";
+    private static final int NUM_FIELDS = 8; //Eg, DEg, Ig, DIg, methods and chi^2
+
+    private final String path;
+    private final ConcurrentHashMap<String, String[]> stored, used;
+    private final AtomicInteger hits, misses;
+
+    /**
+     * Creates a new empty cache which will be saved to the given path.
+     * @param path the path of the cache file
+     */
+    public averageCache(String path){
+        this.path = path;
+        this.stored = new ConcurrentHashMap<>();
+        this.used = new ConcurrentHashMap<>();
+        this.hits = new AtomicInteger();
+        this.misses = new AtomicInteger();
+    }
+
+    /**
+     * Reads the cache in the given file. If the file does not exist, or is
+     * not a cache file, then an empty cache is returned; lines which cannot
+     * be read are ignored.
+     * @param path the path of the cache file
+     * @return the cache
+     */
+    public static averageCache load(String path){
+        averageCache result = new averageCache(path);
+        List<String> lines;
+        String[] fields;
+        String[] outcome;
+
+        if(!textFileIO.exist(path)){
+            return result;
+        }
+        try{
+            lines = textFileIO.read(path);
+        }catch(IOException e){
+            return result;
+        }
+        if(lines.isEmpty() || !lines.get(0).equals(HEADER)){
+            return result;
+        }
+        for(String line : lines.subList(1, lines.size())){
+            fields = line.split("\t", -1);
+            if(fields.length != NUM_FIELDS + 1){
+                continue;
+            }
+            outcome = new String[NUM_FIELDS];
+            System.arraycopy(fields, 1, outcome, 0, NUM_FIELDS);
+            result.stored.put(fields[0], outcome);
+        }
+        return result;
+    }
+
+    /**
+     * Writes the cache to its file.
+     * @throws IOException if the file cannot be written
+     */
+    public void save() throws IOException{
+        List<String> lines = new ArrayList<>();
+
+        lines.add(HEADER);
+        for(Map.Entry<String, String[]> e : used.entrySet()){
+            if(lines.size() > MAX_ENTRIES){
+                break;
+            }
+            lines.add(toLine(e.getKey(), e.getValue()));
+        }
+        for(Map.Entry<String, String[]> e : stored.entrySet()){
+            if(lines.size() > MAX_ENTRIES){
+                break;
+            }
+            if(!used.containsKey(e.getKey())){
+                lines.add(toLine(e.getKey(), e.getValue()));
+            }
+        }
+        textFileIO.write(lines, path);
+    }
+
+    /**
+     * Returns the average of the given group stored in the cache, or
+     * <code>null</code> if the group (with the same options) has not been
+     * averaged before.
+     * @param G the group of gammas
+     * @param limitMinUncert the option used to average the group
+     * @param useNonNumericUncert the option used to average the group
+     * @param context the context used to average the group
+     * @return the average, or <code>null</code>
+     */
+    public gamma get(gammaEquivalenceClass G, boolean limitMinUncert,
+            boolean useNonNumericUncert, averagingContext context){
+        String key;
+        String[] outcome;
+
+        key = key(G, limitMinUncert, useNonNumericUncert, context);
+        outcome = used.get(key);
+        if(outcome == null){
+            outcome = stored.get(key);
+        }
+        if(outcome == null){
+            misses.incrementAndGet();
+            return null;
+        }
+        used.put(key, outcome);
+        hits.incrementAndGet();
+        return G.averageGamma(outcome[0], outcome[1], outcome[2], outcome[3],
+                outcome[4], outcome[5], outcome[6], outcome[7]);
+    }
+
+    /**
+     * Stores the average of the given group.
+     * @param G the group of gammas
+     * @param limitMinUncert the option used to average the group
+     * @param useNonNumericUncert the option used to average the group
+     * @param context the context used to average the group
+     * @param average the average of the group
+     */
+    public void put(gammaEquivalenceClass G, boolean limitMinUncert,
+            boolean useNonNumericUncert, averagingContext context, gamma average){
+        used.put(key(G, limitMinUncert, useNonNumericUncert, context),
+                new String[]{average.getEg(), average.getDEg(),
+                    average.getIg(), average.getDIg(),
+                    average.energyAveragingMethod, average.energyChiSq,
+                    average.intensityAveragingMethod, average.intensityChiSq});
+    }
+
+    /**
+     * Returns the number of groups found in the cache.
+     * @return the number of groups found in the cache
+     */
+    public int getHits(){
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of groups not found in the cache.
+     * @return the number of groups not found in the cache
+     */
+    public int getMisses(){
+        return misses.get();
+    }
+
+    private static String key(gammaEquivalenceClass G, boolean limitMinUncert,
+            boolean useNonNumericUncert, averagingContext context){
+        StringBuilder sb = new StringBuilder();
+        MessageDigest digest;
+        byte[] hash;
+
+        sb.append(limitMinUncert).append('\t');
+        sb.append(useNonNumericUncert).append('\t');
+        sb.append(context.getConfidence()).append('\n');
+        for(gamma g : G.getGammas()){
+            sb.append(g.getSource()).append('\t');
+            sb.append(g.getEg()).append('\t');
+            sb.append(g.getDEg()).append('\t');
+            sb.append(g.getIg(true)).append('\t');
+            sb.append(g.getDIg(true)).append('\n');
+        }
+        try{
+            digest = MessageDigest.getInstance("SHA-256");
+        }catch(NoSuchAlgorithmException e){
+            throw new IllegalStateException(e); //every Java platform has SHA-256
+        }
+        hash = digest.digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+        sb.setLength(0);
+        for(byte b : hash){
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    private static String toLine(String key, String[] outcome){
+        StringBuilder sb = new StringBuilder(key);
+
+        for(String s : outcome){
+            sb.append('\t').append(s == null ? "" : s);
+        }
+        return sb.toString();
+    }
+}
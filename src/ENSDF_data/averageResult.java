@@ -0,0 +1,147 @@
+package ENSDF_data;
+
+/**
+ * This class holds the numeric outcome of averaging a group of gammas (see
+ * {@link averagingBatch#averageResults(boolean, boolean, ENSDF_data.averagingContext)
+ * averageResults}): for the energy and for the intensity, the value and
+ * uncertainties of the average, the method which was accepted and its reduced
+ * chi^2. No strings are built when the outcome is found; the average gamma,
+ * with the values in ENSDF format as they appear in the averages table and
+ * the adopted dataset, is only rendered from the outcome when it is needed
+ * (see {@link gammaEquivalenceClass#averageGamma(ENSDF_data.averageResult)
+ * averageGamma}).
+ *
+ * Date Modified: 18/10/2026
+ *
+ * @author agent
+ */
+public class averageResult {
+
+    /**
+     * The index of the energy average.
+     */
+    public static final int ENERGY = 0;
+    /**
+     * The index of the intensity average.
+     */
+    public static final int INTENSITY = 1;
+
+    private final boolean singleGamma;
+    private final boolean[] present, uncertain;
+    private final double[] value, upper, lower, chiSq;
+    private final averagingKernels.Method[] method;
+
+    /**
+     * Creates a new outcome with neither an energy nor an intensity.
+     * @param singleGamma <code>true</code> if the group has a single gamma,
+     * which is its own average
+     */
+    averageResult(boolean singleGamma){
+        this.singleGamma = singleGamma;
+        this.present = new boolean[2];
+        this.uncertain = new boolean[2];
+        this.value = new double[2];
+        this.upper = new double[2];
+        this.lower = new double[2];
+        this.chiSq = new double[]{Double.NaN, Double.NaN};
+        this.method = new averagingKernels.Method[2];
+    }
+
+    /**
+     * Sets the energy or intensity average.
+     * @param q {@link #ENERGY} or {@link #INTENSITY}
+     * @param value the value of the average
+     * @param upper the upper uncertainty of the average
+     * @param lower the lower uncertainty of the average
+     * @param uncertain <code>false</code> if the uncertainty is not to be
+     * shown, e.g. when none of the measurements has a numeric uncertainty
+     * @param method the accepted averaging method, <code>null</code> if the
+     * value was not averaged
+     * @param chiSq the reduced chi^2 of the average, NaN if there is none
+     */
+    void set(int q, double value, double upper, double lower, boolean uncertain,
+            averagingKernels.Method method, double chiSq){
+        this.present[q] = true;
+        this.value[q] = value;
+        this.upper[q] = upper;
+        this.lower[q] = lower;
+        this.uncertain[q] = uncertain;
+        this.method[q] = method;
+        this.chiSq[q] = chiSq;
+    }
+
+    /**
+     * Returns <code>true</code> if the group has a single gamma, which is its
+     * own average.
+     * @return <code>true</code> if the group has a single gamma
+     */
+    public boolean isSingleGamma(){
+        return singleGamma;
+    }
+
+    /**
+     * Returns <code>true</code> if there is an energy or intensity average.
+     * @param q {@link #ENERGY} or {@link #INTENSITY}
+     * @return <code>true</code> if there is an average
+     */
+    public boolean isPresent(int q){
+        return present[q];
+    }
+
+    /**
+     * Returns <code>true</code> if the uncertainty of the energy or intensity
+     * average is known.
+     * @param q {@link #ENERGY} or {@link #INTENSITY}
+     * @return <code>true</code> if the uncertainty is known
+     */
+    public boolean isUncertain(int q){
+        return uncertain[q];
+    }
+
+    /**
+     * Returns the value of the energy or intensity average.
+     * @param q {@link #ENERGY} or {@link #INTENSITY}
+     * @return the value of the average
+     */
+    public double getValue(int q){
+        return value[q];
+    }
+
+    /**
+     * Returns the upper uncertainty of the energy or intensity average.
+     * @param q {@link #ENERGY} or {@link #INTENSITY}
+     * @return the upper uncertainty of the average
+     */
+    public double getUpper(int q){
+        return upper[q];
+    }
+
+    /**
+     * Returns the lower uncertainty of the energy or intensity average.
+     * @param q {@link #ENERGY} or {@link #INTENSITY}
+     * @return the lower uncertainty of the average
+     */
+    public double getLower(int q){
+        return lower[q];
+    }
+
+    /**
+     * Returns the method accepted for the energy or intensity average.
+     * @param q {@link #ENERGY} or {@link #INTENSITY}
+     * @return the accepted method, <code>null</code> if the value was not
+     * averaged
+     */
+    public averagingKernels.Method getMethod(int q){
+        return method[q];
+    }
+
+    /**
+     * Returns the reduced chi^2 of the weighted average or NRM accepted for
+     * the energy or intensity.
+     * @param q {@link #ENERGY} or {@link #INTENSITY}
+     * @return the reduced chi^2, NaN if neither was accepted
+     */
+    public double getReducedChiSq(int q){
+        return chiSq[q];
+    }
+}
@@ -0,0 +1,305 @@
+package ENSDF_data;
+
+import ensdf_datapoint.dataPt;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * This class averages many groups of gammas (see
+ * {@link gammaEquivalenceClass#average(boolean, boolean, ENSDF_data.averagingContext)
+ * average}) in one call. The energies and intensities of all the groups are
+ * copied into the same columns of values and uncertainties, one range of
+ * measurements after the other, so that the weighted averages and NRM of all
+ * the groups can be taken by the averaging kernels (see
+ * {@link averagingKernels}) in a single loop. The loop is split into chunks
+ * of ranges which are averaged in parallel. The chosen averages give the
+ * numeric outcome of each group (see {@link averageResult}), which is only
+ * rendered into the average gamma, as in
+ * {@link gammaEquivalenceClass#average(boolean, boolean, ENSDF_data.averagingContext)
+ * average}, when the gamma is asked for.
+ *
+ * Range <code>2*i</code> holds the energies of the i-th group and range
+ * <code>2*i + 1</code> holds its intensities.
+ *
+ * Date Modified: 18/10/2026
+ *
+ * @author agent
+ */
+public class averagingBatch {
+
+    /**
+     * The number of ranges of measurements averaged by each parallel task.
+     */
+    public static final int CHUNK_SIZE = 64;
+
+    private final List<gammaEquivalenceClass> groups;
+    private final double[] value, upper, lower;
+    private final int[] offset; //range k is from offset[k] to offset[k+1]
+
+    /**
+     * Copies the energies and intensities of the given groups (see
+     * {@link gammaEquivalenceClass#getEnergyDataset() getEnergyDataset} and
+     * {@link gammaEquivalenceClass#getIntensityDataset() getIntensityDataset})
+     * into a new batch.
+     * @param groups the groups of gammas
+     */
+    public averagingBatch(List<gammaEquivalenceClass> groups){
+        List<List<dataPt>> datasets;
+        List<dataPt> points;
+        dataPt dp;
+        int i, k, n;
+
+        this.groups = groups;
+        datasets = new ArrayList<>(Collections.nCopies(2*groups.size(), (List<dataPt>)null));
+        IntStream.range(0, groups.size()).parallel().forEach(j -> {
+            datasets.set(2*j, groups.get(j).getEnergyDataset());
+            datasets.set(2*j + 1, groups.get(j).getIntensityDataset());
+        });
+        offset = new int[datasets.size() + 1];
+        for(k=0; k<datasets.size(); k++){
+            offset[k+1] = offset[k] + datasets.get(k).size();
+        }
+        n = offset[datasets.size()];
+        value = new double[n];
+        upper = new double[n];
+        lower = new double[n];
+        for(k=0; k<datasets.size(); k++){
+            points = datasets.get(k);
+            for(i=0; i<points.size(); i++){
+                dp = points.get(i);
+                value[offset[k] + i] = dp.getValue();
+                upper[offset[k] + i] = dp.getUpper();
+                lower[offset[k] + i] = dp.getLower();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of groups in the batch.
+     * @return the number of groups in the batch
+     */
+    public int size(){
+        return groups.size();
+    }
+
+    /**
+     * Returns the number of ranges of measurements, two for each group.
+     * @return the number of ranges of measurements
+     */
+    int getNumRanges(){
+        return offset.length - 1;
+    }
+
+    /**
+     * Returns the index of the first measurement of the k-th range.
+     * @param k the index of the range
+     * @return the index of the first measurement of the range
+     */
+    int getFrom(int k){
+        return offset[k];
+    }
+
+    /**
+     * Returns one more than the index of the last measurement of the k-th
+     * range.
+     * @param k the index of the range
+     * @return one more than the index of the last measurement of the range
+     */
+    int getTo(int k){
+        return offset[k+1];
+    }
+
+    /**
+     * Returns the measured values of all the ranges. The array must not be
+     * modified.
+     * @return the measured values
+     */
+    double[] getValues(){
+        return value;
+    }
+
+    /**
+     * Returns the upper uncertainties of all the ranges. The array must not
+     * be modified.
+     * @return the upper uncertainties
+     */
+    double[] getUpper(){
+        return upper;
+    }
+
+    /**
+     * Returns the lower uncertainties of all the ranges. The array must not
+     * be modified.
+     * @return the lower uncertainties
+     */
+    double[] getLower(){
+        return lower;
+    }
+
+    /**
+     * Returns the average gamma of each group, in the same order, as
+     * {@link gammaEquivalenceClass#average(boolean, boolean, ENSDF_data.averagingContext)
+     * average}. The gammas are rendered from the outcomes of
+     * {@link #averageResults(boolean, boolean, ENSDF_data.averagingContext)
+     * averageResults}. The context must have been prepared (see
+     * {@link averagingContext#prepare(int) prepare}) for at least the number
+     * of gammas in the largest group.
+     * @param limitMinUncert <code>true</code> if the uncertainty in the result
+     * cannot be lower than the lowest uncertainty of any of the measurements
+     * which contributed to the average.
+     * @param useNonNumericUncert if <code>true</code> then measurements that
+     * do not have a numeric uncertainty will still be included in the
+     * unweighted average
+     * @param context the averaging context
+     * @return the average of each group, <code>null</code> for the empty
+     * groups
+     */
+    public gamma[] average(boolean limitMinUncert, boolean useNonNumericUncert,
+            averagingContext context){
+        averageResult[] averages = averageResults(limitMinUncert, useNonNumericUncert, context);
+        gamma[] result = new gamma[groups.size()];
+
+        IntStream.range(0, result.length).parallel().forEach(i -> {
+            if(averages[i] != null){
+                result[i] = groups.get(i).averageGamma(averages[i]);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns the numeric outcome of the average of each group, in the same
+     * order, without formatting any strings. The context must have been
+     * prepared (see {@link averagingContext#prepare(int) prepare}) for at
+     * least the number of gammas in the largest group.
+     * @param limitMinUncert <code>true</code> if the uncertainty in the result
+     * cannot be lower than the lowest uncertainty of any of the measurements
+     * which contributed to the average.
+     * @param useNonNumericUncert if <code>true</code> then measurements that
+     * do not have a numeric uncertainty will still be included in the
+     * unweighted average
+     * @param context the averaging context
+     * @return the outcome of the average of each group, <code>null</code> for
+     * the empty groups
+     */
+    public averageResult[] averageResults(boolean limitMinUncert, boolean useNonNumericUncert,
+            averagingContext context){
+        int numRanges = offset.length - 1;
+        double[] weighted = new double[numRanges*averagingKernels.RESULT_LENGTH];
+        double[] nrm = new double[numRanges*averagingKernels.RESULT_LENGTH];
+        averagingKernels.Method[] method = new averagingKernels.Method[numRanges];
+        averageResult[] result = new averageResult[groups.size()];
+        int numChunks;
+
+        numChunks = (numRanges + CHUNK_SIZE - 1)/CHUNK_SIZE;
+        IntStream.range(0, numChunks).parallel().forEach(c -> {
+            averageRanges(c*CHUNK_SIZE, Math.min((c+1)*CHUNK_SIZE, numRanges),
+                    context, weighted, nrm, method);
+        });
+        IntStream.range(0, result.length).parallel().forEach(i -> {
+            result[i] = result(i, limitMinUncert, useNonNumericUncert,
+                    weighted, nrm, method);
+        });
+        return result;
+    }
+
+    //takes the weighted average of each range of more than one measurement,
+    //then NRM if the chi^2 is too high and there are more than two, and
+    //records the accepted method (UNWEIGHTED if neither is accepted, null if
+    //there is a single measurement or the group has a single gamma)
+    private void averageRanges(int first, int last, averagingContext context,
+            double[] weighted, double[] nrm, averagingKernels.Method[] method){
+        double[] tmp = new double[averagingKernels.RESULT_LENGTH];
+        double crit;
+        int k, n;
+
+        for(k=first; k<last; k++){
+            n = offset[k+1] - offset[k];
+            if(groups.get(k/2).getGammas().size() == 1 || n == 1){
+                method[k] = null;
+                continue;
+            }
+            method[k] = averagingKernels.Method.UNWEIGHTED;
+            if(n == 0){
+                continue;
+            }
+            crit = context.getCriticalChiSq(n - 1);
+            averagingKernels.average(averagingKernels.Method.WEIGHTED, value, upper,
+                    lower, offset[k], offset[k+1], tmp);
+            System.arraycopy(tmp, 0, weighted, k*averagingKernels.RESULT_LENGTH,
+                    averagingKernels.RESULT_LENGTH);
+            if(tmp[averagingKernels.REDUCED_CHISQ] < crit){
+                method[k] = averagingKernels.Method.WEIGHTED;
+            }else if(n > 2){
+                averagingKernels.average(averagingKernels.Method.NRM, value, upper,
+                        lower, offset[k], offset[k+1], tmp);
+                System.arraycopy(tmp, 0, nrm, k*averagingKernels.RESULT_LENGTH,
+                        averagingKernels.RESULT_LENGTH);
+                if(tmp[averagingKernels.REDUCED_CHISQ] < crit){
+                    method[k] = averagingKernels.Method.NRM;
+                }
+            }
+        }
+    }
+
+    //the outcome of the average of the i-th group from the averages of its
+    //energies and intensities
+    private averageResult result(int i, boolean limitMinUncert, boolean useNonNumericUncert,
+            double[] weighted, double[] nrm, averagingKernels.Method[] method){
+        gammaEquivalenceClass G = groups.get(i);
+        averageResult result, uwtAve;
+        double[] average;
+        double up, low, minUncert;
+        int q, k, n, j;
+
+        if(G.isEmpty()){
+            return null;
+        }
+        if(G.getGammas().size() == 1){
+            return G.singleGammaResult();
+        }
+        if(method[2*i] == averagingKernels.Method.UNWEIGHTED ||
+                method[2*i + 1] == averagingKernels.Method.UNWEIGHTED){
+            uwtAve = G.uwtAverageResult(limitMinUncert, useNonNumericUncert);
+            if(Double.isNaN(uwtAve.getValue(averageResult.ENERGY)) && !useNonNumericUncert){
+                uwtAve = G.uwtAverageResult(limitMinUncert, true);
+            }
+        }else{
+            uwtAve = null;
+        }
+        result = new averageResult(false);
+        for(q=0; q<2; q++){
+            k = 2*i + q;
+            n = offset[k+1] - offset[k];
+            j = k*averagingKernels.RESULT_LENGTH;
+            if(method[k] == averagingKernels.Method.WEIGHTED ||
+                    method[k] == averagingKernels.Method.NRM){
+                average = method[k] == averagingKernels.Method.WEIGHTED ? weighted : nrm;
+                up = average[j + averagingKernels.UPPER];
+                low = average[j + averagingKernels.LOWER];
+                if(limitMinUncert){
+                    minUncert = averagingKernels.minUncert(upper, lower, offset[k], offset[k+1]);
+                    if(up < minUncert){
+                        up = minUncert;
+                        low = minUncert;
+                    }
+                }
+                result.set(q, average[j + averagingKernels.VALUE], up, low, true,
+                        method[k], average[j + averagingKernels.REDUCED_CHISQ]);
+            }else if(n == 1){
+                result.set(q, value[offset[k]], upper[offset[k]], lower[offset[k]],
+                        true, null, Double.NaN);
+            }else if(uwtAve.isPresent(q)){
+                //with no measurements there are no gamma rays that can be
+                //averaged, most likely because none of the uncertainties are
+                //numeric
+                result.set(q, uwtAve.getValue(q), uwtAve.getUpper(q), uwtAve.getLower(q),
+                        n > 0 && uwtAve.isUncertain(q),
+                        n > 0 ? averagingKernels.Method.UNWEIGHTED : null, Double.NaN);
+            }
+        }
+        return result;
+    }
+}
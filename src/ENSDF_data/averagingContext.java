@@ -0,0 +1,166 @@
+package ENSDF_data;
+
+import averagingAlgorithms.averagingMethods;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * This class holds the settings used to average the measurements of each
+ * unique gamma-ray (see {@link gammaEquivalenceClass#average(boolean, boolean, ENSDF_data.averagingContext)
+ * average}), so that several gamma-rays can be averaged at the same time.
+ * The confidence level used to accept or reject the weighted average and NRM
+ * is carried by the context instead of being set in
+ * <code>averagingMethods.critChiSqConf</code> by each average.
+ *
+ * The averaging library still reads <code>critChiSqConf</code> to fill in
+ * its reports and keeps the critical chi^2 values it computes in a cache
+ * which is not thread safe. {@link #prepare(int) prepare} therefore sets the
+ * field and fills the cache, once, before any averages are taken.
+ *
+ * Date Modified: 18/10/2026
+ *
+ * @author agent
+ */
+public class averagingContext {
+
+    /**
+     * The default confidence level, 99%.
+     */
+    public static final double DEFAULT_CONFIDENCE = 0.99d;
+    /**
+     * The context used when no other is given.
+     */
+    public static final averagingContext DEFAULT = new averagingContext(DEFAULT_CONFIDENCE);
+
+    private final double confidence;
+    private int preparedPoints;
+
+    /**
+     * Creates a new context.
+     * @param confidence the confidence level at which the chi^2 of an
+     * average is too high, between 0 and 1
+     */
+    public averagingContext(double confidence){
+        this.confidence = confidence;
+        this.preparedPoints = 1;
+    }
+
+    /**
+     * Returns the confidence level at which the chi^2 of an average is too
+     * high.
+     * @return the confidence level
+     */
+    public double getConfidence(){
+        return confidence;
+    }
+
+    /**
+     * Returns the critical reduced chi^2 for the given number of degrees of
+     * freedom at the confidence level of this context (see
+     * {@link criticalChiSqTable}).
+     * @param dof the number of degrees of freedom
+     * @return the critical reduced chi^2
+     */
+    public double getCriticalChiSq(int dof){
+        return criticalChiSqTable.get(dof, confidence);
+    }
+
+    /**
+     * Prepares the averaging library to average data sets of up to the given
+     * number of points with this context. This must be called before the
+     * averages are taken, and must not be called while averages using
+     * another context are being taken.
+     * @param maxPoints the largest number of points which will be averaged
+     */
+    public void prepare(int maxPoints){
+        int n;
+
+        synchronized(averagingMethods.class){
+            averagingMethods.critChiSqConf = confidence;
+            for(n=preparedPoints+1; n<=Math.min(maxPoints, criticalChiSqTable.MAX_DOF + 1); n++){
+                averagingMethods.criticalChiSq(n - 1, confidence, true);
+            }
+            preparedPoints = Math.max(preparedPoints, maxPoints);
+        }
+        if(maxPoints > 1){
+            getCriticalChiSq(maxPoints - 1); //fills the table up to maxPoints
+        }
+    }
+
+    /**
+     * Averages each of the given groups of gammas (see
+     * {@link gammaEquivalenceClass#average(boolean, boolean, ENSDF_data.averagingContext)
+     * average}). The groups are averaged together, in parallel, by an
+     * {@link averagingBatch}.
+     * @param gammaGroups the groups of gammas
+     * @param limitMinUncert <code>true</code> if the uncertainty in the result
+     * cannot be lower than the lowest uncertainty of any of the measurements
+     * which contributed to the average.
+     * @param useNonNumericUncert if <code>true</code> then measurements that
+     * do not have a numeric uncertainty will still be included in the
+     * unweighted average
+     * @return the average of each group, in the same order, <code>null</code>
+     * for the empty groups
+     */
+    public gamma[] averageAll(List<gammaEquivalenceClass> gammaGroups,
+            boolean limitMinUncert, boolean useNonNumericUncert){
+        return averageAll(gammaGroups, limitMinUncert, useNonNumericUncert, null);
+    }
+
+    /**
+     * Averages each of the given groups of gammas, as
+     * {@link #averageAll(java.util.List, boolean, boolean) averageAll}, but
+     * takes the averages of groups which have been averaged before from the
+     * given cache and adds the new averages to it.
+     * @param gammaGroups the groups of gammas
+     * @param limitMinUncert <code>true</code> if the uncertainty in the result
+     * cannot be lower than the lowest uncertainty of any of the measurements
+     * which contributed to the average.
+     * @param useNonNumericUncert if <code>true</code> then measurements that
+     * do not have a numeric uncertainty will still be included in the
+     * unweighted average
+     * @param cache the cache of previous averages, or <code>null</code> to
+     * average every group
+     * @return the average of each group, in the same order, <code>null</code>
+     * for the empty groups
+     */
+    public gamma[] averageAll(List<gammaEquivalenceClass> gammaGroups,
+            boolean limitMinUncert, boolean useNonNumericUncert, averageCache cache){
+        gamma[] result = new gamma[gammaGroups.size()];
+        List<gammaEquivalenceClass> missed = new ArrayList<>();
+        List<Integer> missedIndex = new ArrayList<>();
+        gamma[] averages;
+        int i, maxPoints;
+
+        maxPoints = 0;
+        for(gammaEquivalenceClass G : gammaGroups){
+            maxPoints = Math.max(maxPoints, G.getGammas().size());
+        }
+        prepare(maxPoints);
+        if(cache != null){
+            IntStream.range(0, result.length).parallel().forEach(j -> {
+                gammaEquivalenceClass G = gammaGroups.get(j);
+                if(!G.isEmpty() && G.getGammas().size() > 1){
+                    result[j] = cache.get(G, limitMinUncert, useNonNumericUncert, this);
+                }
+            });
+        }
+        //the groups not found in the cache are averaged together
+        for(i=0; i<result.length; i++){
+            if(result[i] == null){
+                missed.add(gammaGroups.get(i));
+                missedIndex.add(i);
+            }
+        }
+        averages = new averagingBatch(missed).average(limitMinUncert,
+                useNonNumericUncert, this);
+        for(i=0; i<averages.length; i++){
+            result[missedIndex.get(i)] = averages[i];
+            if(cache != null && averages[i] != null && missed.get(i).getGammas().size() > 1){
+                cache.put(missed.get(i), limitMinUncert, useNonNumericUncert, this, averages[i]);
+            }
+        }
+        return result;
+    }
+}
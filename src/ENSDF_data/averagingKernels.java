@@ -0,0 +1,790 @@
+package ENSDF_data;
+
+import averagingAlgorithms.averagingMethods;
+import averagingAlgorithms.averagingReport;
+import ensdf_datapoint.dataPt;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.DoubleStream;
+
+/**
+ * This class implements the weighted average, normalized residuals method
+ * (NRM) and unweighted average of the averaging library on primitive arrays.
+ * The measurements are given as three columns of the same length: the
+ * values, the upper uncertainties and the lower uncertainties. The result
+ * of an average is put into an array of length {@link #RESULT_LENGTH}
+ * holding the value, upper uncertainty, lower uncertainty and reduced chi^2
+ * of the average (at {@link #VALUE}, {@link #UPPER}, {@link #LOWER} and
+ * {@link #REDUCED_CHISQ}).
+ *
+ * The results are the same as those of <code>averagingMethods</code>, up to
+ * rounding errors which do not change the averages in ENSDF format, but
+ * the averages are not built from, nor return,
+ * {@link ensdf_datapoint.dataPt dataPt} objects, and the weighted average is
+ * found directly instead of by root finding: the chi^2 of the measurements
+ * is a quadratic function of the mean between consecutive measured values,
+ * since the weight of each measurement only depends on which side of the
+ * mean it is. The inner loops are plain loops over the columns, so that they
+ * can be compiled into vector instructions.
+ *
+ * The limitation of statistical weights method (LWM) and the samples of the
+ * bootstrap method are also implemented on the columns, see
+ * {@link #lwm(double[], double[], double[], int, int, double, double, double[]) lwm}
+ * and {@link #bootstrapMedian(double[], double[], double[], int, int, java.util.Random, double[])
+ * bootstrapMedian}.
+ *
+ * The weighted average and NRM need every uncertainty to be positive; other
+ * measurements are averaged by the library instead (see
+ * {@link #isRegular(double[], double[], double[]) isRegular}). The adapters taking
+ * <code>dataPt</code> arrays can be used in place of the library methods.
+ *
+ * Date Modified: 18/10/2026
+ *
+ * @author agent
+ */
+public final class averagingKernels {
+
+    /**
+     * The averaging methods implemented by the kernels.
+     */
+    public enum Method {
+        /**
+         * The weighted average, see
+         * {@link #weightedAverage(double[], double[], double[], double[]) weightedAverage}.
+         */
+        WEIGHTED,
+        /**
+         * The normalized residuals method at 99% confidence, see
+         * {@link #nrm(double[], double[], double[], double, double[]) nrm}.
+         */
+        NRM,
+        /**
+         * The unweighted average, see
+         * {@link #unweightedAverage(double[], double[], double[], double[]) unweightedAverage}.
+         */
+        UNWEIGHTED
+    }
+
+    /**
+     * The index of the value in the columns and results.
+     */
+    public static final int VALUE = 0;
+    /**
+     * The index of the upper uncertainty in the columns and results.
+     */
+    public static final int UPPER = 1;
+    /**
+     * The index of the lower uncertainty in the columns and results.
+     */
+    public static final int LOWER = 2;
+    /**
+     * The index of the reduced chi^2 in the results.
+     */
+    public static final int REDUCED_CHISQ = 3;
+    /**
+     * The length of the result of an average.
+     */
+    public static final int RESULT_LENGTH = 4;
+
+    //the confidence of the library NRM when none is given
+    private static final double NRM_CONFIDENCE = 0.99d;
+    //(1 - 2/pi), see dataPt.gaussVariance
+    private static final double GAUSS_VARIANCE_FACTOR = 0.3633802276324186d;
+    private static final int MAX_NRM_ITERATIONS = 5000;
+    //the relative weight above the maximum at which LWM changes a weight
+    private static final double LWM_WEIGHT_TOLERANCE = 1e-5;
+
+    private averagingKernels(){
+    }
+
+    /**
+     * Averages the given measurements with the given method.
+     * @param method the averaging method
+     * @param value the measured values
+     * @param upper the upper uncertainties of the measurements
+     * @param lower the lower uncertainties of the measurements
+     * @param result the array, of length at least {@link #RESULT_LENGTH},
+     * the average is put into
+     */
+    public static void average(Method method, double[] value, double[] upper,
+            double[] lower, double[] result){
+        average(method, value, upper, lower, 0, value.length, result);
+    }
+
+    /**
+     * Averages the measurements from index <code>from</code> (inclusive) to
+     * <code>to</code> (exclusive) of the given columns with the given method,
+     * so that the measurements of many averages can be kept in the same
+     * columns (see {@link averagingBatch}).
+     * @param method the averaging method
+     * @param value the measured values
+     * @param upper the upper uncertainties of the measurements
+     * @param lower the lower uncertainties of the measurements
+     * @param from the index of the first measurement
+     * @param to one more than the index of the last measurement
+     * @param result the array, of length at least {@link #RESULT_LENGTH},
+     * the average is put into
+     */
+    public static void average(Method method, double[] value, double[] upper,
+            double[] lower, int from, int to, double[] result){
+        switch(method){
+            case WEIGHTED:
+                weightedAverage(value, upper, lower, from, to, result);
+                break;
+            case NRM:
+                nrm(value, upper, lower, from, to, NRM_CONFIDENCE, result);
+                break;
+            default:
+                unweightedAverage(value, upper, lower, from, to, result);
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if every uncertainty is positive and finite,
+     * and every value is finite, so that the measurements can be averaged
+     * by the weighted average and NRM kernels.
+     * @param value the measured values
+     * @param upper the upper uncertainties of the measurements
+     * @param lower the lower uncertainties of the measurements
+     * @return <code>true</code> if the measurements can be averaged by the
+     * kernels
+     */
+    public static boolean isRegular(double[] value, double[] upper, double[] lower){
+        return isRegular(value, upper, lower, 0, value.length);
+    }
+
+    private static boolean isRegular(double[] value, double[] upper, double[] lower,
+            int from, int to){
+        int i;
+
+        for(i=from; i<to; i++){
+            if(!(upper[i] > 0d && lower[i] > 0d && upper[i] < Double.POSITIVE_INFINITY &&
+                    lower[i] < Double.POSITIVE_INFINITY && Double.isFinite(value[i]))){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes the weighted average of the given (at least two) measurements,
+     * as <code>averagingMethods.weightedAverage</code>. The weight of each
+     * measurement is one over the square of its lower uncertainty if it is
+     * above the mean and of its upper uncertainty otherwise. The uncertainty
+     * is the larger of the internal uncertainty (where the chi^2 is one more
+     * than at the mean) and the external uncertainty (the internal
+     * uncertainty scaled by the square root of the reduced chi^2).
+     * If some uncertainties are not positive the library is used.
+     * @param value the measured values
+     * @param upper the upper uncertainties of the measurements
+     * @param lower the lower uncertainties of the measurements
+     * @param result the array the average is put into
+     */
+    public static void weightedAverage(double[] value, double[] upper, double[] lower,
+            double[] result){
+        weightedAverage(value, upper, lower, 0, value.length, result);
+    }
+
+    private static void weightedAverage(double[] value, double[] upper, double[] lower,
+            int from, int to, double[] result){
+        double mean, chiSq, reducedChiSq, low, high, scale;
+
+        if(!isRegular(value, upper, lower, from, to)){
+            libraryAverage(Method.WEIGHTED, value, upper, lower, from, to, result);
+            return;
+        }
+        mean = weightedMean(value, upper, lower, from, to);
+        chiSq = chiSq(value, upper, lower, from, to, mean);
+        low = mean - chiSqRoot(value, upper, lower, from, to, mean, chiSq + 1d, false);
+        high = chiSqRoot(value, upper, lower, from, to, mean, chiSq + 1d, true) - mean;
+        reducedChiSq = chiSq/(double)(to - from - 1);
+        scale = Math.sqrt(reducedChiSq);
+        if(gaussVariance(high, low) < gaussVariance(scale*high, scale*low)){
+            high = scale*high;
+            low = scale*low;
+        }
+        result[VALUE] = mean;
+        result[UPPER] = high;
+        result[LOWER] = low;
+        result[REDUCED_CHISQ] = reducedChiSq;
+    }
+
+    /**
+     * Computes the normalized residuals method average of the given (at
+     * least two) measurements, as <code>averagingMethods.nrm</code>: while
+     * the largest normalized residual is above the critical value for the
+     * given confidence, the uncertainty of that measurement is increased to
+     * bring its residual to the critical value, and the weighted average is
+     * taken again. The reduced chi^2 is that of the final weighted average.
+     * If some uncertainties are not positive the library is used.
+     * @param value the measured values
+     * @param upper the upper uncertainties of the measurements
+     * @param lower the lower uncertainties of the measurements
+     * @param confidence the confidence level, between 0 and 1
+     * @param result the array the average is put into
+     */
+    public static void nrm(double[] value, double[] upper, double[] lower,
+            double confidence, double[] result){
+        nrm(value, upper, lower, 0, value.length, confidence, result);
+    }
+
+    private static void nrm(double[] value, double[] upper, double[] lower,
+            int from, int to, double confidence, double[] result){
+        double[] up, low, w, r;
+        double p, crit, critSq, W, f, rSq;
+        int i, n, k, iter;
+        boolean done;
+
+        if(!isRegular(value, upper, lower, from, to)){
+            libraryAverage(Method.NRM, value, upper, lower, from, to, result);
+            return;
+        }
+        //the uncertainties are changed, so the measurements are copied
+        value = Arrays.copyOfRange(value, from, to);
+        n = value.length;
+        p = 100d*(1d - confidence);
+        if(p > n){
+            p = n;
+        }
+        crit = Math.sqrt(1.8d*Math.log((double)n/p) + 2.6d);
+        critSq = crit*crit;
+        up = Arrays.copyOfRange(upper, from, to);
+        low = Arrays.copyOfRange(lower, from, to);
+        w = new double[n];
+        r = new double[n];
+        for(i=0; i<n; i++){
+            w[i] = 1d/gaussVariance(up[i], low[i]);
+        }
+        W = sum(w);
+        weightedAverage(value, up, low, result);
+        normalizedResiduals(value, w, W, result[VALUE], r);
+        done = false;
+        iter = 0;
+        while(!done){
+            done = true;
+            k = maxAbsIndex(r);
+            if(Math.abs(r[k]) > crit){
+                done = false;
+                rSq = r[k]*r[k];
+                f = 1d - W*(rSq - critSq)/(W*rSq - w[k]*critSq);
+                w[k] *= f;
+                low[k] = low[k]/Math.sqrt(f);
+                up[k] = up[k]/Math.sqrt(f);
+                W = sum(w);
+                weightedAverage(value, up, low, result);
+                normalizedResiduals(value, w, W, result[VALUE], r);
+            }
+            iter++;
+            if(iter > MAX_NRM_ITERATIONS){
+                done = true;
+            }
+        }
+    }
+
+    /**
+     * Computes the unweighted average of the given measurements, as
+     * <code>averagingMethods.unweightedAverage</code>. The uncertainty is
+     * the larger of the standard error of the mean and the internal
+     * uncertainty of the measurements. There is no reduced chi^2, so
+     * <code>NaN</code> is put in its place.
+     * @param value the measured values
+     * @param upper the upper uncertainties of the measurements
+     * @param lower the lower uncertainties of the measurements
+     * @param result the array the average is put into
+     */
+    public static void unweightedAverage(double[] value, double[] upper, double[] lower,
+            double[] result){
+        unweightedAverage(value, upper, lower, 0, value.length, result);
+    }
+
+    private static void unweightedAverage(double[] value, double[] upper, double[] lower,
+            int from, int to, double[] result){
+        double mean, d, sumSq, sumInv, stdErr, internal;
+        int i, n;
+
+        n = to - from;
+        mean = 0d;
+        for(i=from; i<to; i++){
+            mean += value[i];
+        }
+        mean = mean/(double)n;
+        sumSq = 0d;
+        sumInv = 0d;
+        for(i=from; i<to; i++){
+            d = mean - value[i];
+            sumSq += d*d;
+            sumInv += 1d/gaussVariance(upper[i], lower[i]);
+        }
+        stdErr = Math.sqrt(sumSq/((double)n*(double)(n - 1)));
+        internal = 1d/Math.sqrt(sumInv);
+        result[VALUE] = mean;
+        result[UPPER] = Math.max(internal, stdErr);
+        result[LOWER] = result[UPPER];
+        result[REDUCED_CHISQ] = Double.NaN;
+    }
+
+    /**
+     * Computes the limitation of statistical weights (LWM) average of the
+     * measurements from index <code>from</code> (inclusive) to <code>to</code>
+     * (exclusive), as <code>averagingMethods.lwm</code> without outlier
+     * rejection. If the chi^2 of the weighted average is too high, the
+     * uncertainty of any measurement with a relative weight above
+     * <code>maxWeight</code> is increased until its weight is
+     * <code>maxWeight</code>, and the weighted average is taken again. If
+     * this average still does not overlap the unweighted average, the
+     * unweighted average is used, as the method prescribes (the library asks
+     * the user instead). Otherwise the uncertainty is increased, if needed,
+     * to include the most precise measurement.
+     * @param value the measured values
+     * @param upper the upper uncertainties of the measurements
+     * @param lower the lower uncertainties of the measurements
+     * @param from the index of the first measurement
+     * @param to one more than the index of the last measurement
+     * @param maxWeight the largest relative weight of any measurement,
+     * between 0 and 1
+     * @param confidence the confidence level at which the chi^2 is too high
+     * @param result the array the average is put into
+     */
+    public static void lwm(double[] value, double[] upper, double[] lower,
+            int from, int to, double maxWeight, double confidence, double[] result){
+        double[] v, up, low, w, uwt;
+        double crit, W, f, mean;
+        int i, n, pres;
+        boolean done;
+
+        n = to - from;
+        weightedAverage(value, upper, lower, from, to, result);
+        if(!isRegular(value, upper, lower, from, to)){
+            return;
+        }
+        crit = criticalChiSqTable.get(n - 1, confidence);
+        if(result[REDUCED_CHISQ] < crit){
+            return;
+        }
+        //the uncertainties are changed, so the measurements are copied
+        v = Arrays.copyOfRange(value, from, to);
+        up = Arrays.copyOfRange(upper, from, to);
+        low = Arrays.copyOfRange(lower, from, to);
+        w = new double[n];
+        done = false;
+        while(!done){
+            W = 0d;
+            for(i=0; i<n; i++){
+                w[i] = 1d/gaussVariance(up[i], low[i]);
+                W += w[i];
+            }
+            done = true;
+            for(i=0; i<n; i++){
+                if(w[i]/W - maxWeight > LWM_WEIGHT_TOLERANCE){
+                    //the library sums the weights again, more precisely
+                    f = maxWeight*(sum(w) - w[i])/(w[i]*(1d - maxWeight));
+                    low[i] = low[i]/Math.sqrt(f);
+                    up[i] = up[i]/Math.sqrt(f);
+                    done = false;
+                    break;
+                }
+            }
+        }
+        weightedAverage(v, up, low, 0, n, result);
+        uwt = new double[RESULT_LENGTH];
+        unweightedAverage(v, up, low, 0, n, uwt);
+        if(!overlaps(result, uwt) && result[REDUCED_CHISQ] > crit){
+            uwt[REDUCED_CHISQ] = result[REDUCED_CHISQ];
+            System.arraycopy(uwt, 0, result, 0, RESULT_LENGTH);
+            return;
+        }
+        //the most precise measurement; of those which are equally precise
+        //the farthest from the average is taken, as the library does in
+        //findPresValue
+        mean = result[VALUE];
+        pres = 0;
+        for(i=1; i<n; i++){
+            if(gaussVariance(up[pres], low[pres]) > gaussVariance(up[i], low[i])){
+                pres = i;
+            }else if(gaussVariance(up[pres], low[pres]) == gaussVariance(up[i], low[i]) &&
+                    Math.abs(v[pres] - mean) < Math.abs(v[i] - mean)){
+                pres = i;
+            }
+        }
+        uwt[VALUE] = v[pres];
+        uwt[UPPER] = up[pres];
+        uwt[LOWER] = low[pres];
+        if(!overlaps(result, uwt) && result[REDUCED_CHISQ] > crit){
+            if(mean < v[pres]){
+                result[UPPER] = Math.abs(mean - (v[pres] - low[pres]));
+            }else{
+                result[UPPER] = Math.abs(mean - (v[pres] + up[pres]));
+            }
+            result[LOWER] = result[UPPER];
+        }
+    }
+
+    /**
+     * Returns the median of one bootstrap sample of the measurements from
+     * index <code>from</code> (inclusive) to <code>to</code> (exclusive), as
+     * in <code>averagingMethods.bootstrap</code>. The sample has as many
+     * points as there are measurements; each point is a measurement chosen at
+     * random (with replacement) moved by a random amount drawn from the
+     * asymmetric normal distribution given by its uncertainties. The bootstrap
+     * average is the mean of the medians of many samples and its uncertainty
+     * is their standard deviation. Only the given random number generator is
+     * used, so samples can be drawn in parallel with independent generators.
+     * @param value the measured values
+     * @param upper the upper uncertainties of the measurements
+     * @param lower the lower uncertainties of the measurements
+     * @param from the index of the first measurement
+     * @param to one more than the index of the last measurement
+     * @param rng the random number generator
+     * @param work an array of length at least <code>to - from</code> used to
+     * hold the sample
+     * @return the median of the sample
+     */
+    public static double bootstrapMedian(double[] value, double[] upper, double[] lower,
+            int from, int to, Random rng, double[] work){
+        int i, j, n;
+
+        n = to - from;
+        for(i=0; i<n; i++){
+            j = from + rng.nextInt(n);
+            if(rng.nextDouble() < lower[j]/(upper[j] + lower[j])){
+                work[i] = value[j] - Math.abs(rng.nextGaussian()*lower[j]);
+            }else{
+                work[i] = value[j] + Math.abs(rng.nextGaussian()*upper[j]);
+            }
+        }
+        Arrays.sort(work, 0, n);
+        if(n % 2 == 0){
+            return 0.5d*(work[n/2] + work[n/2 - 1]);
+        }
+        return work[n/2];
+    }
+
+    /**
+     * Returns the smallest uncertainty of the given measurements, as
+     * <code>averagingReport.minUncert</code>, or 0 if there are none.
+     * @param upper the upper uncertainties of the measurements
+     * @param lower the lower uncertainties of the measurements
+     * @return the smallest uncertainty
+     */
+    public static double minUncert(double[] upper, double[] lower){
+        return minUncert(upper, lower, 0, upper.length);
+    }
+
+    /**
+     * Returns the smallest uncertainty of the measurements from index
+     * <code>from</code> (inclusive) to <code>to</code> (exclusive), or 0 if
+     * there are none.
+     * @param upper the upper uncertainties of the measurements
+     * @param lower the lower uncertainties of the measurements
+     * @param from the index of the first measurement
+     * @param to one more than the index of the last measurement
+     * @return the smallest uncertainty
+     */
+    public static double minUncert(double[] upper, double[] lower, int from, int to){
+        double result, s;
+        int i;
+
+        if(to <= from){
+            return 0d;
+        }
+        result = Math.sqrt(gaussVariance(upper[from], lower[from]));
+        for(i=from+1; i<to; i++){
+            s = Math.sqrt(gaussVariance(upper[i], lower[i]));
+            if(s < result){
+                result = s;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the columns (see {@link #VALUE}, {@link #UPPER} and
+     * {@link #LOWER}) of the given measurements.
+     * @param points the measurements
+     * @return the values, upper uncertainties and lower uncertainties of the
+     * measurements
+     */
+    public static double[][] columns(List<dataPt> points){
+        double[][] result = new double[3][points.size()];
+        int i;
+
+        for(i=0; i<points.size(); i++){
+            result[VALUE][i] = points.get(i).getValue();
+            result[UPPER][i] = points.get(i).getUpper();
+            result[LOWER][i] = points.get(i).getLower();
+        }
+        return result;
+    }
+
+    /**
+     * Computes the weighted average of the given measurements with the
+     * kernel, in place of <code>averagingMethods.weightedAverage</code>.
+     * Only the original data set, reduced chi^2 and method name of the
+     * report are filled in.
+     * @param data the measurements
+     * @param rpt the report to fill in, may be <code>null</code>
+     * @return the weighted average
+     */
+    public static dataPt weightedAverage(dataPt[] data, averagingReport rpt){
+        return average(Method.WEIGHTED, data, rpt, "Weighted Average");
+    }
+
+    /**
+     * Computes the NRM average of the given measurements with the kernel, in
+     * place of <code>averagingMethods.nrm</code>. Only the original data set,
+     * reduced chi^2 and method name of the report are filled in.
+     * @param data the measurements
+     * @param rpt the report to fill in, may be <code>null</code>
+     * @return the NRM average
+     */
+    public static dataPt nrm(dataPt[] data, averagingReport rpt){
+        return average(Method.NRM, data, rpt, "Normalized Residuals Method");
+    }
+
+    /**
+     * Computes the unweighted average of the given measurements with the
+     * kernel, in place of <code>averagingMethods.unweightedAverage</code>.
+     * Only the original data set and method name of the report are filled
+     * in.
+     * @param data the measurements
+     * @param rpt the report to fill in, may be <code>null</code>
+     * @return the unweighted average
+     */
+    public static dataPt unweightedAverage(dataPt[] data, averagingReport rpt){
+        return average(Method.UNWEIGHTED, data, rpt, "Unweighted Average");
+    }
+
+    private static dataPt average(Method method, dataPt[] data, averagingReport rpt,
+            String methodName){
+        double[][] columns = columns(Arrays.asList(data));
+        double[] result = new double[RESULT_LENGTH];
+
+        average(method, columns[VALUE], columns[UPPER], columns[LOWER], result);
+        if(rpt != null){
+            rpt.originalDataSet = data;
+            if(method != Method.UNWEIGHTED){
+                rpt.reducedChiSq = result[REDUCED_CHISQ];
+            }
+            rpt.methodName = methodName;
+        }
+        return new dataPt(result[VALUE], result[UPPER], result[LOWER], methodName);
+    }
+
+    //averages measurements the kernels cannot with the library
+    private static void libraryAverage(Method method, double[] value, double[] upper,
+            double[] lower, int from, int to, double[] result){
+        dataPt[] data = new dataPt[to - from];
+        averagingReport rpt = new averagingReport();
+        dataPt average;
+        int i;
+
+        for(i=from; i<to; i++){
+            data[i - from] = new dataPt(value[i], upper[i], lower[i]);
+        }
+        if(method == Method.NRM){
+            average = averagingMethods.nrm(data, rpt);
+        }else{
+            average = averagingMethods.weightedAverage(data, rpt);
+        }
+        result[VALUE] = average.getValue();
+        result[UPPER] = average.getUpper();
+        result[LOWER] = average.getLower();
+        result[REDUCED_CHISQ] = rpt.reducedChiSq;
+    }
+
+    //the mean minimizing the chi^2; between consecutive measured values the
+    //weights are fixed, so the mean is the weighted mean for the weights of
+    //the interval in which the derivative of the chi^2 changes sign
+    private static double weightedMean(double[] value, double[] upper, double[] lower,
+            int from, int to){
+        double[] x;
+        double lo, hi;
+        int i, n;
+
+        x = Arrays.copyOfRange(value, from, to);
+        n = x.length;
+        Arrays.sort(x);
+        if(x[0] == x[n-1]){
+            return x[0];
+        }
+        if(isSymmetric(upper, lower, from, to)){
+            return fixedWeightMean(value, upper, lower, from, to, Double.NEGATIVE_INFINITY);
+        }
+        lo = x[0];
+        for(i=1; i<n; i++){
+            hi = x[i];
+            if(hi == lo){
+                continue;
+            }
+            if(slope(value, upper, lower, from, to, hi) <= 0d){
+                //the mean is in [lo, hi], where the measurements above lo
+                //are above the mean
+                return Math.min(Math.max(fixedWeightMean(value, upper, lower, from, to, lo),
+                        lo), hi);
+            }
+            lo = hi;
+        }
+        return lo; //all values are equal
+    }
+
+    private static boolean isSymmetric(double[] upper, double[] lower, int from, int to){
+        int i;
+
+        for(i=from; i<to; i++){
+            if(upper[i] != lower[i]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //the weighted mean with the lower uncertainty used for the measurements
+    //above the given value and the upper uncertainty for the others
+    private static double fixedWeightMean(double[] value, double[] upper, double[] lower,
+            int from, int to, double above){
+        double sw, swx, w;
+        int i;
+
+        sw = 0d;
+        swx = 0d;
+        for(i=from; i<to; i++){
+            w = value[i] > above ? 1d/(lower[i]*lower[i]) : 1d/(upper[i]*upper[i]);
+            swx += w*value[i];
+            sw += w;
+        }
+        return swx/sw;
+    }
+
+    //the weighted sum of the residuals at y; this decreases with y and is 0
+    //at the weighted mean
+    private static double slope(double[] value, double[] upper, double[] lower,
+            int from, int to, double y){
+        double result;
+        int i;
+
+        result = 0d;
+        for(i=from; i<to; i++){
+            result += (value[i] > y ? 1d/(lower[i]*lower[i]) : 1d/(upper[i]*upper[i]))*
+                    (value[i] - y);
+        }
+        return result;
+    }
+
+    //the chi^2 of the measurements about y
+    private static double chiSq(double[] value, double[] upper, double[] lower,
+            int from, int to, double y){
+        double result, d;
+        int i;
+
+        result = 0d;
+        for(i=from; i<to; i++){
+            d = value[i] - y;
+            result += (value[i] > y ? 1d/(lower[i]*lower[i]) : 1d/(upper[i]*upper[i]))*(d*d);
+        }
+        return result;
+    }
+
+    //the point below (or above) the mean at which the chi^2 is equal to the
+    //target; the chi^2 increases away from the mean, so the breakpoints are
+    //checked outwards until the target is passed, then the quadratic of the
+    //interval is solved
+    private static double chiSqRoot(double[] value, double[] upper, double[] lower,
+            int from, int to, double mean, double target, boolean above){
+        double[] x;
+        double near, far, side, sw, sd, sdd, w, d, t, disc;
+        int i, n;
+
+        x = Arrays.copyOfRange(value, from, to);
+        n = x.length;
+        Arrays.sort(x);
+        near = mean;
+        far = above ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+        if(above){
+            for(i=0; i<n; i++){
+                if(x[i] > near){
+                    if(chiSq(value, upper, lower, from, to, x[i]) >= target){
+                        far = x[i];
+                        break;
+                    }
+                    near = x[i];
+                }
+            }
+        }else{
+            for(i=n-1; i>=0; i--){
+                if(x[i] < near){
+                    if(chiSq(value, upper, lower, from, to, x[i]) >= target){
+                        far = x[i];
+                        break;
+                    }
+                    near = x[i];
+                }
+            }
+        }
+        //in the interval between near and far the measurements above the
+        //point are those above the lower end of the interval
+        side = above ? near : far;
+        sw = 0d;
+        sd = 0d;
+        sdd = 0d;
+        for(i=from; i<to; i++){
+            w = value[i] > side ? 1d/(lower[i]*lower[i]) : 1d/(upper[i]*upper[i]);
+            d = value[i] - mean;
+            sw += w;
+            sd += w*d;
+            sdd += w*(d*d);
+        }
+        //sw*t^2 - 2*sd*t + sdd - target = 0, with t the distance from the mean
+        disc = Math.sqrt(Math.max(sd*sd - sw*(sdd - target), 0d));
+        t = above ? (sd + disc)/sw : (sd - disc)/sw;
+        t = mean + t;
+        if(above){
+            return Math.min(Math.max(t, near), far);
+        }else{
+            return Math.max(Math.min(t, near), far);
+        }
+    }
+
+    private static void normalizedResiduals(double[] value, double[] w, double W,
+            double mean, double[] r){
+        int i;
+
+        for(i=0; i<value.length; i++){
+            r[i] = Math.sqrt(w[i]*W/(W - w[i]))*(value[i] - mean);
+        }
+    }
+
+    //the index of the largest absolute value, the first if there are several
+    private static int maxAbsIndex(double[] r){
+        double max;
+        int i, result;
+
+        result = 0;
+        max = Math.abs(r[0]);
+        for(i=1; i<r.length; i++){
+            if(Math.abs(r[i]) > max){
+                max = Math.abs(r[i]);
+                result = i;
+            }
+        }
+        return result;
+    }
+
+    //a compensated sum, as used by the library
+    private static double sum(double[] a){
+        return DoubleStream.of(a).sum();
+    }
+
+    //true if the uncertainty ranges of the two results overlap, as dataPt.overlaps
+    private static boolean overlaps(double[] a, double[] b){
+        double[] high, low;
+
+        high = a[VALUE] > b[VALUE] ? a : b;
+        low = a[VALUE] > b[VALUE] ? b : a;
+        return high[VALUE] - high[LOWER] < low[VALUE] + low[UPPER];
+    }
+
+    private static double gaussVariance(double upper, double lower){
+        return GAUSS_VARIANCE_FACTOR*((upper - lower)*(upper - lower)) + upper*lower;
+    }
+}
@@ -0,0 +1,82 @@
+package ENSDF_data;
+
+import averagingAlgorithms.CriticalChiSquare;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class is a table of critical reduced chi^2 values, keyed by the number
+ * of degrees of freedom and the confidence level. The values are the same as
+ * those given by <code>averagingMethods.criticalChiSq(dof, conf, true)</code>,
+ * but each is only computed once, the first time a confidence level is used
+ * the values for the first {@link #INITIAL_DOF} degrees of freedom are
+ * computed together, and the table is extended as larger numbers of degrees
+ * of freedom are needed. The table can be used by several threads at once.
+ *
+ * Date Modified: 18/10/2026
+ *
+ * @author agent
+ */
+public final class criticalChiSqTable {
+
+    /**
+     * The number of degrees of freedom computed when a confidence level is
+     * first used.
+     */
+    public static final int INITIAL_DOF = 64;
+    /**
+     * The largest number of degrees of freedom in the table; larger numbers
+     * use this value (as in the averaging library).
+     */
+    public static final int MAX_DOF = 340;
+
+    //reduced critical chi^2 for each confidence level, indexed by the number
+    //of degrees of freedom (element 0 is not used). The arrays are never
+    //modified once they are in the map.
+    private static final ConcurrentHashMap<Double, double[]> TABLES = new ConcurrentHashMap<>();
+
+    private criticalChiSqTable(){
+    }
+
+    /**
+     * Returns the critical reduced chi^2 for the given number of degrees of
+     * freedom and confidence level.
+     * @param dof the number of degrees of freedom, at least 1
+     * @param confidence the confidence level, between 0 and 1
+     * @return the critical reduced chi^2
+     */
+    public static double get(int dof, double confidence){
+        double[] values;
+
+        if(dof < 1){
+            throw new IllegalArgumentException("At least 1 degree of freedom is needed.");
+        }
+        dof = Math.min(dof, MAX_DOF);
+        values = TABLES.get(confidence);
+        if(values == null || values.length <= dof){
+            values = extend(dof, confidence);
+        }
+        return values[dof];
+    }
+
+    private static synchronized double[] extend(int dof, double confidence){
+        double[] values, result;
+        int n, start;
+
+        values = TABLES.get(confidence);
+        if(values != null && values.length > dof){
+            return values; //extended by another thread
+        }
+        n = Math.min(Math.max(2*dof, INITIAL_DOF), MAX_DOF) + 1;
+        result = new double[n];
+        start = 1;
+        if(values != null){
+            System.arraycopy(values, 0, result, 0, values.length);
+            start = values.length;
+        }
+        for(int i=start; i<n; i++){
+            result[i] = new CriticalChiSquare(i, confidence).getValue(true);
+        }
+        TABLES.put(confidence, result);
+        return result;
+    }
+}
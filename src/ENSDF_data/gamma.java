@@ -29,6 +29,10 @@ public class gamma {
     public String intensityAveragingMethod; //name of the averaging method used to obtain Ig; if any
     public String intensityChiSq; //chi^2 for intensity (if obtained from an average)
     public boolean matched; //used when determining which gammas are the same
+    //parsed energy, intensity and normalized intensity, see getEnergyDataPt;
+    //null if not parsed yet, NOT_PARSABLE if they could not be parsed
+    private volatile dataPt energyDataPt, intensityDataPt, renormIntensityDataPt;
+    private static final dataPt NOT_PARSABLE = new dataPt();
     
     /**
      * Creates a gamma object from the ENSDF gamma record.
@@ -142,6 +146,10 @@ public class gamma {
         this.intensitySymbol = g.intensitySymbol;
         this.gammaContinuationRecords = new ArrayList<>(g.gammaContinuationRecords);
         this.matched = g.matched;
+        //the parsed values are never modified, so they can be shared
+        this.energyDataPt = g.energyDataPt;
+        this.intensityDataPt = g.intensityDataPt;
+        this.renormIntensityDataPt = g.renormIntensityDataPt;
     }
     
     /**
@@ -288,12 +296,62 @@ public class gamma {
      * the relative intensity and its uncertainty
      */
     public dataPt getIntensityDataPt(){
+        return getIntensityDataPt(false);
+    }
+    
+    /**
+     * Returns the {@link ensdf_datapoint.dataPt dataPt} object created from
+     * the relative intensity and its uncertainty, or <code>null</code> if
+     * they cannot be parsed (e.g. the uncertainty is not numeric). The
+     * String values are only parsed once; a new object is returned by each
+     * call, so it may be modified by the caller.
+     * @param renorm if <code>true</code> then the normalized intensity
+     * (see {@link #getIg(boolean) getIg}) is used
+     * @return the {@link ensdf_datapoint.dataPt dataPt} object created from
+     * the relative intensity and its uncertainty
+     */
+    public dataPt getIntensityDataPt(boolean renorm){
         dataPt result;
-        result = new dataPt();
-        if(dataPt.isParsable(getIg() + " " + getDIg(), result)){
+        if(renorm){
+            result = renormIntensityDataPt;
+            if(result == null){
+                result = parse(getIg(true), getDIg(true));
+                renormIntensityDataPt = result;
+            }
+        }else{
+            result = intensityDataPt;
+            if(result == null){
+                result = parse(getIg(), getDIg());
+                intensityDataPt = result;
+            }
+        }
+        return result == NOT_PARSABLE ? null : new dataPt(result);
+    }
+    
+    /**
+     * Returns the {@link ensdf_datapoint.dataPt dataPt} object created from
+     * the energy and its uncertainty, or <code>null</code> if they cannot be
+     * parsed (e.g. the uncertainty is not numeric). The String values are 
+     * only parsed once; a new object is returned by each call, so it may be 
+     * modified by the caller.
+     * @return the {@link ensdf_datapoint.dataPt dataPt} object created from
+     * the energy and its uncertainty
+     */
+    public dataPt getEnergyDataPt(){
+        dataPt result = energyDataPt;
+        if(result == null){
+            result = parse(getEg(), getDEg());
+            energyDataPt = result;
+        }
+        return result == NOT_PARSABLE ? null : new dataPt(result);
+    }
+    
+    private static dataPt parse(String value, String uncert){
+        dataPt result = new dataPt();
+        if(dataPt.isParsable(value + " " + uncert, result)){
             return result;
         }else{
-            return null;
+            return NOT_PARSABLE;
         }
     }
 
@@ -393,6 +451,7 @@ public class gamma {
     public void setIg(String intensity){
         this.gammaRecord.setRI(intensity);
         this.ig = DoubleUtils.safeParse(intensity);
+        this.intensityDataPt = null;
     }
     /**
      * Sets the uncertainty of the intensity of the gamma to the given String.
@@ -403,6 +462,7 @@ public class gamma {
     public void setDIg(String Dintensity){
         this.gammaRecord.setDRI(Dintensity);
         this.dig = DoubleUtils.safeParse(Dintensity);
+        this.intensityDataPt = null;
     }
     
     /**
@@ -418,6 +478,7 @@ public class gamma {
         this.gammaRecord.setDRI(tmp.split(" ")[1].trim());
         this.ig = Optional.of(I);
         this.dig = Optional.of(DI);
+        this.intensityDataPt = null;
     }
     
     /**
@@ -432,6 +493,7 @@ public class gamma {
         this.gammaRecord.setRI(tmp.split(" ")[0].trim());
         this.gammaRecord.setDRI(tmp.split(" ")[1].trim());
         this.dig = Optional.of(Dintensity);
+        this.intensityDataPt = null;
     }
     
     /**
@@ -442,6 +504,7 @@ public class gamma {
     public void setEg(String energy) {
         this.gammaRecord.setE(energy);
         this.eg = DoubleUtils.safeParse(energy);
+        this.energyDataPt = null;
     }
     
     /**
@@ -452,6 +515,7 @@ public class gamma {
     public void setDEg(String Denergy){
         this.gammaRecord.setDE(Denergy);
         this.deg = DoubleUtils.safeParse(Denergy);
+        this.energyDataPt = null;
     }
     
     /**
@@ -467,6 +531,7 @@ public class gamma {
         this.gammaRecord.setDE(tmp.split(" ")[1].trim());
         this.eg = Optional.of(E);
         this.deg = Optional.of(DE);
+        this.energyDataPt = null;
     }
     
     /**
@@ -481,6 +546,7 @@ public class gamma {
         this.gammaRecord.setE(tmp.split(" ")[0].trim());
         this.gammaRecord.setDE(tmp.split(" ")[1].trim());
         this.deg = Optional.of(Denergy);
+        this.energyDataPt = null;
     }
     
     /**
@@ -491,6 +557,7 @@ public class gamma {
      */
     public void setIg_renorm(String intensity){
         this.Ig_renorm = intensity;
+        this.renormIntensityDataPt = null;
     }
     /**
      * Sets the uncertainty of the intensity of the gamma-ray to the given String,
@@ -501,6 +568,7 @@ public class gamma {
      */
     public void setDIg_renorm(String Dintensity){
         this.DIg_renorm = Dintensity;
+        this.renormIntensityDataPt = null;
     }
     
     /**
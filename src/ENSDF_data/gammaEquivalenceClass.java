@@ -5,7 +5,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.function.BiFunction;
-import averagingAlgorithms.averagingMethods;
 import averagingAlgorithms.averagingReport;
 import ensdf_datapoint.dataPt;
 
@@ -152,6 +151,22 @@ public class gammaEquivalenceClass {
         return false;
     }
     
+    /**
+     * Returns <code>true</code> if a gamma which is not from 'ADOPTED LEVELS, 
+     * GAMMAS' is present in the equivalence class. Such classes are the ones
+     * which have a row in the GAMUT intensity matrices.
+     * @return <code>true</code> if a gamma which is not from 'ADOPTED LEVELS, 
+     * GAMMAS' is present in the equivalence class.
+     */
+    public final boolean containsNonAdopted(){
+        for(gamma g : this.gammas){
+            if(!g.isAdopted()){
+                return true;
+            }
+        }
+        return false;
+    }
+    
     /**
      * Sorts the equivalence class by energy and moves the Adopted gamma to
      * the top, if present.
@@ -205,10 +220,8 @@ public class gammaEquivalenceClass {
      */
     public gamma average(BiFunction<dataPt[], averagingReport, dataPt> averagingMethod, 
             averagingReport rptE, averagingReport rptI, boolean limitMinUncert){
-        gamma result;
         List<dataPt> energies, intensities;
-        String tmp, energyResult, intensityResult;
-        dataPt averageEg, averageIg;
+        dataPt averageEg, averageIg, dp;
         double minUncertE, minUncertI;
         gamma tmpG;
         
@@ -220,14 +233,13 @@ public class gammaEquivalenceClass {
             if(g.isAdopted()){
                 continue;
             }
-            tmp = g.getSource();
-            tmp = tmp + ": " + g.getEg() + " " + g.getDEg();
-            if(dataPt.isParsable(tmp)){
-                energies.add(dataPt.constructFromString(tmp));
+            dp = energyDataPt(g);
+            if(dp != null){
+                energies.add(dp);
             }
-            tmp = g.getSource() + ": " + g.getIg(true) + " " + g.getDIg(true);
-            if(dataPt.isParsable(tmp)){
-                intensities.add(dataPt.constructFromString(tmp));
+            dp = intensityDataPt(g);
+            if(dp != null){
+                intensities.add(dp);
             }
         }
         
@@ -248,13 +260,14 @@ public class gammaEquivalenceClass {
         }else{
             averageIg = averagingMethod.apply(intensities.toArray(new dataPt[0]), rptI);
         }
-        try{
+        //the names are only built when there are reports to hold them
+        if(rptE != null){
             rptE.dataSetName = this.levelString + " -- Eg: " + 
                     String.valueOf(Math.round(averageEg.getValue()));
+        }
+        if(rptI != null){
             rptI.dataSetName = this.levelString + " -- Ig: " + 
                     String.valueOf(Math.round(averageEg.getValue()));
-        }catch(NullPointerException e){
-            //do nothing, no reports
         }
         try{
             minUncertE = rptE.minUncert();
@@ -266,25 +279,22 @@ public class gammaEquivalenceClass {
         }catch(NullPointerException e){
             minUncertI = 0d;
         }
-        if(limitMinUncert){
-            if(averageEg.getUpper() < minUncertE){
-                averageEg.setUpper(minUncertE);
-                averageEg.setLower(minUncertE);
-            }
-        }
-        tmp = averageEg.toString(false).replace("(", " ").replace(")", "");
-        energyResult = dataPt.ENSDFprint(tmp.split(" ")[0],  tmp.split(" ")[1], true);
+        return formatAverage(averageEg, averageIg, minUncertE, minUncertI, limitMinUncert);
+    }
+    
+    //formats the given average energy and intensity (which may be null) into
+    //the average gamma of this class, the uncertainties are first raised to 
+    //the given minimums if limitMinUncert is true
+    private gamma formatAverage(dataPt averageEg, dataPt averageIg, double minUncertE, 
+            double minUncertI, boolean limitMinUncert){
+        gamma result;
+        String[] energyResult, intensityResult;
+        
+        energyResult = printAverage(averageEg, true, minUncertE, limitMinUncert);
         try{
-            if(limitMinUncert){
-                if(averageIg.getUpper() < minUncertI){
-                   averageIg.setUpper(minUncertI);
-                   averageIg.setLower(minUncertI);
-                }
-            }
-            intensityResult = dataPt.ENSDFprint(String.valueOf(averageIg.getValue()), 
-                String.valueOf(averageIg.getUpper()), false);
-            result = new gamma(energyResult.split(" ")[0], energyResult.split(" ")[1],
-                intensityResult.split(" ")[0], intensityResult.split(" ")[1], false,
+            intensityResult = printAverage(averageIg, false, minUncertI, limitMinUncert);
+            result = new gamma(energyResult[0], energyResult[1],
+                intensityResult[0], intensityResult[1], false,
                 false, this.levelString + " average gamma: " + 
                     String.valueOf(Math.round(averageEg.getValue())), "", "");
             result.getGammaRecord().setNucid(this.gammas.get(0).getGammaRecord().getNucid());
@@ -292,7 +302,7 @@ public class gammaEquivalenceClass {
             result.setFinalLevel(this.gammas.get(0).getFinalLevel());
             return result;
         }catch(NullPointerException e){
-            result = new gamma(energyResult.split(" ")[0], energyResult.split(" ")[1],
+            result = new gamma(energyResult[0], energyResult[1],
             "", "", false, false, this.levelString + " average gamma: " + 
                     String.valueOf(Math.round(averageEg.getValue())), "", "");
             result.getGammaRecord().setNucid(this.gammas.get(0).getGammaRecord().getNucid());
@@ -302,6 +312,38 @@ public class gammaEquivalenceClass {
         }
     }
     
+    /**
+     * Returns the value and uncertainty of the given average energy or 
+     * intensity in ENSDF format, as they appear in the average gamma. The
+     * uncertainty is first raised to the given minimum if 
+     * <code>limitMinUncert</code> is <code>true</code>.
+     * @param average the average
+     * @param isEnergy <code>true</code> if the average is an energy
+     * @param minUncert the lowest uncertainty of the measurements
+     * @param limitMinUncert <code>true</code> if the uncertainty in the result
+     * cannot be lower than the lowest uncertainty of any of the measurements 
+     * which contributed to the average.
+     * @return the value and uncertainty in ENSDF format
+     */
+    static String[] printAverage(dataPt average, boolean isEnergy, double minUncert, 
+            boolean limitMinUncert){
+        String tmp;
+        
+        if(limitMinUncert){
+            if(average.getUpper() < minUncert){
+                average.setUpper(minUncert);
+                average.setLower(minUncert);
+            }
+        }
+        if(isEnergy){
+            tmp = average.toString(false).replace("(", " ").replace(")", "");
+            return dataPt.ENSDFprint(tmp.split(" ")[0],  tmp.split(" ")[1], true).split(" ");
+        }else{
+            return dataPt.ENSDFprint(String.valueOf(average.getValue()), 
+                String.valueOf(average.getUpper()), false).split(" ");
+        }
+    }
+    
     //returns a gamma ray which has the unweighted average energy 
     //and intensity of the gammas in the data set. This function 
     //will also use data points which have no uncertainty listed
@@ -320,36 +362,68 @@ public class gammaEquivalenceClass {
      * class.
      */
     public gamma uwtAverage(boolean limitMinUncert, boolean useNonNumericUncert){
+        averageResult average;
+        String[] energyResult, intensityResult;
+        gamma result;
+        
+        average = uwtAverageResult(limitMinUncert, useNonNumericUncert);
+        energyResult = printResult(average, averageResult.ENERGY);
+        intensityResult = printResult(average, averageResult.INTENSITY);
+        result = new gamma(energyResult[0], energyResult[1],
+                intensityResult[0], intensityResult[1], false,
+                false, this.levelString + " average gamma: " + 
+                    String.valueOf(Math.round(average.getValue(averageResult.ENERGY))), "", "");
+        
+        result.getGammaRecord().setNucid(this.gammas.get(0).getGammaRecord().getNucid());
+        result.setParent(this.gammas.get(0).getParent());
+        result.setFinalLevel(this.gammas.get(0).getFinalLevel());
+        
+        return result;
+    }
+    
+    /**
+     * Returns the unweighted averages of the energies and intensities of the
+     * gammas in the equivalence class, as in 
+     * {@link #uwtAverage(boolean, boolean) uwtAverage}, without formatting
+     * them. The uncertainty of an average is not known if none of the
+     * measurements has a numeric uncertainty.
+     * @param limitMinUncert <code>true</code> if the uncertainty in the result
+     * cannot be lower than the lowest uncertainty of any of the measurements 
+     * which contributed to the average.
+     * @param useNonNumericUncert if <code>true</code> then measurements that
+     * do not have a numeric uncertainty will still be included in the average.
+     * They are excluded otherwise.
+     * @return the unweighted averages, there is no intensity if none of the
+     * gammas has a numeric intensity
+     */
+    averageResult uwtAverageResult(boolean limitMinUncert, boolean useNonNumericUncert){
         List<dataPt> energies, intensities;
-        String tmp, energyResult, intensityResult;
-        dataPt averageEg, averageIg;
+        dataPt averageEg, averageIg, dp;
         boolean noUncertE, noUncertI;
-        gamma result;
+        averageResult result;
         double minUncertE, minUncertI;
-        averagingReport rptE,rptI;
         
         energies = new ArrayList<>();
         intensities = new ArrayList<>();
         noUncertE = true;
         noUncertI = true;
-        rptE = new averagingReport();
-        rptI = new averagingReport();
+        minUncertE = 0d;
+        minUncertI = 0d;
         for(gamma g : this.gammas){
             //Adopted levels do not contribute to average
             if(g.isAdopted()){
                 continue;
             }
-            tmp = g.getSource();
-            tmp = tmp + ": " + g.getEg() + " " + g.getDEg();
-            if(dataPt.isParsable(tmp)){
-                energies.add(dataPt.constructFromString(tmp));
+            dp = energyDataPt(g);
+            if(dp != null){
+                energies.add(dp);
                 noUncertE = false;
             }else if(g.eg.isPresent() && useNonNumericUncert){
                 energies.add(new dataPt(g.eg.get(), 0d, 0d));
             }
-            tmp = g.getSource() + ": " + g.getIg(true) + " " + g.getDIg(true);
-            if(dataPt.isParsable(tmp)){
-                intensities.add(dataPt.constructFromString(tmp));
+            dp = intensityDataPt(g);
+            if(dp != null){
+                intensities.add(dp);
                 noUncertI = false;
             }else if(isNumericString(g.getIg(true)) && useNonNumericUncert){
                 intensities.add(new dataPt(Double.parseDouble(g.getIg(true)),
@@ -360,7 +434,8 @@ public class gammaEquivalenceClass {
         if(energies.size() == 1){
             averageEg = energies.get(0);
         }else{
-            averageEg = averagingMethods.unweightedAverage(energies.toArray(new dataPt[0]), rptE);
+            averageEg = unweightedAverage(energies);
+            minUncertE = minUncert(energies);
         }
         if(intensities.isEmpty()){
             //intensities could be empty because none of the gamma rays have
@@ -377,62 +452,38 @@ public class gammaEquivalenceClass {
             }else if(intensities.size() == 1){
                 averageIg = intensities.get(0);
             }else{
-                averageIg = averagingMethods.unweightedAverage(intensities.toArray(new dataPt[0]), rptI);
+                averageIg = unweightedAverage(intensities);
+                minUncertI = minUncert(intensities);
             }
         }else if(intensities.size() == 1){
             averageIg = intensities.get(0);
         }else{
-            averageIg = averagingMethods.unweightedAverage(intensities.toArray(new dataPt[0]), rptI);
+            averageIg = unweightedAverage(intensities);
+            minUncertI = minUncert(intensities);
         }
         
-        try{
-            minUncertE = rptE.minUncert();
-        }catch(NullPointerException e){
-            minUncertE = 0d;
-        }
-        try{
-            minUncertI = rptI.minUncert();
-        }catch(NullPointerException e){
-            minUncertI = 0d;
-        }
+        result = new averageResult(false);
         if(limitMinUncert){
             if(averageEg.getUpper() < minUncertE){
                 averageEg.setUpper(minUncertE);
                 averageEg.setLower(minUncertE);
             }
         }
-        energyResult = dataPt.ENSDFprint(String.valueOf(averageEg.getValue()), 
-                String.valueOf(averageEg.getUpper()), false);
-        try{
+        result.set(averageResult.ENERGY, averageEg.getValue(), averageEg.getUpper(),
+                averageEg.getLower(), !noUncertE, energies.size() == 1 ? null :
+                averagingKernels.Method.UNWEIGHTED, Double.NaN);
+        if(averageIg != null){
             if(limitMinUncert){
                 if(averageIg.getUpper() < minUncertI){
                    averageIg.setUpper(minUncertI);
                    averageIg.setLower(minUncertI);
                 }
             }
-            intensityResult = dataPt.ENSDFprint(String.valueOf(averageIg.getValue()), 
-                String.valueOf(averageIg.getUpper()), false);
-            result = new gamma(energyResult.split(" ")[0], energyResult.split(" ")[1],
-                intensityResult.split(" ")[0], intensityResult.split(" ")[1], false,
-                false, this.levelString + " average gamma: " + 
-                    String.valueOf(Math.round(averageEg.getValue())), "", "");
-        }catch(NullPointerException e){
-            result = new gamma(energyResult.split(" ")[0], energyResult.split(" ")[1],
-            "", "", false, false, this.levelString + " average gamma: " + 
-                    String.valueOf(Math.round(averageEg.getValue())), "", "");
-        }
-        
-        if(noUncertE){
-            result.setDEg("");
-        }
-        if(noUncertI){
-            result.setDIg("");
+            result.set(averageResult.INTENSITY, averageIg.getValue(), averageIg.getUpper(),
+                    averageIg.getLower(), !noUncertI, intensities.size() == 1 ? null :
+                    averagingKernels.Method.UNWEIGHTED, Double.NaN);
         }
         
-        result.getGammaRecord().setNucid(this.gammas.get(0).getGammaRecord().getNucid());
-        result.setParent(this.gammas.get(0).getParent());
-        result.setFinalLevel(this.gammas.get(0).getFinalLevel());
-        
         return result;
     }
     
@@ -444,7 +495,7 @@ public class gammaEquivalenceClass {
      */
     public List<dataPt> getEnergyDataset(){
         List<dataPt> energies;
-        String tmp;
+        dataPt dp;
         
         energies = new ArrayList<>();
         for(gamma g : this.gammas){
@@ -452,10 +503,9 @@ public class gammaEquivalenceClass {
             if(g.isAdopted()){
                 continue;
             }
-            tmp = g.getSource();
-            tmp = tmp + ": " + g.getEg() + " " + g.getDEg();
-            if(dataPt.isParsable(tmp)){
-                energies.add(dataPt.constructFromString(tmp));
+            dp = energyDataPt(g);
+            if(dp != null){
+                energies.add(dp);
             }
         }
         
@@ -470,7 +520,7 @@ public class gammaEquivalenceClass {
      */
     public List<dataPt> getIntensityDataset(){
         List<dataPt> intensities;
-        String tmp;
+        dataPt dp;
         
         intensities = new ArrayList<>();
         for(gamma g : this.gammas){
@@ -478,9 +528,9 @@ public class gammaEquivalenceClass {
             if(g.isAdopted()){
                 continue;
             }
-            tmp = g.getSource() + ": " + g.getIg(true) + " " + g.getDIg(true);
-            if(dataPt.isParsable(tmp)){
-                intensities.add(dataPt.constructFromString(tmp));
+            dp = intensityDataPt(g);
+            if(dp != null){
+                intensities.add(dp);
             }
         }
         
@@ -496,7 +546,7 @@ public class gammaEquivalenceClass {
      * in the equivalence class. This function begins with a weighted average,
      * tries NRM if the chi^2 is too high (higher than the critical chi^2 at
      * 99% confidence) and finally uses the unweighted average if the chi^2 is
-     * still too high.
+     * still too high. Each average is only computed if it may be used.
      * @param limitMinUncert <code>true</code> if the uncertainty in the result
      * cannot be lower than the lowest uncertainty of any of the measurements 
      * which contributed to the average.
@@ -507,130 +557,181 @@ public class gammaEquivalenceClass {
      * in the equivalence class
      */
     public gamma average(boolean limitMinUncert, boolean useNonNumericUncert){
-        averagingReport rptE, rptI;
-        gamma wtAve, NRM, uwtAve, result;
-        boolean wtAcceptE, wtAcceptI, NRMAcceptE, NRMAcceptI;
-        String Eg, DEg, Ig, DIg, EgAveMethod, IgAveMethod, EgChiSq, IgChiSq;
-        List<dataPt> energies, intensities;
-        
+        averagingContext.DEFAULT.prepare(gammas.size());
+        return average(limitMinUncert, useNonNumericUncert, averagingContext.DEFAULT);
+    }
+    
+    /**
+     * Returns a gamma which has the average energy and intensity of the gammas
+     * in the equivalence class, as {@link #average(boolean, boolean) average},
+     * but using the confidence level of the given context. The context must
+     * have been prepared (see {@link averagingContext#prepare(int) prepare})
+     * for at least the number of gammas in this class. This method does not
+     * modify any shared state, so several classes can be averaged at once. To
+     * average many classes, it is faster to average them together with an
+     * {@link averagingBatch}; this method averages a batch of one class.
+     * @param limitMinUncert <code>true</code> if the uncertainty in the result
+     * cannot be lower than the lowest uncertainty of any of the measurements 
+     * which contributed to the average.
+     * @param useNonNumericUncert if <code>true</code> then measurements that
+     * do not have a numeric uncertainty will still be included in the average.
+     * They are excluded otherwise.
+     * @param context the averaging context
+     * @return a gamma which has the average energy and intensity of the gammas
+     * in the equivalence class
+     */
+    public gamma average(boolean limitMinUncert, boolean useNonNumericUncert,
+            averagingContext context){
         //no need to do anything for a single gamma ray
         if(gammas.size() == 1){
-            result = new gamma(gammas.get(0));
-            result.setSource(this.levelString + " average gamma: " + 
-                    gammas.get(0).getEg());
-            //set intensity equal to normalized intensity since the intensity
-            //is what gets used later, but the value we want it to have is
-            //the normalized intensity
-            result.setIg(result.getIg(true));
-            result.setDIg(result.getDIg(true));
-            result.energyAveragingMethod = "";
-            result.energyChiSq = "";
-            result.intensityAveragingMethod = "";
-            result.intensityChiSq = "";
-            return result;
+            return singleGammaAverage();
         }
+        return new averagingBatch(Collections.singletonList(this))
+                .average(limitMinUncert, useNonNumericUncert, context)[0];
+    }
+    
+    /**
+     * Returns the numeric outcome of the average of this class, as
+     * {@link #average(boolean, boolean, ENSDF_data.averagingContext) average}
+     * but without formatting the average gamma. The context must have been
+     * prepared (see {@link averagingContext#prepare(int) prepare}) for at 
+     * least the number of gammas in this class.
+     * @param limitMinUncert <code>true</code> if the uncertainty in the result
+     * cannot be lower than the lowest uncertainty of any of the measurements 
+     * which contributed to the average.
+     * @param useNonNumericUncert if <code>true</code> then measurements that
+     * do not have a numeric uncertainty will still be included in the average.
+     * They are excluded otherwise.
+     * @param context the averaging context
+     * @return the outcome of the average, <code>null</code> if the class is
+     * empty
+     */
+    public averageResult averageResult(boolean limitMinUncert, boolean useNonNumericUncert,
+            averagingContext context){
+        if(gammas.size() == 1){
+            return singleGammaResult();
+        }
+        return new averagingBatch(Collections.singletonList(this))
+                .averageResults(limitMinUncert, useNonNumericUncert, context)[0];
+    }
+    
+    /**
+     * Returns the "average" of a class of a single gamma, i.e. a copy of the
+     * gamma, with the normalized intensity and no averaging method.
+     * @return the average of the class of a single gamma
+     */
+    gamma singleGammaAverage(){
+        gamma result;
         
-        averagingMethods.critChiSqConf = 0.99d; //99% confidence level
-        rptE = new averagingReport();
-        rptI = new averagingReport();
-        
-        energies = getEnergyDataset();
-        intensities = getIntensityDataset();
+        result = new gamma(gammas.get(0));
+        result.setSource(this.levelString + " average gamma: " + 
+                gammas.get(0).getEg());
+        //set intensity equal to normalized intensity since the intensity
+        //is what gets used later, but the value we want it to have is
+        //the normalized intensity
+        result.setIg(result.getIg(true));
+        result.setDIg(result.getDIg(true));
+        result.energyAveragingMethod = "";
+        result.energyChiSq = "";
+        result.intensityAveragingMethod = "";
+        result.intensityChiSq = "";
+        return result;
+    }
+    
+    /**
+     * Returns the outcome of the "average" of a class of a single gamma, i.e.
+     * its energy and normalized intensity, with no averaging method.
+     * @return the outcome of the average of the class of a single gamma
+     */
+    averageResult singleGammaResult(){
+        averageResult result;
+        dataPt dp;
         
-        if(energies.size() > 1 || intensities.size() > 1){
-            wtAve = average((dataPt[] dataset, averagingReport rpt) -> 
-                        averagingMethods.weightedAverage(dataset, rpt), rptE, rptI, 
-                        limitMinUncert);
-            wtAcceptE = (rptE.reducedChiSq < rptE.criticalChiSq) && energies.size() > 1;
-            wtAcceptI = (rptI.reducedChiSq < rptI.criticalChiSq) && intensities.size() > 1;
-            EgChiSq = String.format("%1.3f", rptE.reducedChiSq);
-            IgChiSq = String.format("%1.3f", rptI.reducedChiSq);
-        }else{
-            wtAve = null;
-            wtAcceptE = false;
-            wtAcceptI = false;
-            EgChiSq = "-";
-            IgChiSq = "-";
+        result = new averageResult(true);
+        dp = gammas.get(0).getEnergyDataPt();
+        if(dp != null){
+            result.set(averageResult.ENERGY, dp.getValue(), dp.getUpper(),
+                    dp.getLower(), true, null, Double.NaN);
         }
-            
-        if(energies.size() > 2 || intensities.size() > 2){
-            NRM = average((dataPt[] dataset, averagingReport rpt) -> 
-                    averagingMethods.nrm(dataset, rpt), rptE, rptI, 
-                    limitMinUncert);
-            NRMAcceptE = (rptE.reducedChiSq < rptE.criticalChiSq) &&
-                    energies.size() > 2;
-            NRMAcceptI = (rptI.reducedChiSq < rptI.criticalChiSq) &&
-                    intensities.size() > 2;
-        }else{
-            NRM = null;
-            NRMAcceptE = false;
-            NRMAcceptI = false;
+        dp = gammas.get(0).getIntensityDataPt(true);
+        if(dp != null){
+            result.set(averageResult.INTENSITY, dp.getValue(), dp.getUpper(),
+                    dp.getLower(), true, null, Double.NaN);
         }
+        return result;
+    }
+    
+    /**
+     * Renders the given outcome of the average of this class into the
+     * average gamma, as produced by
+     * {@link #average(boolean, boolean, ENSDF_data.averagingContext) average}.
+     * The outcome of a class of a single gamma is rendered as a copy of the
+     * gamma (see {@link #singleGammaAverage() singleGammaAverage}).
+     * @param average the outcome of the average of this class
+     * @return the average gamma
+     */
+    gamma averageGamma(averageResult average){
+        String[] energy, intensity;
         
-        uwtAve = uwtAverage(limitMinUncert, useNonNumericUncert);
-        if(uwtAve.getEg().equals("NaN")){
-            uwtAve = uwtAverage(limitMinUncert, true);
+        if(average.isSingleGamma()){
+            return singleGammaAverage();
         }
+        energy = printResult(average, averageResult.ENERGY);
+        intensity = printResult(average, averageResult.INTENSITY);
+        return averageGamma(energy[0], energy[1], intensity[0], intensity[1],
+                energy[2], energy[3], intensity[2], intensity[3]);
+    }
+    
+    //the value, uncertainty, method name and chi^2 of the energy or 
+    //intensity in the given outcome, as they appear in the average gamma
+    private static String[] printResult(averageResult average, int q){
+        String[] result, printed;
+        averagingKernels.Method method;
         
-        if(wtAcceptE){
-            Eg = wtAve.getEg();
-            DEg = wtAve.getDEg();
-            EgAveMethod = "WtAve";
-        }else if(NRMAcceptE){
-            Eg = NRM.getEg();
-            DEg = NRM.getDEg();
-            EgAveMethod = "NRM";
-            EgChiSq = String.format("%1.3f", rptE.reducedChiSq);
-        }else if(energies.size() == 1){
-            Eg = dataPt.ENSDFprint(String.valueOf(energies.get(0).getValue()),
-                    String.valueOf(energies.get(0).getUpper()), false).split(" ")[0];
-            DEg = dataPt.ENSDFprint(String.valueOf(energies.get(0).getValue()),
-                    String.valueOf(energies.get(0).getUpper()), false).split(" ")[1];
-            EgAveMethod = "";
-            EgChiSq = "-";
-        }else if(energies.isEmpty()){
-            //there are no gamma rays that can be averaged 
-            //most likely because none of the uncertainties are numeric
-            Eg = uwtAve.getEg();
-            DEg = "";
-            EgAveMethod = "";
-            EgChiSq = "-";
-        }else{
-            Eg = uwtAve.getEg();
-            DEg = uwtAve.getDEg();
-            EgAveMethod = "UnwtAve";
-            EgChiSq = "-";
+        result = new String[]{"", "", "", "-"};
+        if(!average.isPresent(q)){
+            return result;
         }
-        
-        if(wtAcceptI){
-            Ig = wtAve.getIg();
-            DIg = wtAve.getDIg();
-            IgAveMethod = "WtAve";
-        }else if(NRMAcceptI){
-            Ig = NRM.getIg();
-            DIg = NRM.getDIg();
-            IgAveMethod = "NRM";
-            IgChiSq = String.format("%1.3f", rptI.reducedChiSq);
-        }else if(intensities.size() == 1){
-            Ig = dataPt.ENSDFprint(String.valueOf(intensities.get(0).getValue()),
-                    String.valueOf(intensities.get(0).getUpper()), false).split(" ")[0];
-            DIg = dataPt.ENSDFprint(String.valueOf(intensities.get(0).getValue()),
-                    String.valueOf(intensities.get(0).getUpper()), false).split(" ")[1];
-            IgAveMethod = "";
-            IgChiSq = "-";
-        }else if(intensities.isEmpty()){
-            //there are no gamma rays that can be averaged 
-            //most likely because none of the uncertainties are numeric
-            Ig = uwtAve.getIg();
-            DIg = "";
-            IgAveMethod = "";
-            IgChiSq = "-";
+        method = average.getMethod(q);
+        if(method == averagingKernels.Method.WEIGHTED || 
+                method == averagingKernels.Method.NRM){
+            printed = printAverage(new dataPt(average.getValue(q), average.getUpper(q),
+                    average.getLower(q)), q == averageResult.ENERGY, 0d, false);
+            result[2] = method == averagingKernels.Method.WEIGHTED ? "WtAve" : "NRM";
+            result[3] = String.format("%1.3f", average.getReducedChiSq(q));
         }else{
-            Ig = uwtAve.getIg();
-            DIg = uwtAve.getDIg();
-            IgAveMethod = "UnwtAve";
-            IgChiSq = "-";
+            printed = dataPt.ENSDFprint(String.valueOf(average.getValue(q)), 
+                    String.valueOf(average.getUpper(q)), false).split(" ");
+            if(method == averagingKernels.Method.UNWEIGHTED){
+                result[2] = "UnwtAve";
+            }
         }
+        result[0] = printed[0];
+        if(average.isUncertain(q)){
+            result[1] = printed[1];
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the gamma representing the average of this class with the
+     * given energy and intensity, as produced by
+     * {@link #average(boolean, boolean, ENSDF_data.averagingContext) average}.
+     * This is also used to rebuild an average from the stored outcome (see
+     * {@link averageCache}).
+     * @param Eg the average energy
+     * @param DEg the uncertainty in the average energy
+     * @param Ig the average intensity
+     * @param DIg the uncertainty in the average intensity
+     * @param EgAveMethod the name of the method used to average the energy
+     * @param EgChiSq the reduced chi^2 of the energy average
+     * @param IgAveMethod the name of the method used to average the intensity
+     * @param IgChiSq the reduced chi^2 of the intensity average
+     * @return the average gamma
+     */
+    gamma averageGamma(String Eg, String DEg, String Ig, String DIg,
+            String EgAveMethod, String EgChiSq, String IgAveMethod, String IgChiSq){
+        gamma result;
         
         result = new gamma(Eg, DEg, Ig, DIg, false, false, 
                             this.levelString + " average gamma: " + Eg,
@@ -648,6 +749,65 @@ public class gammaEquivalenceClass {
         return result;
     }
     
+    /**
+     * Returns the energy of the given gamma, named by its source, or
+     * <code>null</code> if it cannot be parsed.
+     * @param g the gamma
+     * @return the energy of the gamma
+     */
+    private static dataPt energyDataPt(gamma g){
+        dataPt result;
+        if(g.getSource().contains(":")){
+            //the name ends at the first colon, so the rest is parsed as the
+            //value (which fails for the average gammas added to the group)
+            return dataPt.constructFromString(g.getSource() + ": " + g.getEg() + 
+                    " " + g.getDEg());
+        }
+        result = g.getEnergyDataPt();
+        if(result != null){
+            result.setName(g.getSource().trim());
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the normalized intensity of the given gamma, named by its
+     * source, or <code>null</code> if it cannot be parsed.
+     * @param g the gamma
+     * @return the normalized intensity of the gamma
+     */
+    private static dataPt intensityDataPt(gamma g){
+        dataPt result;
+        if(g.getSource().contains(":")){
+            return dataPt.constructFromString(g.getSource() + ": " + g.getIg(true) + 
+                    " " + g.getDIg(true));
+        }
+        result = g.getIntensityDataPt(true);
+        if(result != null){
+            result.setName(g.getSource().trim());
+        }
+        return result;
+    }
+    
+    //the unweighted average of the given measurements, see averagingKernels
+    private static dataPt unweightedAverage(List<dataPt> points){
+        double[][] columns = averagingKernels.columns(points);
+        double[] result = new double[averagingKernels.RESULT_LENGTH];
+        
+        averagingKernels.unweightedAverage(columns[averagingKernels.VALUE], 
+                columns[averagingKernels.UPPER], columns[averagingKernels.LOWER], result);
+        return new dataPt(result[averagingKernels.VALUE], result[averagingKernels.UPPER], 
+                result[averagingKernels.LOWER], "Unweighted Average");
+    }
+    
+    //the smallest uncertainty of the given measurements, see averagingKernels
+    private static double minUncert(List<dataPt> points){
+        double[][] columns = averagingKernels.columns(points);
+        
+        return averagingKernels.minUncert(columns[averagingKernels.UPPER], 
+                columns[averagingKernels.LOWER]);
+    }
+    
     /**
      * Returns <code>true</code> if the given String can be parsed into a double.
      * @param s the given String
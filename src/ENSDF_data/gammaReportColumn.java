@@ -0,0 +1,71 @@
+package ENSDF_data;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * This class defines an additional column for the report file produced after
+ * the GAMUT method (see {@link ENSDFDataset#generateReportTable(ENSDF_data.ENSDFDataset, ENSDF_data.ENSDFDataset, ENSDF_data.ENSDFDataset, Jama.Matrix, Jama.Matrix, Jama.Matrix, java.util.List, java.util.List) 
+ * generateReportTable}). The column holds one entry per gamma-ray of the
+ * modified dataset; gamma-rays are matched by identity, not by comparing
+ * their records.
+ * 
+ * Date Modified: 18/10/2026
+ * 
+ * @author agent
+ */
+public class gammaReportColumn {
+    private final String header;
+    private final Map<gamma, String> values;
+    
+    /**
+     * Creates a new, empty, report column.
+     * @param header the title of the column
+     */
+    public gammaReportColumn(String header){
+        this.header = header;
+        this.values = new IdentityHashMap<>();
+    }
+    
+    /**
+     * Returns the title of the column.
+     * @return the title of the column
+     */
+    public String getHeader(){
+        return header;
+    }
+    
+    /**
+     * Sets the entry of the column for the given gamma-ray.
+     * @param g the gamma-ray
+     * @param value the text to show in the column
+     */
+    public void put(gamma g, String value){
+        values.put(g, value);
+    }
+    
+    /**
+     * Sets the entry of the column for the given gamma-ray to the given
+     * number, formatted with the given format String.
+     * @param g the gamma-ray
+     * @param format the format String, e.g. <code>"%1.3f"</code>
+     * @param value the number to show in the column
+     */
+    public void put(gamma g, String format, double value){
+        values.put(g, String.format(format, value));
+    }
+    
+    /**
+     * Returns the entry of the column for the given gamma-ray, or the empty
+     * String if there is none.
+     * @param g the gamma-ray
+     * @return the entry of the column for the given gamma-ray
+     */
+    public String get(gamma g){
+        String result = values.get(g);
+        if(result == null){
+            return "";
+        }
+        return result;
+    }
+}
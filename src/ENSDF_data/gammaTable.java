@@ -0,0 +1,388 @@
+package ENSDF_data;
+
+import ensdf_datapoint.dataPt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class is a columnar view of the gamma-rays of a combined dataset (see
+ * {@link ENSDFDataset#readDatasetTable(java.util.List, boolean, boolean)
+ * readDatasetTable}). The numbers the GAMUT algorithms need from each gamma
+ * (energy, energy uncertainty, intensity, intensity uncertainty, parent and
+ * final level and data set) are copied once into parallel primitive arrays,
+ * so that setting up the placement matrix and the intensity matrices (see
+ * {@link jgamut.GAMUT_Algorithms}) scans arrays rather than the gamma objects.
+ *
+ * The rows (gammas) are ordered by unique gamma-ray, i.e. by the rows of the
+ * intensity matrices: the gammas of each level with gammas (see
+ * {@link ENSDFDataset#getLevelsWithGammas() getLevelsWithGammas}), in the
+ * order of the groups made by
+ * {@link ENSDFDataset#groupByGamma(ENSDF_data.level) groupByGamma}. The
+ * measurements of each unique gamma-ray are therefore in one range of rows,
+ * as the measurements of each group in an {@link averagingBatch}, so the
+ * range versions of the {@link averagingKernels averaging kernels} can be
+ * used on them directly. The gammas of the dataset which are in no such group
+ * follow. The rows of the placement matrix, which are ordered by data set,
+ * are given by {@link #getEnergyRows() getEnergyRows}.
+ *
+ * The levels, gammas and groups must not change while the table is used. The
+ * numbers may be read again from the gammas with {@link #update() update},
+ * e.g. after the uncertainties have been changed or the intensities have been
+ * normalized.
+ *
+ * Date Modified: 18/10/2026
+ *
+ * @author agent
+ */
+public class gammaTable {
+
+    /**
+     * The level index of a gamma which has no parent or final level.
+     */
+    public static final int NO_LEVEL = -1;
+    /**
+     * The level index of a parent or final level which is not one of the
+     * levels with gammas, or of a final level equal to the parent level.
+     */
+    public static final int UNKNOWN_LEVEL = -2;
+
+    private final gamma[] gammas;
+    private final level[] levels;
+    private final String[] sources;
+    private final double[] energy; //CM energy, NaN if not positive
+    private final double[] dE; //NaN if not numeric
+    private final double[] intensity; //NaN if not used in the intensity fit
+    private final double[] dI; //NaN if not numeric
+    private final int[] parent, fin; //indices in levels
+    private final int[] source; //index in sources, -1 if not one of them
+    private final int[] group; //index of the unique gamma-ray, -1 if none
+    private final int[] groupFrom, groupTo;
+    private final int[] energyRows;
+    private final int numEnergyRows, numZeroLevels;
+
+    /**
+     * Copies the gammas of the given dataset into a new table.
+     * @param data the dataset
+     */
+    public gammaTable(ENSDFDataset data){
+        Map<gamma, Integer> index = new IdentityHashMap<>();
+        Map<level, Integer> levelIndex;
+        Map<String, Integer> sourceIndex = new HashMap<>();
+        List<gamma> rows = new ArrayList<>();
+        List<Integer> groups = new ArrayList<>();
+        List<Integer> from = new ArrayList<>();
+        List<Integer> to = new ArrayList<>();
+        List<Integer> byDataset = new ArrayList<>();
+        gamma[] dataGammas;
+        int[] count;
+        int i, j, k, n;
+        Integer row;
+
+        levels = data.getLevelsWithGammas();
+        sources = data.getSources();
+        levelIndex = ENSDFDataset.indexLevels(levels);
+        for(j=0; j<sources.length; j++){
+            sourceIndex.putIfAbsent(sources[j], j);
+        }
+        for(k=0; k<levels.length; k++){
+            for(gammaEquivalenceClass G : ENSDFDataset.groupByGamma(levels[k])){
+                if(G.isEmpty()){
+                    continue;
+                }
+                if(G.containsNonAdopted()){
+                    from.add(rows.size());
+                }
+                for(gamma g : G.getGammas()){
+                    index.put(g, rows.size());
+                    rows.add(g);
+                    groups.add(G.containsNonAdopted() ? from.size() - 1 : -1);
+                }
+                if(G.containsNonAdopted()){
+                    to.add(rows.size());
+                }
+            }
+        }
+        dataGammas = data.getGammas();
+        for(gamma g : dataGammas){
+            row = index.get(g);
+            if(row == null){
+                row = rows.size();
+                index.put(g, row);
+                rows.add(g);
+                groups.add(-1);
+            }
+            byDataset.add(row);
+        }
+
+        n = rows.size();
+        gammas = rows.toArray(new gamma[0]);
+        energy = new double[n];
+        dE = new double[n];
+        intensity = new double[n];
+        dI = new double[n];
+        parent = new int[n];
+        fin = new int[n];
+        source = new int[n];
+        group = new int[n];
+        groupFrom = from.stream().mapToInt(Integer::intValue).toArray();
+        groupTo = to.stream().mapToInt(Integer::intValue).toArray();
+        for(i=0; i<n; i++){
+            parent[i] = levelIndex(levelIndex, gammas[i].getParent());
+            fin[i] = levelIndex(levelIndex, gammas[i].getFinalLevel());
+            //a final level equal to the parent level is never matched in the
+            //placement matrix
+            if(fin[i] >= 0 && parent[i] != NO_LEVEL &&
+                    gammas[i].getParent().equals(gammas[i].getFinalLevel())){
+                fin[i] = UNKNOWN_LEVEL;
+            }
+            source[i] = gammas[i].isAdopted() ? -1 :
+                    sourceIndex.getOrDefault(gammas[i].getSource(), -1);
+            group[i] = groups.get(i);
+        }
+        update();
+
+        //the placement matrix has a row for each gamma of the dataset with an
+        //energy, data set by data set, then the zero level constraints
+        count = new int[sources.length + 1];
+        for(int r : byDataset){
+            if(source[r] >= 0 && !Double.isNaN(energy[r])){
+                count[source[r] + 1] += 1;
+            }
+        }
+        for(j=0; j<sources.length; j++){
+            count[j+1] += count[j];
+        }
+        energyRows = new int[count[sources.length]];
+        for(int r : byDataset){
+            if(source[r] >= 0 && !Double.isNaN(energy[r])){
+                energyRows[count[source[r]]] = r;
+                count[source[r]] += 1;
+            }
+        }
+        numEnergyRows = data.getNumNonzeroGammas() - data.getNumAdoptedGammas() +
+                data.getNumZeroLevels();
+        numZeroLevels = data.getNumZeroLevels();
+    }
+
+    //the index of the given level, NO_LEVEL or UNKNOWN_LEVEL
+    private int levelIndex(Map<level, Integer> index, level l){
+        int result;
+
+        if(l == null){
+            return NO_LEVEL;
+        }
+        result = ENSDFDataset.getLevelIndex(index, levels, l);
+        return result >= 0 ? result : UNKNOWN_LEVEL;
+    }
+
+    /**
+     * Reads the energies, intensities and their uncertainties from the gammas
+     * again.
+     */
+    public final void update(){
+        dataPt dp;
+        gamma g;
+        int i;
+
+        for(i=0; i<gammas.length; i++){
+            g = gammas[i];
+            if(g.getEnergy().toDouble() > 0.0d){
+                energy[i] = g.getCMEnergy().toDouble();
+            }else{
+                energy[i] = Double.NaN;
+            }
+            dp = g.getEnergyDataPt();
+            dE[i] = dp == null ? Double.NaN : dp.getLower();
+            //if the normalized intensity has no uncertainty then either the
+            //original had no uncertainty or there is only 1 gamma de-exciting
+            //the level, so the normalized intensity is 100 by definition. In
+            //either case it is not used.
+            if(!g.getDIg(true).equals("") && g.ig.isPresent()){
+                intensity[i] = g.ig.get();
+            }else{
+                intensity[i] = Double.NaN;
+            }
+            dp = g.getIntensityDataPt();
+            dI[i] = dp == null ? Double.NaN : dp.getLower();
+        }
+    }
+
+    /**
+     * Returns the number of gammas in the table.
+     * @return the number of gammas in the table
+     */
+    public int size(){
+        return gammas.length;
+    }
+
+    /**
+     * Returns the gamma of the given row.
+     * @param i the row
+     * @return the gamma of the row
+     */
+    public gamma getGamma(int i){
+        return gammas[i];
+    }
+
+    /**
+     * Returns the levels with gammas, which the level indices refer to.
+     * @return the levels with gammas
+     */
+    public level[] getLevels(){
+        return Arrays.copyOf(levels, levels.length);
+    }
+
+    /**
+     * Returns the number of levels with gammas.
+     * @return the number of levels with gammas
+     */
+    public int getNumLevels(){
+        return levels.length;
+    }
+
+    /**
+     * Returns the number of data sets, which the source indices refer to (see
+     * {@link ENSDFDataset#getSources() getSources}).
+     * @return the number of data sets
+     */
+    public int getNumSources(){
+        return sources.length;
+    }
+
+    /**
+     * Returns the CM energy of each gamma, NaN for the gammas without a
+     * positive energy. The array must not be modified.
+     * @return the energies
+     */
+    public double[] getEnergies(){
+        return energy;
+    }
+
+    /**
+     * Returns the uncertainty of the energy of each gamma, NaN if it is not
+     * numeric. The array must not be modified.
+     * @return the energy uncertainties
+     */
+    public double[] getEnergyUncertainties(){
+        return dE;
+    }
+
+    /**
+     * Returns the intensity of each gamma, NaN for the gammas whose intensity
+     * or normalized intensity uncertainty is missing (which are not used in
+     * the intensity fits). The array must not be modified.
+     * @return the intensities
+     */
+    public double[] getIntensities(){
+        return intensity;
+    }
+
+    /**
+     * Returns the uncertainty of the intensity of each gamma, NaN if it is
+     * not numeric. The array must not be modified.
+     * @return the intensity uncertainties
+     */
+    public double[] getIntensityUncertainties(){
+        return dI;
+    }
+
+    /**
+     * Returns the index of the parent level of each gamma, or
+     * {@link #NO_LEVEL} or {@link #UNKNOWN_LEVEL}. The array must not be
+     * modified.
+     * @return the parent level indices
+     */
+    public int[] getParents(){
+        return parent;
+    }
+
+    /**
+     * Returns the index of the final level of each gamma, or
+     * {@link #NO_LEVEL} or {@link #UNKNOWN_LEVEL}. The array must not be
+     * modified.
+     * @return the final level indices
+     */
+    public int[] getFinalLevels(){
+        return fin;
+    }
+
+    /**
+     * Returns the index of the data set of each gamma, -1 for the gammas from
+     * the ADOPTED LEVELS, GAMMAS dataset. The array must not be modified.
+     * @return the data set indices
+     */
+    public int[] getSources(){
+        return source;
+    }
+
+    /**
+     * Returns the index of the unique gamma-ray (the row of the intensity
+     * matrices) of each gamma, -1 if it is in none. The array must not be
+     * modified.
+     * @return the unique gamma-ray indices
+     */
+    public int[] getGroups(){
+        return group;
+    }
+
+    /**
+     * Returns the number of unique gamma-rays, i.e. the number of rows of the
+     * intensity matrices.
+     * @return the number of unique gamma-rays
+     */
+    public int getNumGroups(){
+        return groupFrom.length;
+    }
+
+    /**
+     * Returns the first row of the r-th unique gamma-ray.
+     * @param r the index of the unique gamma-ray
+     * @return the first row of the unique gamma-ray
+     */
+    public int getGroupFrom(int r){
+        return groupFrom[r];
+    }
+
+    /**
+     * Returns one more than the last row of the r-th unique gamma-ray.
+     * @param r the index of the unique gamma-ray
+     * @return one more than the last row of the unique gamma-ray
+     */
+    public int getGroupTo(int r){
+        return groupTo[r];
+    }
+
+    /**
+     * Returns the rows of the gammas of the dataset which have a positive
+     * energy and are not from the ADOPTED LEVELS, GAMMAS dataset, data set by
+     * data set (in the order of {@link ENSDFDataset#getSources() getSources})
+     * and in the order of the dataset within each data set. The array must
+     * not be modified.
+     * @return the rows of the gammas with energies
+     */
+    public int[] getEnergyRows(){
+        return energyRows;
+    }
+
+    /**
+     * Returns the number of rows of the placement matrix, which includes a
+     * row for each zero energy level.
+     * @return the number of rows of the placement matrix
+     */
+    public int getNumEnergyRows(){
+        return numEnergyRows;
+    }
+
+    /**
+     * Returns the number of levels with zero energy in the dataset (see
+     * {@link ENSDFDataset#getNumZeroLevels() getNumZeroLevels}).
+     * @return the number of levels with zero energy
+     */
+    public int getNumZeroLevels(){
+        return numZeroLevels;
+    }
+}
@@ -0,0 +1,304 @@
+package ENSDF_data;
+
+import ensdf_datapoint.dataPt;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * This class holds the settings of the bootstrap and limitation of
+ * statistical weights (LWM) averages which can be added to the averages table
+ * (see {@link ENSDFDataset#generateAveragesTable(java.util.List, ENSDF_data.gamma[], boolean, ENSDF_data.robustAverages)
+ * generateAveragesTable}), and records how many bootstrap samples were drawn.
+ * Both averages are taken with the averaging kernels (see
+ * {@link averagingKernels}) rather than the averaging library, since the
+ * library LWM may ask the user questions and the library bootstrap draws from
+ * a single shared random number generator.
+ *
+ * The bootstrap samples of each average are split into blocks, and the blocks
+ * of all the averages are run in parallel, taken in order by the threads so
+ * that every average gets its first block before any gets its second. Each
+ * block has its own random
+ * number generator, seeded in order from the seed of this object, so the
+ * results do not depend on the number of threads. By default there is no time
+ * budget. If a time budget is given, no more samples are drawn once it is
+ * spent, and every average is then taken from the same first blocks only: the
+ * blocks before the first block which was not finished for all the averages.
+ * The results are then those of a bootstrap with that many samples and no
+ * time budget, although how many blocks are finished depends on the speed of
+ * the machine.
+ *
+ * Date Modified: 18/10/2026
+ *
+ * @author agent
+ */
+public class robustAverages {
+
+    /**
+     * The default number of bootstrap samples of each average. This is
+     * enough for the bootstrap uncertainties to be stable in their printed
+     * digits, and keeps the averages table of a large evaluation to a few
+     * seconds.
+     */
+    public static final int DEFAULT_SAMPLES = 10000;
+    /**
+     * The default seed of the random number generators.
+     */
+    public static final long DEFAULT_SEED = 1234567L;
+    /**
+     * The default time budget of the bootstrap, in seconds (no limit).
+     */
+    public static final long DEFAULT_TIME_BUDGET = 0L;
+    /**
+     * The largest relative weight of any measurement in the LWM average.
+     */
+    public static final double LWM_MAX_WEIGHT = 0.5d;
+    /**
+     * The number of bootstrap samples in each block.
+     */
+    static final int BLOCK_SIZE = 1000;
+
+    private final int samples;
+    private final long seed;
+    private final long timeBudget;
+    private int minSamplesDrawn;
+    private boolean timedOut;
+
+    /**
+     * Creates new settings.
+     * @param samples the number of bootstrap samples of each average, at
+     * least 2
+     * @param seed the seed of the random number generators
+     * @param timeBudget the time budget of the bootstrap in seconds, or 0 for
+     * no limit
+     */
+    public robustAverages(int samples, long seed, long timeBudget){
+        if(samples < 2){
+            throw new IllegalArgumentException("At least 2 samples are needed.");
+        }
+        this.samples = samples;
+        this.seed = seed;
+        this.timeBudget = timeBudget;
+        this.minSamplesDrawn = 0;
+        this.timedOut = false;
+    }
+
+    /**
+     * Creates new settings with the number of samples, seed and time budget
+     * given by the <code>jgamut.bootstrapSamples</code>,
+     * <code>jgamut.bootstrapSeed</code> and
+     * <code>jgamut.bootstrapTimeBudget</code> system properties, if they are
+     * set.
+     */
+    public robustAverages(){
+        this(Integer.getInteger("jgamut.bootstrapSamples", DEFAULT_SAMPLES),
+                Long.getLong("jgamut.bootstrapSeed", DEFAULT_SEED),
+                Long.getLong("jgamut.bootstrapTimeBudget", DEFAULT_TIME_BUDGET));
+    }
+
+    /**
+     * Returns the number of bootstrap samples of each average.
+     * @return the number of bootstrap samples of each average
+     */
+    public int getSamples(){
+        return samples;
+    }
+
+    /**
+     * Returns the seed of the random number generators.
+     * @return the seed of the random number generators
+     */
+    public long getSeed(){
+        return seed;
+    }
+
+    /**
+     * Returns the time budget of the bootstrap in seconds, 0 if there is no
+     * limit.
+     * @return the time budget of the bootstrap
+     */
+    public long getTimeBudget(){
+        return timeBudget;
+    }
+
+    /**
+     * Returns <code>true</code> if the last bootstrap was stopped by the time
+     * budget.
+     * @return <code>true</code> if the last bootstrap was stopped
+     */
+    public synchronized boolean isTimedOut(){
+        return timedOut;
+    }
+
+    /**
+     * Returns the number of samples each average was taken from in the last
+     * bootstrap, which is less than the number of samples if the bootstrap
+     * was stopped by the time budget.
+     * @return the number of samples used
+     */
+    public synchronized int getMinSamplesDrawn(){
+        return minSamplesDrawn;
+    }
+
+    /**
+     * Returns the bootstrap and LWM averages of the energies and intensities
+     * of each of the given groups. Only the quantities with more than one
+     * measurement are averaged, in the groups of more than one gamma, as in
+     * {@link gammaEquivalenceClass#average(boolean, boolean, ENSDF_data.averagingContext)
+     * average}. The intensities are averaged as measured, they are not
+     * renormalized afterwards.
+     * @param gammaGroups the groups of gammas
+     * @param context the context giving the confidence level of the LWM
+     * @return for each group, in the same order, the bootstrap energy,
+     * bootstrap intensity, LWM energy and LWM intensity (each a value and
+     * uncertainty in ENSDF format, or "-" if not averaged), <code>null</code>
+     * for the empty groups
+     */
+    public String[][] average(List<gammaEquivalenceClass> gammaGroups,
+            averagingContext context){
+        averagingBatch batch = new averagingBatch(gammaGroups);
+        String[][] result = new String[gammaGroups.size()][];
+        List<Integer> ranges = new ArrayList<>();
+        double[][] lwm;
+        double[] sum, sumSq, value, upper, lower;
+        double s, ss, mean, sd;
+        int[] count;
+        long[] seeds;
+        SplittableRandom root;
+        AtomicInteger next;
+        long deadline;
+        int i, k, t, n, numBlocks, numTasks, maxPoints, usedBlocks;
+
+        maxPoints = 0;
+        for(gammaEquivalenceClass G : gammaGroups){
+            maxPoints = Math.max(maxPoints, G.getGammas().size());
+        }
+        context.prepare(maxPoints);
+        for(k=0; k<batch.getNumRanges(); k++){
+            if(gammaGroups.get(k/2).getGammas().size() > 1 &&
+                    batch.getTo(k) - batch.getFrom(k) > 1){
+                ranges.add(k);
+            }
+        }
+        value = batch.getValues();
+        upper = batch.getUpper();
+        lower = batch.getLower();
+
+        //the blocks are ordered so that every average gets its first
+        //samples before any gets its second block
+        numBlocks = (samples + BLOCK_SIZE - 1)/BLOCK_SIZE;
+        numTasks = numBlocks*ranges.size();
+        seeds = new long[numTasks];
+        root = new SplittableRandom(seed);
+        for(t=0; t<numTasks; t++){
+            seeds[t] = root.nextLong();
+        }
+        sum = new double[numTasks];
+        sumSq = new double[numTasks];
+        count = new int[numTasks];
+        deadline = timeBudget > 0 ? System.nanoTime() + timeBudget*1000000000L : Long.MAX_VALUE;
+        //each thread takes the next block in order until all are done or the
+        //time budget is spent
+        next = new AtomicInteger();
+        IntStream.range(0, Runtime.getRuntime().availableProcessors()).parallel().forEach(w -> {
+            int task;
+            while((task = next.getAndIncrement()) < numTasks && System.nanoTime() < deadline){
+                int b = task/ranges.size();
+                int r = ranges.get(task % ranges.size());
+                int from = batch.getFrom(r);
+                int to = batch.getTo(r);
+                int m = Math.min(BLOCK_SIZE, samples - b*BLOCK_SIZE);
+                double[] work = new double[to - from];
+                Random rng = new Random(seeds[task]);
+                double d;
+                //deviations from the first measurement avoid cancellation
+                for(int j=0; j<m && System.nanoTime() < deadline; j++){
+                    d = averagingKernels.bootstrapMedian(value, upper, lower, from, to,
+                            rng, work) - value[from];
+                    sum[task] += d;
+                    sumSq[task] += d*d;
+                    count[task] += 1;
+                }
+            }
+        });
+        lwm = new double[ranges.size()][averagingKernels.RESULT_LENGTH];
+        IntStream.range(0, ranges.size()).parallel().forEach(j -> {
+            int r = ranges.get(j);
+            averagingKernels.lwm(value, upper, lower, batch.getFrom(r), batch.getTo(r),
+                    LWM_MAX_WEIGHT, context.getConfidence(), lwm[j]);
+        });
+
+        for(i=0; i<result.length; i++){
+            if(!gammaGroups.get(i).isEmpty()){
+                result[i] = new String[]{"-", "-", "-", "-"};
+            }
+        }
+        //only the blocks finished for every average are used, so that all
+        //the averages are taken from the same samples whatever the timing
+        usedBlocks = 0;
+        for(t=0; t<numTasks; t++){
+            if(count[t] < Math.min(BLOCK_SIZE, samples - (t/ranges.size())*BLOCK_SIZE)){
+                break;
+            }
+            if(t % ranges.size() == ranges.size() - 1){
+                usedBlocks += 1;
+            }
+        }
+        synchronized(this){
+            minSamplesDrawn = ranges.isEmpty() ? 0 : 
+                    Math.min(samples, usedBlocks*BLOCK_SIZE);
+            timedOut = usedBlocks < numBlocks && !ranges.isEmpty();
+            for(i=0; i<ranges.size(); i++){
+                k = ranges.get(i);
+                s = 0d;
+                ss = 0d;
+                n = 0;
+                for(t=i; t<usedBlocks*ranges.size(); t+=ranges.size()){
+                    s += sum[t];
+                    ss += sumSq[t];
+                    n += count[t];
+                }
+                if(n > 1){
+                    mean = value[batch.getFrom(k)] + s/n;
+                    sd = Math.sqrt(Math.max((ss - s*s/n)/(n - 1), 0d));
+                    result[k/2][k % 2] = print(new dataPt(mean, sd, sd), k % 2 == 0);
+                }
+                result[k/2][2 + k % 2] = print(new dataPt(lwm[i][averagingKernels.VALUE],
+                        lwm[i][averagingKernels.UPPER], lwm[i][averagingKernels.LOWER]),
+                        k % 2 == 0);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns notes on the bootstrap for the averages table: the number of
+     * samples of each average, and whether the bootstrap was stopped by the
+     * time budget.
+     * @return the lines of the notes
+     */
+    public synchronized List<String> getNotes(){
+        List<String> result = new ArrayList<>();
+
+        result.add("Bootstrap averages of " + samples + " samples (seed " + seed +
+                "); LWM averages with a maximum relative weight of " + LWM_MAX_WEIGHT + ".");
+        result.add("The Bootstrap Ig and LWM Ig intensities are averaged as measured;");
+        result.add("unlike Average Ig, they are not renormalized.");
+        if(timedOut){
+            result.add("The bootstrap was stopped by the time budget of " + timeBudget +
+                    " s; each average was taken from the first " + minSamplesDrawn + " samples only.");
+        }
+        return result;
+    }
+
+    //the value and uncertainty of the average in ENSDF format
+    private static String print(dataPt average, boolean isEnergy){
+        String[] printed;
+
+        printed = gammaEquivalenceClass.printAverage(average, isEnergy, 0d, false);
+        return printed[0] + " " + printed[1];
+    }
+}
@@ -3,10 +3,10 @@ package jgamut;
 
 import ENSDF_data.*;
 import Jama.Matrix;
-import Jama.SingularValueDecomposition;
 import ensdf_datapoint.dataPt;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.DoubleStream;
 import javax.swing.JOptionPane;
 import javax.swing.JDialog;
@@ -79,6 +79,48 @@ public class GAMUT_Algorithms {
         return DoubleStream.of(x).sum();
     }
     
+    /**
+     * The backend used for the dense matrix operations. Chosen using the
+     * <code>jgamut.linalg</code> system property (either <code>jama</code>,
+     * the default, or <code>commons-math</code>).
+     */
+    private static linearAlgebraBackend backend = 
+            getLinearAlgebraBackend(System.getProperty("jgamut.linalg", "jama"));
+    
+    /**
+     * Returns the linear algebra backend with the given name. The names 
+     * <code>jama</code> and <code>commons-math</code> are recognized; any 
+     * other name gives the JAMA backend.
+     * @param name the name of the backend
+     * @return the linear algebra backend with the given name
+     */
+    public static linearAlgebraBackend getLinearAlgebraBackend(String name){
+        if("commons-math".equalsIgnoreCase(name)){
+            return new commonsMathBackend();
+        }
+        return new jamaBackend();
+    }
+    
+    /**
+     * Returns the backend currently used for dense matrix operations.
+     * @return the backend currently used for dense matrix operations
+     */
+    public static linearAlgebraBackend getLinearAlgebraBackend(){
+        return backend;
+    }
+    
+    /**
+     * Sets the backend used for dense matrix operations.
+     * @param b the new backend, <code>null</code> restores the JAMA backend
+     */
+    public static void setLinearAlgebraBackend(linearAlgebraBackend b){
+        if(b == null){
+            backend = new jamaBackend();
+        }else{
+            backend = b;
+        }
+    }
+    
     /**
      * Returns the Moore–Penrose pseudoinverse, computed using singular 
      * value decomposition.
@@ -87,37 +129,39 @@ public class GAMUT_Algorithms {
      * value decomposition.
      */
     private static Matrix pseudoinverse(Matrix M){
+        int[] rank = new int[1];
+        Matrix result = pseudoinverse(M, rank);
+        
+        //Rank smaller than number column of columns
+        //indicates that the system is under determined.
+        if(rank[0] < M.getColumnDimension()){
+            warnSingular();
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the Moore–Penrose pseudoinverse, computed using singular 
+     * value decomposition, without warning the user if the matrix is
+     * singular. Safe to call from several threads at once.
+     * @param M the Matrix to invert
+     * @param rank array of length at least 1, the first element is set to 
+     * the rank of M
+     * @return the Moore–Penrose pseudoinverse
+     */
+    private static Matrix pseudoinverse(Matrix M, int[] rank){
         try{
-            SingularValueDecomposition svd = M.svd();
-            Matrix S, V, U;
-            double tol = (1e-15)*Math.max(M.getColumnDimension(), M.getRowDimension());
-            double s;
-            int count;
-
-            tol *= DoubleStream.of(svd.getSingularValues()).max().getAsDouble();
-            S = svd.getS();
-            V = svd.getV();
-            U = svd.getU();
-
-            count = 0;
-            for(int i=0; i<S.getRowDimension(); i++){
-                s = S.get(i, i);
-                if(s > tol){
-                    S.set(i, i, 1.0d/s);
-                    count += 1;
-                }
-            }
-            //count is the rank. Rank smaller than number column of columns
-            //indicates that the system is under determined.
-            if(count < M.getColumnDimension()){
-                JOptionPane.showMessageDialog(null, "Warning! Linear system representing the level scheme is singular. A solution will still be obtained, however the result may not be reliable and the intermediate file should be checked for errors.\n\nNote: if energy shifts are being fitted and some datasets do not have gamma-ray energy data then that is likely the reason for this message.");
-            }
-            return V.times(S.times(U.transpose()));
+            return backend.pseudoinverse(M, rank);
         }catch(ArrayIndexOutOfBoundsException e){
+            rank[0] = M.getColumnDimension();
             return M;
         }
     }
     
+    private static void warnSingular(){
+        JOptionPane.showMessageDialog(null, "Warning! Linear system representing the level scheme is singular. A solution will still be obtained, however the result may not be reliable and the intermediate file should be checked for errors.\n\nNote: if energy shifts are being fitted and some datasets do not have gamma-ray energy data then that is likely the reason for this message.");
+    }
+    
     /**
      * Sets up the linear system to be solved in the GAMUT gamma ray energy
      * algorithm.
@@ -139,21 +183,46 @@ public class GAMUT_Algorithms {
     public static final Matrix createPlacementMatrix(ENSDFDataset data, 
             Matrix E, Matrix W, double nonNumericDefaultUncertainty,
             boolean useShifts){
-        gamma[] gammas = data.getNonzeroGammas();
-        level[] levels = data.getLevelsWithGammas();
-        String[] sources = data.getSources();
+        return createPlacementMatrix(new gammaTable(data), E, W, 
+                nonNumericDefaultUncertainty, useShifts);
+    }
+    
+    /**
+     * Sets up the linear system to be solved in the GAMUT gamma ray energy
+     * algorithm, as {@link #createPlacementMatrix(ENSDF_data.ENSDFDataset, Jama.Matrix, Jama.Matrix, double, boolean) 
+     * createPlacementMatrix}, from the columns of the gammas of the dataset.
+     * @param table the gamma table of the dataset generated from the 
+     * intermediate file
+     * @param E the (JAMA) column vector to be filled with the experimental
+     * gamma ray energies.
+     * @param W the (JAMA) column vector to be filled with the weights for
+     * the gamma ray energy measurements (1/uncertainty^2)
+     * @param nonNumericDefaultUncertainty the (percent) uncertainty to assign
+     * measurements with a non-numeric uncertainty (i.e. LT, GT, AP, CA).
+     * Should be a number between 0 and 1.
+     * @param useShifts set to <code>true</code> if the zero energy between
+     * different datasets should be allowed to vary independently. 
+     * @return the placement matrix G (matrix for the level scheme)
+     */
+    public static final Matrix createPlacementMatrix(gammaTable table, 
+            Matrix E, Matrix W, double nonNumericDefaultUncertainty,
+            boolean useShifts){
+        level[] levels = table.getLevels();
+        int[] rows = table.getEnergyRows();
+        int[] parents = table.getParents();
+        int[] finals = table.getFinalLevels();
+        int[] sources = table.getSources();
+        double[] energies = table.getEnergies();
+        double[] dE = table.getEnergyUncertainties();
         double[] G; //placement matrix stored in column-major order
         int n, m; //number of rows and columns in the matrix
-        int i, j, k, count;
-        String s;
-        gamma g;
+        int i, r, count;
         double w;
-        level p, f;
         int parentIndex, finalIndex;
         
-        n = gammas.length - data.getNumAdoptedGammas() + data.getNumZeroLevels();
+        n = table.getNumEnergyRows();
         if(useShifts){
-            m = levels.length + sources.length;
+            m = levels.length + table.getNumSources();
         }else{
             m = levels.length;
         }
@@ -161,7 +230,7 @@ public class GAMUT_Algorithms {
         //not enough information to determine dataset level shifts if
         //there are more columns than rows
         if(m > n && useShifts){
-            return createPlacementMatrix(data, E, W, 
+            return createPlacementMatrix(table, E, W, 
                     nonNumericDefaultUncertainty, false);
         }
         
@@ -178,42 +247,35 @@ public class GAMUT_Algorithms {
         count = 0;
         parentIndex = 0;
         finalIndex = 0;
-        for(i=0; i<sources.length; i++){ //build matrix by dataset
-            s = sources[i];
-            for(j=0; j<gammas.length; j++){ //loop over gammas
-                g = gammas[j];
-                if(g.getSource().equals(s)){ //use only gammas from the current dataset
-                    p = g.getParent();
-                    f = g.getFinalLevel();
-                    if(p == null || f == null){ //cannot be part of the matrix if parent/final levels not known
-                        continue;
-                    }
-                    E.set(count, 0, g.getCMEnergy().toDouble());
-                    try{
-                        w = dataPt.constructFromString(g.getEg() + " " + g.getDEg()).getLower();
-                    }catch(NullPointerException e){
-                        w = nonNumericDefaultUncertainty; //use supplied absolute uncertainty
-                    }
-                    //System.out.println(w);
-                    W.set(count, 0, 1.0d/(w*w));
-                    for(k=0; k<levels.length; k++){ //loop over levels to find parent/final indecies
-                        if(p.equals(levels[k])){
-                            parentIndex = k;
-                        }else if(f.equals(levels[k])){
-                            finalIndex = k;
-                        }
-                    }
-                    G[count + parentIndex*n] = 1.0d;
-                    G[count + finalIndex*n] = -1.0d;
-                    if(useShifts){
-                        G[count + n*(levels.length + i)] = -1.0d;
-                    }
-                    count += 1;
-                }
+        for(i=0; i<rows.length; i++){ //build matrix by dataset
+            r = rows[i];
+            //cannot be part of the matrix if parent/final levels not known
+            if(parents[r] == gammaTable.NO_LEVEL || finals[r] == gammaTable.NO_LEVEL){
+                continue;
+            }
+            E.set(count, 0, energies[r]);
+            if(Double.isNaN(dE[r])){
+                w = nonNumericDefaultUncertainty; //use supplied absolute uncertainty
+            }else{
+                w = dE[r];
+            }
+            W.set(count, 0, 1.0d/(w*w));
+            //find parent/final indecies
+            if(parents[r] >= 0){
+                parentIndex = parents[r];
+            }
+            if(finals[r] >= 0){
+                finalIndex = finals[r];
+            }
+            G[count + parentIndex*n] = 1.0d;
+            G[count + finalIndex*n] = -1.0d;
+            if(useShifts){
+                G[count + n*(levels.length + sources[r])] = -1.0d;
             }
+            count += 1;
         }
         //add zero level constraints
-        count = n - data.getNumZeroLevels();
+        count = n - table.getNumZeroLevels();
         w = 100.0d*W.norm1();
         for(i=0; i<levels.length; i++){
             if(levels[i].getEnergy().toDouble() < 1e-10){
@@ -229,7 +291,10 @@ public class GAMUT_Algorithms {
     
     /**
      * Solves the linear least squares problem to fit the observed gamma ray
-     * energies into the level scheme.
+     * energies into the level scheme. The normal equations are solved with a
+     * sparse Cholesky factorization and only the elements of the variance 
+     * matrix which are needed (the diagonal and the parent/final level pairs)
+     * are computed, rather than the full dense inverse.
      * @param data the dataset from which G, E and W were generated
      * @param G the placement matrix
      * @param E the column vector of gamma energies 
@@ -244,6 +309,320 @@ public class GAMUT_Algorithms {
             Matrix G, Matrix E, Matrix W, Matrix fittedEg, Matrix dFittedEg,
             Matrix dFit){
         
+        int[][] pattern = sparseCholesky.rowPatterns(G);
+        sparseCholesky chol;
+        
+        try{
+            chol = new sparseCholesky(G, W, pattern);
+        }catch(ArithmeticException ex){
+            //singular level scheme, fall back to the pseudoinverse
+            return solveLevelSchemeSystemDense(data, G, E, W, fittedEg, 
+                    dFittedEg, dFit);
+        }
+        
+        return solveFactorizedSystem(data, G, E, W, pattern, chol, fittedEg, 
+                dFittedEg, dFit);
+    }
+    
+    /**
+     * Returns G^T W E.
+     * @param G the placement matrix
+     * @param E the column vector of gamma energies
+     * @param W the column vector of weights
+     * @param pattern the non-zero columns of each row of G
+     * @return G^T W E
+     */
+    private static double[] normalRightHandSide(Matrix G, Matrix E, Matrix W,
+            int[][] pattern){
+        double[] rhs = new double[G.getColumnDimension()];
+        double w;
+        
+        for(int i=0; i<pattern.length; i++){
+            w = W.get(i, 0)*E.get(i, 0);
+            for(int j : pattern[i]){
+                rhs[j] += G.get(i, j)*w;
+            }
+        }
+        return rhs;
+    }
+    
+    /**
+     * Returns the chi^2 of the level scheme fit, E^T W E - E^T W G x, where x
+     * is the solution of the normal equations.
+     * @param E the column vector of gamma energies
+     * @param W the column vector of weights
+     * @param rhs the right hand side of the normal equations, G^T W E
+     * @param x the solution of the normal equations
+     * @return the chi^2 of the level scheme fit
+     */
+    private static double energyChiSq(Matrix E, Matrix W, double[] rhs, double[] x){
+        double chiSq, e;
+        int i;
+        
+        chiSq = 0.0d;
+        for(i=0; i<E.getRowDimension(); i++){
+            e = E.get(i, 0);
+            chiSq += W.get(i, 0)*e*e;
+        }
+        for(i=0; i<x.length; i++){
+            chiSq -= rhs[i]*x[i];
+        }
+        return chiSq;
+    }
+    
+    /**
+     * Solves the level scheme system using the given factorization of
+     * G^T W G and fills in the fitted energies and their uncertainties. See
+     * {@link #solveLevelSchemeSystem(ENSDF_data.ENSDFDataset, Jama.Matrix, Jama.Matrix, Jama.Matrix, Jama.Matrix, Jama.Matrix, Jama.Matrix) 
+     * solveLevelSchemeSystem} for a description of the parameters.
+     * @param pattern the non-zero columns of each row of G
+     * @param chol the factorization of G^T W G
+     * @return the fitted level energies (and shifts, if those were included in G)
+     */
+    private static Matrix solveFactorizedSystem(ENSDFDataset data,
+            Matrix G, Matrix E, Matrix W, int[][] pattern, sparseCholesky chol,
+            Matrix fittedEg, Matrix dFittedEg, Matrix dFit){
+        Matrix solution;
+        double[] rhs, sol;
+        double sigma, chiSq, e, v;
+        int i, m, n, numFitted;
+        
+        rhs = normalRightHandSide(G, E, W, pattern);
+        sol = chol.solve(rhs);
+        solution = new Matrix(sol, sol.length);
+        
+        chiSq = energyChiSq(E, W, rhs, sol);
+        
+        m = data.getNumLevelsWithGammas();
+        n = data.getNumUniqueGammas();
+        sigma = Math.sqrt(chiSq/(double)(n-m));
+        
+        //only the diagonal of the variance matrix is needed here...
+        for(i=0; i<dFit.getRowDimension(); i++){
+            dFit.set(i, 0, sigma*Math.sqrt(chol.variance(i)));
+        }
+        
+        //...and the elements coupling the parent and final levels of each
+        //gamma ray (only the level scheme parts of G are used, i.e. no zero 
+        //level constraints or energy shifts)
+        numFitted = data.getNumNonzeroGammas() - data.getNumAdoptedGammas();
+        for(i=0; i<fittedEg.getRowDimension(); i++){
+            e = 0.0d;
+            v = 0.0d;
+            if(i < numFitted){
+                for(int j : pattern[i]){
+                    if(j >= m){
+                        continue;
+                    }
+                    e += G.get(i, j)*sol[j];
+                    for(int k : pattern[i]){
+                        if(k < m){
+                            v += G.get(i, j)*G.get(i, k)*chol.covariance(j, k);
+                        }
+                    }
+                }
+            }
+            fittedEg.set(i, 0, e);
+            if(i < dFittedEg.getRowDimension()){
+                dFittedEg.set(i, 0, sigma*Math.sqrt(v));
+            }
+        }
+        
+        return solution;
+    }
+    
+    /**
+     * Fits the observed gamma ray energies into the level scheme using
+     * iteratively reweighted least squares. Rather than asking about 
+     * discrepant gamma rays one at a time, the weight of each gamma ray is 
+     * multiplied by a robust weight (between 0 and 1) which depends on how
+     * many standard deviations it is from the fit, and the fit is repeated
+     * until the robust weights no longer change. The residuals are measured
+     * in units of the quoted uncertainties, scaled up by the (normalized) 
+     * median absolute residual when that is larger than 1. Every iteration 
+     * reuses the ordering and structure of the first sparse factorization.
+     * The zero level constraints always keep their full weight.
+     * @param data the dataset from which G, E and W were generated
+     * @param G the placement matrix
+     * @param E the column vector of gamma energies 
+     * @param W the column vector of weights (reciprocal of energy uncertainties
+     * squared. Represents the diagonal of the weight matrix. Not modified.
+     * @param fittedEg the column vector to fill with fitted gamma ray energies
+     * @param dFittedEg the column vector to fill with uncertainties for fitted energies
+     * @param dFit the column vector of uncertainties in the fitted quantities
+     * @param weighting the robust weight function. The Tukey weights are
+     * started from the converged Huber fit, since the Tukey fit can have
+     * several solutions.
+     * @param robustWeights if not <code>null</code> this column vector (with
+     * the same size as W) is filled with the final robust weights
+     * @return the fitted level energies (and shifts, if those were included in G)
+     */
+    public static final Matrix solveLevelSchemeSystemRobust(ENSDFDataset data,
+            Matrix G, Matrix E, Matrix W, Matrix fittedEg, Matrix dFittedEg,
+            Matrix dFit, robustWeighting weighting, Matrix robustWeights){
+        final int maxIterations = 50;
+        final double tol = 1e-6;
+        final double minWeight = 1e-4; //keeps every level determined
+        int[][] pattern = sparseCholesky.rowPatterns(G);
+        sparseCholesky chol;
+        Matrix Weff;
+        double[] rho, newRho, u, sol;
+        double r, scale, change;
+        int i, iter, numFitted;
+        boolean singular;
+        robustWeighting[] phases;
+        
+        numFitted = data.getNumNonzeroGammas() - data.getNumAdoptedGammas();
+        rho = new double[W.getRowDimension()];
+        java.util.Arrays.fill(rho, 1.0d);
+        Weff = W.copy();
+        try{
+            chol = new sparseCholesky(G, Weff, pattern);
+        }catch(ArithmeticException ex){
+            //singular level scheme, no robust fit is possible
+            if(robustWeights != null){
+                copy(robustWeights, new Matrix(rho, rho.length));
+            }
+            return solveLevelSchemeSystemDense(data, G, E, W, fittedEg, 
+                    dFittedEg, dFit);
+        }
+        sol = chol.solve(normalRightHandSide(G, E, Weff, pattern));
+        
+        if(weighting == robustWeighting.TUKEY){
+            phases = new robustWeighting[]{robustWeighting.HUBER, robustWeighting.TUKEY};
+        }else{
+            phases = new robustWeighting[]{weighting};
+        }
+        u = new double[numFitted];
+        singular = false;
+        for(robustWeighting phase : phases){
+            for(iter=0; iter<maxIterations && !singular; iter++){
+                for(i=0; i<numFitted; i++){
+                    r = E.get(i, 0);
+                    for(int j : pattern[i]){
+                        r -= G.get(i, j)*sol[j];
+                    }
+                    u[i] = r*Math.sqrt(W.get(i, 0));
+                }
+                scale = Math.max(1.0d, 1.4826d*medianAbs(u));
+                
+                newRho = rho.clone();
+                change = 0.0d;
+                for(i=0; i<numFitted; i++){
+                    newRho[i] = Math.max(phase.weight(u[i]/scale), minWeight);
+                    change = Math.max(change, Math.abs(newRho[i] - rho[i]));
+                    Weff.set(i, 0, W.get(i, 0)*newRho[i]);
+                }
+                try{
+                    chol.factorize(Weff);
+                }catch(ArithmeticException ex){
+                    //keep the last weights which gave a non-singular system
+                    for(i=0; i<numFitted; i++){
+                        Weff.set(i, 0, W.get(i, 0)*rho[i]);
+                    }
+                    chol.factorize(Weff);
+                    singular = true;
+                    break;
+                }
+                rho = newRho;
+                sol = chol.solve(normalRightHandSide(G, E, Weff, pattern));
+                if(change < tol){
+                    break;
+                }
+            }
+        }
+        
+        if(robustWeights != null){
+            copy(robustWeights, new Matrix(rho, rho.length));
+        }
+        return solveFactorizedSystem(data, G, E, Weff, pattern, chol, fittedEg, 
+                dFittedEg, dFit);
+    }
+    
+    /**
+     * Returns the median of the absolute values of the elements of x.
+     * @param x an array
+     * @return the median of the absolute values of the elements of x
+     */
+    private static double medianAbs(double[] x){
+        double[] a = new double[x.length];
+        int n = x.length;
+        
+        if(n == 0){
+            return 0.0d;
+        }
+        for(int i=0; i<n; i++){
+            a[i] = Math.abs(x[i]);
+        }
+        java.util.Arrays.sort(a);
+        if(n % 2 == 1){
+            return a[n/2];
+        }
+        return 0.5d*(a[n/2 - 1] + a[n/2]);
+    }
+    
+    /**
+     * Returns the gamma ray corresponding to each row of the placement matrix
+     * made by {@link #createPlacementMatrix(ENSDF_data.ENSDFDataset, Jama.Matrix, Jama.Matrix, double, boolean) 
+     * createPlacementMatrix}. The rows for the zero level constraints are 
+     * <code>null</code>.
+     * @param data the dataset from which the placement matrix was made
+     * @param numRows the number of rows in the placement matrix
+     * @return the gamma ray corresponding to each row of the placement matrix
+     */
+    public static gamma[] getEnergyRowGammas(ENSDFDataset data, int numRows){
+        return getEnergyRowGammas(new gammaTable(data), numRows);
+    }
+    
+    /**
+     * Returns the gamma ray corresponding to each row of the placement matrix
+     * made by {@link #createPlacementMatrix(ENSDF_data.gammaTable, Jama.Matrix, Jama.Matrix, double, boolean) 
+     * createPlacementMatrix}. The rows for the zero level constraints are 
+     * <code>null</code>.
+     * @param table the gamma table from which the placement matrix was made
+     * @param numRows the number of rows in the placement matrix
+     * @return the gamma ray corresponding to each row of the placement matrix
+     */
+    public static gamma[] getEnergyRowGammas(gammaTable table, int numRows){
+        int[] rows = table.getEnergyRows();
+        int[] parents = table.getParents();
+        int[] finals = table.getFinalLevels();
+        gamma[] result = new gamma[numRows];
+        int i, count;
+        
+        count = 0;
+        for(i=0; i<rows.length; i++){
+            if(parents[rows[i]] == gammaTable.NO_LEVEL || 
+                    finals[rows[i]] == gammaTable.NO_LEVEL){
+                continue;
+            }
+            if(count < numRows){
+                result[count] = table.getGamma(rows[i]);
+            }
+            count += 1;
+        }
+        return result;
+    }
+    
+    /**
+     * Solves the linear least squares problem to fit the observed gamma ray
+     * energies into the level scheme using the dense pseudoinverse of the
+     * normal matrix. This is used when the level scheme is singular and so
+     * cannot be factorized by {@link sparseCholesky}.
+     * @param data the dataset from which G, E and W were generated
+     * @param G the placement matrix
+     * @param E the column vector of gamma energies 
+     * @param W the column vector of weights (reciprocal of energy uncertainties
+     * squared. Represents the diagonal of the weight matrix
+     * @param fittedEg the column vector to fill with fitted gamma ray energies
+     * @param dFittedEg the column vector to fill with uncertainties for fitted energies
+     * @param dFit the column vector of uncertainties in the fitted quantities
+     * @return the fitted level energies (and shifts, if those were included in G)
+     */
+    private static Matrix solveLevelSchemeSystemDense(ENSDFDataset data,
+            Matrix G, Matrix E, Matrix W, Matrix fittedEg, Matrix dFittedEg,
+            Matrix dFit){
+        
         Matrix V; //variance matrix
         Matrix WG, WE;
         Matrix solution;
@@ -266,14 +645,14 @@ public class GAMUT_Algorithms {
             WE.set(i, 0, W.get(i, 0)*E.get(i, 0));
         }
         
-        V = pseudoinverse(((G.transpose()).times(WG)));
+        V = pseudoinverse(backend.weightedNormalMatrix(G, W));
         //V = ((G.transpose()).times(WG)).inverse();
         
-        solution = V.times(G.transpose().times(WE));
+        solution = backend.times(V, backend.transposeTimes(G, WE));
         
         m = data.getNumLevelsWithGammas();
         n = data.getNumUniqueGammas();
-        sigma = Math.sqrt((E.transpose().times(WE)).minus(E.transpose().times(WG.times(solution))).get(0,0)/
+        sigma = Math.sqrt((E.transpose().times(WE)).minus(E.transpose().times(backend.times(WG, solution))).get(0,0)/
                 (double)(n-m));
         
         for(i=0; i<dFit.getRowDimension(); i++){
@@ -283,7 +662,7 @@ public class GAMUT_Algorithms {
         copy(lvlScheme, G.getMatrix(0, data.getNumNonzeroGammas() - 
                 data.getNumAdoptedGammas() - 1, 0, m-1));
 
-        copy(fittedEg, lvlScheme.times(solution));
+        copy(fittedEg, backend.times(lvlScheme, solution));
         for(i=0; i<dFittedEg.getRowDimension(); i++){
             dFittedEg.set(i, 0, sigma*Math.sqrt(sum(outerProduct(getRow(lvlScheme, i),
                     getRow(lvlScheme, i)).arrayTimes(V))));
@@ -293,6 +672,381 @@ public class GAMUT_Algorithms {
         return solution;
     }
     
+    /**
+     * Checks the uncertainties of the fitted level energies by Monte Carlo.
+     * In each sample the measured gamma ray energies are replaced by values
+     * drawn from normal distributions with the uncertainties given by W and
+     * the level scheme is fitted again. Since G^T W G does not depend on the 
+     * energies it is factorized once; each sample only needs a new right 
+     * hand side and a pair of triangular solves. The zero level constraints
+     * are not perturbed. The samples are run in parallel, see 
+     * {@link monteCarloUncertainty}.
+     * @param data the dataset from which G, E and W were generated
+     * @param G the placement matrix
+     * @param E the column vector of gamma energies 
+     * @param W the column vector of weights used in the final fit
+     * @param mc the settings of the Monte Carlo check, the results for the
+     * level energies are recorded in this object
+     * @return the standard deviation of each fitted quantity (level energies,
+     * then shifts if those were included in G) over the samples, or 
+     * <code>null</code> if the level scheme is singular
+     */
+    public static Matrix monteCarloLevelSchemeSystem(ENSDFDataset data,
+            Matrix G, Matrix E, Matrix W, monteCarloUncertainty mc){
+        final int[][] pattern = sparseCholesky.rowPatterns(G);
+        final int numFitted = data.getNumNonzeroGammas() - data.getNumAdoptedGammas();
+        final java.util.Random[] streams = mc.createStreams(mc.getNumBlocks());
+        final sparseCholesky chol;
+        final double[] ref;
+        level[] levels = data.getLevelsWithGammas();
+        monteCarloUncertainty.moments[] blocks;
+        monteCarloUncertainty.moments total;
+        Matrix result;
+        double[] rhs;
+        double chiSq, sigma;
+        int i, m, n;
+        
+        try{
+            chol = new sparseCholesky(G, W, pattern);
+        }catch(ArithmeticException ex){
+            return null;
+        }
+        rhs = normalRightHandSide(G, E, W, pattern);
+        ref = chol.solve(rhs);
+        
+        blocks = java.util.stream.IntStream.range(0, streams.length).parallel()
+                .mapToObj(b -> {
+            monteCarloUncertainty.moments sums = new monteCarloUncertainty.moments(ref);
+            Matrix Es = E.copy();
+            int k, r;
+            
+            for(k=0; k<mc.getBlockSamples(b); k++){
+                for(r=0; r<numFitted; r++){
+                    if(W.get(r, 0) > 0.0d){
+                        Es.set(r, 0, E.get(r, 0) + 
+                                streams[b].nextGaussian()/Math.sqrt(W.get(r, 0)));
+                    }
+                }
+                sums.add(chol.solve(normalRightHandSide(G, Es, W, pattern)));
+            }
+            return sums;
+        }).toArray(monteCarloUncertainty.moments[]::new);
+        //the blocks are added in order so the result is reproducible
+        total = new monteCarloUncertainty.moments(ref);
+        for(monteCarloUncertainty.moments sums : blocks){
+            total.add(sums);
+        }
+        
+        //same scale factor as solveFactorizedSystem
+        chiSq = energyChiSq(E, W, rhs, ref);
+        m = data.getNumLevelsWithGammas();
+        n = data.getNumUniqueGammas();
+        sigma = Math.sqrt(chiSq/(double)(n-m));
+        mc.setEnergyScale(sigma);
+        
+        result = new Matrix(ref.length, 1);
+        for(i=0; i<ref.length; i++){
+            result.set(i, 0, total.sd(i));
+            if(i < m){
+                mc.addLevel(levels[i].getLvlRecord().getE(), ref[i], 
+                        sigma*Math.sqrt(chol.variance(i)), total.sd(i));
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Refits the level energies leaving out each data set (source) in turn.
+     * Rather than refitting from scratch, the normal equations are downdated
+     * by the rows of the data set: if U holds the rows being removed then the
+     * solution of (G^T W G - U^T W_U U) x = G^T W E - U^T W_U E_U follows from
+     * the existing factorization of G^T W G (Sherman-Morrison-Woodbury), 
+     * which only needs one solve per removed row and a small dense system.
+     * Levels which are no longer connected to a zero level, and energy shifts
+     * which no longer have any gamma rays, are held at their fitted values
+     * and reported as undetermined. The data sets are processed in parallel.
+     * @param data the dataset from which G, E and W were generated
+     * @param G the placement matrix
+     * @param E the column vector of gamma energies 
+     * @param W the column vector of weights used in the final fit
+     * @return the change of each level energy when each data set is removed,
+     * or <code>null</code> if the level scheme is singular
+     */
+    public static datasetJackknife jackknifeLevelSchemeSystem(ENSDFDataset data,
+            Matrix G, Matrix E, Matrix W){
+        final int[][] pattern = sparseCholesky.rowPatterns(G);
+        final int numFitted = data.getNumNonzeroGammas() - data.getNumAdoptedGammas();
+        final int m = data.getNumLevelsWithGammas();
+        final String[] sources = data.getSources();
+        final gamma[] rowGammas = getEnergyRowGammas(data, numFitted);
+        final sparseCholesky chol;
+        final double[] x;
+        level[] levels = data.getLevelsWithGammas();
+        String[] labels = new String[m];
+        double[] rhs, dFit;
+        double chiSq, sigma;
+        datasetJackknife result;
+        int i;
+        
+        try{
+            chol = new sparseCholesky(G, W, pattern);
+        }catch(ArithmeticException ex){
+            return null;
+        }
+        rhs = normalRightHandSide(G, E, W, pattern);
+        x = chol.solve(rhs);
+        
+        //same scale factor as solveFactorizedSystem
+        chiSq = energyChiSq(E, W, rhs, x);
+        sigma = Math.sqrt(chiSq/(double)(data.getNumUniqueGammas() - m));
+        dFit = new double[m];
+        for(i=0; i<m; i++){
+            labels[i] = levels[i].getLvlRecord().getE();
+            dFit[i] = sigma*Math.sqrt(chol.variance(i)); //before the parallel part
+        }
+        result = new datasetJackknife(sources, labels, 
+                java.util.Arrays.copyOf(x, m), dFit);
+        
+        java.util.stream.IntStream.range(0, sources.length).parallel().forEach(s -> {
+            boolean[] removed = new boolean[pattern.length];
+            boolean any = false;
+            double[] refit;
+            
+            for(int r=0; r<numFitted; r++){
+                if(rowGammas[r] != null && rowGammas[r].getSource().equals(sources[s])){
+                    removed[r] = true;
+                    any = true;
+                }
+            }
+            if(!any){
+                return;
+            }
+            refit = leaveOutRows(G, E, W, pattern, chol, x, removed, m);
+            if(refit != null){
+                result.setLeftOut(s, refit);
+            }
+        });
+        
+        return result;
+    }
+    
+    /**
+     * Computes the leverage and Cook's distance of each row of the level 
+     * scheme fit. The leverage h_i = w_i g_i^T (G^T W G)^-1 g_i is the 
+     * diagonal of the hat matrix. Row g_i of G only has non-zero elements
+     * for the parent and final levels of the gamma ray (and the shift of its
+     * data set), so only elements of the inverse within the pattern of the 
+     * sparse factorization are needed and the hat matrix is never formed. A 
+     * leverage of 1 means that some fitted quantity depends on that row alone
+     * (e.g. the gamma ray is the only connection of a level), so its residual
+     * is always 0. Cook's distance, D_i = w_i r_i^2 h_i / (p s^2 (1 - h_i)^2)
+     * with p the number of fitted quantities and s^2 the reduced chi^2, 
+     * measures how much the fit moves when the row is removed; it is 
+     * <code>NaN</code> for rows with a leverage of 1.
+     * @param data the dataset from which G, E and W were generated
+     * @param G the placement matrix
+     * @param E the column vector of gamma energies 
+     * @param W the column vector of weights used in the final fit
+     * @param leverage the column vector (the same size as W) to fill with
+     * the leverage of each row
+     * @param cooksDistance the column vector (the same size as W) to fill
+     * with Cook's distance of each row
+     * @return <code>false</code> if the level scheme is singular, in which 
+     * case the vectors are not filled
+     */
+    public static boolean energyFitInfluence(ENSDFDataset data, Matrix G, Matrix E,
+            Matrix W, Matrix leverage, Matrix cooksDistance){
+        int[][] pattern = sparseCholesky.rowPatterns(G);
+        sparseCholesky chol;
+        double[] rhs, x;
+        double s2, h, r;
+        int i, p;
+        
+        try{
+            chol = new sparseCholesky(G, W, pattern);
+        }catch(ArithmeticException ex){
+            return false;
+        }
+        rhs = normalRightHandSide(G, E, W, pattern);
+        x = chol.solve(rhs);
+        p = x.length;
+        s2 = energyChiSq(E, W, rhs, x)/(double)(data.getNumUniqueGammas() - 
+                data.getNumLevelsWithGammas());
+        
+        for(i=0; i<pattern.length; i++){
+            h = 0.0d;
+            r = E.get(i, 0);
+            for(int j : pattern[i]){
+                r -= G.get(i, j)*x[j];
+                for(int k : pattern[i]){
+                    h += G.get(i, j)*G.get(i, k)*chol.covariance(j, k);
+                }
+            }
+            h *= W.get(i, 0);
+            leverage.set(i, 0, h);
+            if(h > 1.0d - 1e-8){
+                cooksDistance.set(i, 0, Double.NaN);
+            }else{
+                cooksDistance.set(i, 0, W.get(i, 0)*r*r*h/
+                        ((double)p*s2*(1.0d - h)*(1.0d - h)));
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Returns the solution of the level scheme system with the given rows
+     * removed, using the factorization of the full system. See 
+     * {@link #jackknifeLevelSchemeSystem(ENSDF_data.ENSDFDataset, Jama.Matrix, Jama.Matrix, Jama.Matrix) 
+     * jackknifeLevelSchemeSystem}.
+     * @param G the placement matrix
+     * @param E the column vector of gamma energies
+     * @param W the column vector of weights
+     * @param pattern the non-zero columns of each row of G
+     * @param chol the factorization of G^T W G
+     * @param x the solution of the full system
+     * @param removed the rows to remove
+     * @param numLevels the number of level energies (the first columns of G)
+     * @return the solution without the removed rows, <code>NaN</code> for the
+     * quantities which are not determined without them, or <code>null</code>
+     * if the downdated system could not be solved
+     */
+    private static double[] leaveOutRows(Matrix G, Matrix E, Matrix W,
+            int[][] pattern, sparseCholesky chol, double[] x, boolean[] removed,
+            int numLevels){
+        int n = x.length;
+        List<double[]> U = new ArrayList<>(); //update vectors
+        List<Double> c = new ArrayList<>(); //update coefficients
+        List<Double> y = new ArrayList<>(); //update observations
+        int[] component = new int[numLevels];
+        boolean[] anchored = new boolean[numLevels];
+        boolean[] used = new boolean[n];
+        boolean[] pinned = new boolean[numLevels];
+        double[][] Z;
+        double[] u, x0, result;
+        Matrix M, t;
+        int i, j, k, a, b, first;
+        
+        //levels connected by the remaining rows, anchored by the zero level
+        //constraints (the rows with a single level)
+        for(j=0; j<numLevels; j++){
+            component[j] = j;
+        }
+        for(i=0; i<pattern.length; i++){
+            if(removed[i] || !(W.get(i, 0) > 0.0d)){
+                continue;
+            }
+            first = -1;
+            for(int jj : pattern[i]){
+                used[jj] = true;
+                if(jj >= numLevels){
+                    continue;
+                }
+                if(first < 0){
+                    first = jj;
+                }else{
+                    a = root(component, first);
+                    b = root(component, jj);
+                    component[Math.max(a, b)] = Math.min(a, b);
+                }
+            }
+            if(first >= 0 && pattern[i].length == 1){
+                anchored[first] = true;
+            }
+        }
+        for(j=0; j<numLevels; j++){
+            if(anchored[j]){
+                anchored[root(component, j)] = true;
+            }
+        }
+        
+        for(i=0; i<pattern.length; i++){
+            if(removed[i] && W.get(i, 0) > 0.0d){
+                u = new double[n];
+                for(int jj : pattern[i]){
+                    u[jj] = G.get(i, jj);
+                }
+                U.add(u);
+                c.add(-W.get(i, 0));
+                y.add(E.get(i, 0));
+            }
+        }
+        //hold one level of each floating group, and each unused shift, at its
+        //fitted value; this does not affect the other quantities
+        for(j=0; j<n; j++){
+            if(j < numLevels){
+                a = root(component, j);
+                pinned[j] = !anchored[a];
+                if(a != j || anchored[a]){
+                    continue;
+                }
+            }else if(used[j]){
+                continue;
+            }
+            u = new double[n];
+            u[j] = 1.0d;
+            U.add(u);
+            c.add(1.0d);
+            y.add(x[j]);
+        }
+        
+        //x0 = N^-1 (G^T W E + U^T C y), then correct for the update of N
+        k = U.size();
+        Z = new double[k][];
+        x0 = x.clone();
+        for(a=0; a<k; a++){
+            Z[a] = chol.solve(U.get(a));
+            for(j=0; j<n; j++){
+                x0[j] += c.get(a)*y.get(a)*Z[a][j];
+            }
+        }
+        M = new Matrix(k, k);
+        t = new Matrix(k, 1);
+        for(a=0; a<k; a++){
+            for(b=0; b<k; b++){
+                M.set(a, b, dot(U.get(a), Z[b]) + (a == b ? 1.0d/c.get(a) : 0.0d));
+            }
+            t.set(a, 0, dot(U.get(a), x0));
+        }
+        result = x0;
+        if(k > 0){
+            try{
+                t = M.solve(t);
+            }catch(RuntimeException ex){
+                return null; //singular
+            }
+            for(a=0; a<k; a++){
+                for(j=0; j<n; j++){
+                    result[j] -= Z[a][j]*t.get(a, 0);
+                }
+            }
+        }
+        for(j=0; j<n; j++){
+            if((j < numLevels && pinned[j]) || (j >= numLevels && !used[j])){
+                result[j] = Double.NaN;
+            }
+        }
+        return result;
+    }
+    
+    //root of the group containing j, with path halving
+    private static int root(int[] component, int j){
+        while(component[j] != j){
+            component[j] = component[component[j]];
+            j = component[j];
+        }
+        return j;
+    }
+    
+    private static double dot(double[] a, double[] b){
+        double result = 0.0d;
+        
+        for(int i=0; i<a.length; i++){
+            result += a[i]*b[i];
+        }
+        return result;
+    }
+    
     /**
      * Returns <code>true</code> if the given String can be parsed into an
      * integer.
@@ -470,7 +1224,8 @@ public class GAMUT_Algorithms {
             Matrix W, int[] index, double[] _chiSq){
         gamma[] gammas = data.getNonzeroGammas();
         String[] sources = data.getSources();
-        int count, i, j;
+        Map<String, List<gamma>> gammasBySource = ENSDFDataset.groupBySource(gammas);
+        int count, i;
         gamma g;
         level p, f;
         String s;
@@ -482,29 +1237,83 @@ public class GAMUT_Algorithms {
         count = 0;
         for(i=0; i<sources.length; i++){
             s = sources[i];
-            for(j=0; j<gammas.length; j++){
-                g = gammas[j];
-                if(g.getSource().equals(s)){
-                    p = g.getParent();
-                    f = g.getFinalLevel();
-                    if(p == null || f == null){
-                        continue;
-                    }
-                    E = g.getCMEnergy().toDouble();
-                    chiSq = W.get(count, 0)*(E - fitEg.get(count, 0))*(E - fitEg.get(count, 0));
-                    if(chiSq > maxChiSq){
-                        result = g;
-                        maxChiSq = chiSq;
-                        index[0] = count;
-                    }
-                    count += 1;
+            for(gamma gam : ENSDFDataset.getSourceGroup(gammasBySource, s)){
+                g = gam;
+                p = g.getParent();
+                f = g.getFinalLevel();
+                if(p == null || f == null){
+                    continue;
                 }
+                E = g.getCMEnergy().toDouble();
+                chiSq = W.get(count, 0)*(E - fitEg.get(count, 0))*(E - fitEg.get(count, 0));
+                if(chiSq > maxChiSq){
+                    result = g;
+                    maxChiSq = chiSq;
+                    index[0] = count;
+                }
+                count += 1;
             }
         }
         _chiSq[0] = maxChiSq;
         return result;
     }
     
+    /**
+     * A measurement which is discrepant with a fit.
+     */
+    private static class outlier {
+        final gamma g;
+        final int i, j; //row and column of the measurement
+        final double chiSq;
+        
+        outlier(gamma g, int i, int j, double chiSq){
+            this.g = g;
+            this.i = i;
+            this.j = j;
+            this.chiSq = chiSq;
+        }
+    }
+    
+    /**
+     * Returns the gammas whose energy differs from the fitted energy by more
+     * than the given number of standard deviations, sorted from the largest 
+     * chi^2 to the smallest. Gammas with equal chi^2 are kept in the same order
+     * as the rows of the placement matrix, so the first element is the gamma
+     * returned by {@link #largestEgChiSq(ENSDF_data.ENSDFDataset, Jama.Matrix, Jama.Matrix, int[], double[]) 
+     * largestEgChiSq}.
+     * @param data the data which was used to obtain the fit
+     * @param fitEg the fitted gamma-ray energies
+     * @param W the weights of the gamma-rays
+     * @param threshold the number of standard deviations
+     * @return the gammas whose energy differs from the fitted energy by more
+     * than the given number of standard deviations
+     */
+    private static List<outlier> EgOutliers(ENSDFDataset data, Matrix fitEg,
+            Matrix W, double threshold){
+        gamma[] gammas = data.getNonzeroGammas();
+        Map<String, List<gamma>> gammasBySource = ENSDFDataset.groupBySource(gammas);
+        List<outlier> result = new ArrayList<>();
+        int count;
+        double E, chiSq;
+        
+        count = 0;
+        for(String s : data.getSources()){
+            for(gamma g : ENSDFDataset.getSourceGroup(gammasBySource, s)){
+                if(g.getParent() == null || g.getFinalLevel() == null){
+                    continue;
+                }
+                E = g.getCMEnergy().toDouble();
+                chiSq = W.get(count, 0)*(E - fitEg.get(count, 0))*(E - fitEg.get(count, 0));
+                if(Math.sqrt(chiSq) > threshold){
+                    result.add(new outlier(g, count, 0, chiSq));
+                }
+                count += 1;
+            }
+        }
+        result.sort((a, b) -> Double.compare(b.chiSq, a.chiSq));
+        return result;
+    }
+    
     /**
      * Performs a Chi Squared analysis on the fitted gamma ray energies. The user
      * is asked to increase the uncertainty of gamma rays which are differ from
@@ -520,45 +1329,76 @@ public class GAMUT_Algorithms {
      * adjusted, <code>false</code> otherwise.
      */
     public static boolean EgChiSqAnalysis(ENSDFDataset data, Matrix G, Matrix L, Matrix W){
-        int count;
+        return EgChiSqAnalysis(data, G, L, W, outlierPolicy.interactive());
+    }
+    
+    /**
+     * Performs a Chi Squared analysis on the fitted gamma ray energies. The
+     * uncertainties of gamma rays which differ from the fit by 3 or more 
+     * standard deviations are changed according to the given policy.
+     * @param data dataset on which the fit was performed
+     * @param G the placement matrix (produced by 
+     * {@link #createPlacementMatrix(ENSDF_data.ENSDFDataset, Jama.Matrix, Jama.Matrix, double, boolean)})
+     * @param L the fitted level energies and energy shifts (result of 
+     * {@link #solveLevelSchemeSystem(ENSDF_data.ENSDFDataset, Jama.Matrix, Jama.Matrix, Jama.Matrix, Jama.Matrix, Jama.Matrix, Jama.Matrix)})
+     * @param W matrix of weights (i.e. reciprocal squared uncertainties),
+     * elements of this matrix will be adjusted as the uncertainties are changed.
+     * @param policy how discrepant gamma rays are treated. The decisions made
+     * are recorded in the policy.
+     * @return <code>true</code> when no gamma ray energy uncertainties were
+     * adjusted, <code>false</code> otherwise.
+     */
+    public static boolean EgChiSqAnalysis(ENSDFDataset data, Matrix G, Matrix L, 
+            Matrix W, outlierPolicy policy){
+        List<outlier> outliers;
         gamma g;
         level p;
-        double E, chiSq, W_new, sigma_new;
-        int[] index = new int[1];
-        double[] _chiSq = new double[1];
+        double E, residual, sigma_new;
+        String oldUncert;
         boolean result;
-        Matrix fitEg = G.times(L);
+        Matrix fitEg;
         
-        result = true;
-        g = largestEgChiSq(data, fitEg, W, index, _chiSq);
-        count = index[0];
-        chiSq = _chiSq[0];
-        try{
-            E = g.getCMEnergy().toDouble();
-        }catch(NullPointerException e){
-            E = fitEg.get(count, 0);
+        if(!policy.canIterate("Eg")){
+            return true;
+        }
+        fitEg = backend.times(G, L);
+        outliers = EgOutliers(data, fitEg, W, policy.getThreshold(3.0d));
+        if(!policy.isBatch() && outliers.size() > 1){
+            outliers = outliers.subList(0, 1);
         }
         
-        if(Math.sqrt(chiSq) > 3){
-            sigma_new = Math.abs(E - fitEg.get(count, 0));
-            W_new = 1.0d/(sigma_new*sigma_new);
+        result = true;
+        for(outlier o : outliers){
+            g = o.g;
             p = g.getParent();
-            if(askChangeEnergyUncert(g, p, sigma_new)){
-                W.set(count, 0, W_new);
+            E = g.getCMEnergy().toDouble();
+            residual = E - fitEg.get(o.i, 0);
+            oldUncert = g.getDEg();
+            if(policy.getAction() == outlierPolicy.Action.ASK){
+                sigma_new = Math.abs(residual);
+                if(askChangeEnergyUncert(g, p, sigma_new)){
+                    policy.record("Eg", g, oldUncert, o.chiSq, sigma_new, "Accepted by user");
+                }else if(askEnterUncert(g)){
+                    sigma_new = getUserUncert();
+                    policy.record("Eg", g, oldUncert, o.chiSq, sigma_new, 
+                            sigma_new > 0.0d ? "Entered by user" : "Declined by user");
+                }else{
+                    sigma_new = -1.0d;
+                    policy.record("Eg", g, oldUncert, o.chiSq, sigma_new, "Declined by user");
+                }
+            }else{
+                sigma_new = policy.newUncertainty(residual);
+                policy.record("Eg", g, oldUncert, o.chiSq, sigma_new, "Automatic");
+            }
+            if(sigma_new > 0.0d){
+                W.set(o.i, 0, 1.0d/(sigma_new*sigma_new));
                 g.setNumericDEg(sigma_new);
                 result = false;
-                return result;
-            }else if(askEnterUncert(g)){
-                sigma_new = getUserUncert();
-                if(sigma_new > 0.0d){
-                    W_new = 1.0d/(sigma_new*sigma_new);
-                    W.set(count, 0, W_new);
-                    g.setNumericDEg(sigma_new);
-                    result = false;
-                }
-                return result;
             }
         }
+        if(!result){
+            policy.countIteration();
+        }
         return result;
     }
     
@@ -574,50 +1414,145 @@ public class GAMUT_Algorithms {
      */
     public static void setupIntensityMatrices(ENSDFDataset data, Matrix I, 
             Matrix W, double nonNumericDefaultUncertainty){
+        setupIntensityMatrices(new gammaTable(data), I, W, nonNumericDefaultUncertainty);
+    }
+    
+    /**
+     * Fills the matrices I and W with gamma ray intensities and their reciprocal
+     * uncertainties squared, from the columns of the gammas of the dataset.
+     * The rows are the unique gamma rays of the table (see 
+     * {@link gammaTable#getNumGroups() getNumGroups}).
+     * @param table the gamma table of the dataset containing the gamma ray data
+     * @param I the matrix of intensities
+     * @param W the matrix if reciprocal square uncertainties
+     * @param nonNumericDefaultUncertainty the (percent) uncertainty to assign
+     * gamma ray intensities with non-numeric uncertainty (including those with
+     * missing uncertainty)
+     */
+    public static void setupIntensityMatrices(gammaTable table, Matrix I, 
+            Matrix W, double nonNumericDefaultUncertainty){
         
-        level[] levels = data.getLevelsWithGammas();
-        List<String> sources = java.util.Arrays.asList(data.getSources());
-        List<gammaEquivalenceClass> tmp;
-        int k, i, j;
+        int[] sources = table.getSources();
+        double[] intensities = table.getIntensities();
+        double[] dI = table.getIntensityUncertainties();
+        int i, r, j;
         double w;
         
-        i = 0;
-        for(k=0; k<levels.length; k++){
-            tmp = ENSDFDataset.groupByGamma(levels[k]);
-            for(gammaEquivalenceClass G : tmp){
-                for(gamma g : G.getGammas()){
-                    j = sources.indexOf(g.getSource());
-                    if(j == -1){
-                        continue; //source not in list, i.e. must be from adopted
-                    }
-                    //if the normalized intensity has no uncertainty then
-                    //either the original had no uncertainty or there is 
-                    //only 1 gamma de-exciting the level, so the 
-                    //normalized intensity is 100 by definition. In
-                    //either case we should ignore it.
-                    if (!g.getDIg(true).equals("") && g.ig.isPresent()) {
-                        I.set(i, j, g.ig.get());
-                        try{
-                            w = dataPt.constructFromString(g.getIg() + " " + g.getDIg()).getLower();
-                        }catch(NullPointerException e){
-                            w = nonNumericDefaultUncertainty*I.get(i,j);
-                        }
-                        W.set(i, j, 1.0/(w*w));
-                    } else {
-                        I.set(i, j, -1.0d);
-                        W.set(i, j, 1.0d);
+        for(i=0; i<table.getNumGroups(); i++){
+            for(r=table.getGroupFrom(i); r<table.getGroupTo(i); r++){
+                j = sources[r];
+                if(j == -1){
+                    continue; //source not in list, i.e. must be from adopted
+                }
+                //intensities without a normalized uncertainty are ignored
+                //(see gammaTable#getIntensities)
+                if(!Double.isNaN(intensities[r])){
+                    I.set(i, j, intensities[r]);
+                    if(Double.isNaN(dI[r])){
+                        w = nonNumericDefaultUncertainty*I.get(i,j);
+                    }else{
+                        w = dI[r];
                     }
+                    W.set(i, j, 1.0/(w*w));
+                }else{
+                    I.set(i, j, -1.0d);
+                    W.set(i, j, 1.0d);
                 }
-                if(!G.isEmpty()){
-                    for(gamma g : G.getGammas()){
-                        if(!g.isAdopted()){
-                            i += 1;
-                            break;
-                        }
+            }
+        }
+    }
+    
+    /**
+     * Collects the gamma ray intensities and their reciprocal uncertainties 
+     * squared. The rows and columns are the same as those of the matrices
+     * filled by {@link #setupIntensityMatrices(ENSDF_data.ENSDFDataset, Jama.Matrix, Jama.Matrix, double) 
+     * setupIntensityMatrices}, but only cells containing a measurement are 
+     * stored.
+     * @param data the dataset containing the gamma ray data
+     * @param nonNumericDefaultUncertainty the (percent) uncertainty to assign
+     * gamma ray intensities with non-numeric uncertainty (including those with
+     * missing uncertainty)
+     * @return the intensity measurements
+     */
+    public static intensityObservations setupIntensityObservations(ENSDFDataset data, 
+            double nonNumericDefaultUncertainty){
+        return setupIntensityObservations(new gammaTable(data), nonNumericDefaultUncertainty);
+    }
+    
+    /**
+     * Collects the gamma ray intensities and their reciprocal uncertainties 
+     * squared, as {@link #setupIntensityObservations(ENSDF_data.ENSDFDataset, double) 
+     * setupIntensityObservations}, from the columns of the gammas of the 
+     * dataset.
+     * @param table the gamma table of the dataset containing the gamma ray data
+     * @param nonNumericDefaultUncertainty the (percent) uncertainty to assign
+     * gamma ray intensities with non-numeric uncertainty (including those with
+     * missing uncertainty)
+     * @return the intensity measurements
+     */
+    public static intensityObservations setupIntensityObservations(gammaTable table, 
+            double nonNumericDefaultUncertainty){
+        
+        int[] sources = table.getSources();
+        double[] intensities = table.getIntensities();
+        double[] dI = table.getIntensityUncertainties();
+        int numSources = table.getNumSources();
+        int numRows = table.getNumGroups();
+        int[] rowPtr;
+        List<Integer> cols;
+        List<Double> values, weights;
+        List<gamma> entryGammas;
+        double[] rowValues, rowWeights;
+        int[] rowGammas;
+        int i, r, j;
+        double w, I;
+        
+        rowPtr = new int[numRows + 1];
+        cols = new ArrayList<>();
+        values = new ArrayList<>();
+        weights = new ArrayList<>();
+        entryGammas = new ArrayList<>();
+        rowValues = new double[numSources];
+        rowWeights = new double[numSources];
+        rowGammas = new int[numSources];
+        for(i=0; i<numRows; i++){
+            //as in setupIntensityMatrices, a later gamma from the same
+            //data set overwrites an earlier one
+            java.util.Arrays.fill(rowValues, -1.0d);
+            for(r=table.getGroupFrom(i); r<table.getGroupTo(i); r++){
+                j = sources[r];
+                if(j == -1){
+                    continue; //source not in list, i.e. must be from adopted
+                }
+                if(!Double.isNaN(intensities[r])){
+                    I = intensities[r];
+                    if(Double.isNaN(dI[r])){
+                        w = nonNumericDefaultUncertainty*I;
+                    }else{
+                        w = dI[r];
                     }
+                    rowValues[j] = I;
+                    rowWeights[j] = 1.0/(w*w);
+                    rowGammas[j] = r;
+                }else{
+                    rowValues[j] = -1.0d;
+                }
+            }
+            for(j=0; j<numSources; j++){
+                if(rowValues[j] > 0.0d){
+                    cols.add(j);
+                    values.add(rowValues[j]);
+                    weights.add(rowWeights[j]);
+                    entryGammas.add(table.getGamma(rowGammas[j]));
                 }
             }
+            rowPtr[i+1] = cols.size();
         }
+        return new intensityObservations(numRows, numSources, rowPtr,
+                cols.stream().mapToInt(Integer::intValue).toArray(),
+                values.stream().mapToDouble(Double::doubleValue).toArray(),
+                weights.stream().mapToDouble(Double::doubleValue).toArray(),
+                entryGammas.toArray(new gamma[0]));
     }
     
     /**
@@ -633,18 +1568,32 @@ public class GAMUT_Algorithms {
      * scale factors.
      */
     public static Matrix calcIbar(Matrix I, Matrix W, Matrix beta, Matrix dIbar){
-        Matrix Ibar = new Matrix(I.getRowDimension(), 1);
-        double sum_num, sum_denom;
-        int i, j;
+        return calcIbar(intensityObservations.fromMatrices(I, W), beta, dIbar);
+    }
+    /**
+     * Calculates the intensity weighted averages using the given weights and 
+     * scale factors (to put everything on the same scale).
+     * @param obs the intensities to average and their weights (see 
+     * {@link #setupIntensityObservations(ENSDF_data.ENSDFDataset, double) 
+     * setupIntensityObservations})
+     * @param beta the scale factors to put all intensities on the same scale
+     * @param dIbar if not <code>null</code> then the uncertainties of the 
+     * weighted averages are recorded in this vector.
+     * @return the intensity weighted averages using the given weights and 
+     * scale factors.
+     */
+    public static Matrix calcIbar(intensityObservations obs, Matrix beta, Matrix dIbar){
+        Matrix Ibar = new Matrix(obs.getRowDimension(), 1);
+        double sum_num, sum_denom, b;
+        int i, k;
         
         for(i=0; i<Ibar.getRowDimension(); i++){
             sum_num = 0.0d;
             sum_denom = 0.0d;
-            for(j=0; j<beta.getRowDimension(); j++){
-                if(I.get(i, j) > 0.0d){
-                    sum_num += W.get(i, j)*I.get(i, j)*beta.get(j, 0);
-                    sum_denom += W.get(i, j)*beta.get(j, 0)*beta.get(j, 0);
-                }
+            for(k=obs.rowStart(i); k<obs.rowEnd(i); k++){
+                b = beta.get(obs.getColumn(k), 0);
+                sum_num += obs.getWeight(k)*obs.getValue(k)*b;
+                sum_denom += obs.getWeight(k)*b*b;
             }
             if(sum_num <= 0.0d){
                 Ibar.set(i, 0, -1.0d);
@@ -685,17 +1634,25 @@ public class GAMUT_Algorithms {
      * @return the Chi Squared
      */
     public static double calcIntensityChiSq(Matrix I, Matrix W, Matrix beta){
-        Matrix Ibar = calcIbar(I, W, beta);
+        return calcIntensityChiSq(intensityObservations.fromMatrices(I, W), beta);
+    }
+    /**
+     * Calculated the Chi Squared for the intensities using the given value of
+     * the intensity multipliers
+     * @param obs the experimental intensities and their weights
+     * @param beta the intensity multipliers
+     * @return the Chi Squared
+     */
+    public static double calcIntensityChiSq(intensityObservations obs, Matrix beta){
+        Matrix Ibar = calcIbar(obs, beta, null);
         double sum = 0.0d;
         double r;
-        int i, j;
+        int i, k;
         
-        for(i=0; i<I.getRowDimension(); i++){
-            for(j=0; j<I.getColumnDimension(); j++){
-                if(I.get(i, j) > 0.0d){
-                    r = I.get(i, j) - beta.get(j,0)*Ibar.get(i,0);
-                    sum += W.get(i, j)*r*r;
-                }
+        for(i=0; i<obs.getRowDimension(); i++){
+            for(k=obs.rowStart(i); k<obs.rowEnd(i); k++){
+                r = obs.getValue(k) - beta.get(obs.getColumn(k),0)*Ibar.get(i,0);
+                sum += obs.getWeight(k)*r*r;
             }
         }
         
@@ -750,26 +1707,109 @@ public class GAMUT_Algorithms {
         return 0.5d*(a+b);
     }
     
+    /**
+     * Cached quantities for the golden section search over a single intensity
+     * multiplier, beta_j. For each row i of the intensity matrix containing a
+     * measurement from data set j, the weighted average and chi^2 of the
+     * other measurements in that row are stored. The chi^2 of the row as a
+     * function of beta_j then follows from
+     * chi^2 = m + S (Ibar - Ibar') ^2 + w_j (I_j - beta_j Ibar)^2,
+     * where Ibar' and m are the weighted average and minimum chi^2 of the
+     * other measurements and S is the sum of their w beta^2. Since every term
+     * is non-negative there is no loss of precision from cancellation.
+     */
+    static final class intensitySums {
+        final intensityObservations obs;
+        final double[] otherMean, otherSd, otherMin; //indexed by position in column j
+        
+        intensitySums(intensityObservations obs){
+            int j, maxCount;
+            
+            this.obs = obs;
+            maxCount = 0;
+            for(j=0; j<obs.getColumnDimension(); j++){
+                maxCount = Math.max(maxCount, obs.getColumnCount(j));
+            }
+            otherMean = new double[maxCount];
+            otherSd = new double[maxCount];
+            otherMin = new double[maxCount];
+        }
+        
+        //caches the sums over the measurements not in column j, using the
+        //current values of the other multipliers
+        void beginColumn(int j, Matrix beta){
+            int i, k, r;
+            double sn, sd, m, b, res;
+            
+            for(r=0; r<obs.getColumnCount(j); r++){
+                i = obs.getRow(obs.getColumnEntry(j, r));
+                sn = 0.0d;
+                sd = 0.0d;
+                for(k=obs.rowStart(i); k<obs.rowEnd(i); k++){
+                    if(obs.getColumn(k) != j){
+                        b = beta.get(obs.getColumn(k), 0);
+                        sn += obs.getWeight(k)*obs.getValue(k)*b;
+                        sd += obs.getWeight(k)*b*b;
+                    }
+                }
+                otherSd[r] = sd;
+                otherMean[r] = sd > 0.0d ? sn/sd : 0.0d;
+                m = 0.0d;
+                for(k=obs.rowStart(i); k<obs.rowEnd(i); k++){
+                    if(obs.getColumn(k) != j){
+                        res = obs.getValue(k) - beta.get(obs.getColumn(k), 0)*otherMean[r];
+                        m += obs.getWeight(k)*res*res;
+                    }
+                }
+                otherMin[r] = m;
+            }
+        }
+        
+        //the part of the total chi^2 which depends on beta_j = x; the other
+        //rows contribute a constant which does not affect the minimization
+        double columnChiSq(int j, double x){
+            int k, r;
+            double w, y, Ibar, res, diff, sum;
+            
+            sum = 0.0d;
+            for(r=0; r<obs.getColumnCount(j); r++){
+                k = obs.getColumnEntry(j, r);
+                w = obs.getWeight(k);
+                y = obs.getValue(k);
+                if(otherMean[r]*otherSd[r] + w*y*x <= 0.0d){
+                    Ibar = -1.0d; //same convention as calcIbar
+                }else{
+                    Ibar = (otherMean[r]*otherSd[r] + w*y*x)/(otherSd[r] + w*x*x);
+                }
+                diff = Ibar - otherMean[r];
+                res = y - x*Ibar;
+                sum += otherMin[r] + otherSd[r]*diff*diff + w*res*res;
+            }
+            return sum;
+        }
+    }
+    
     /**
      * Performs a single iteration of the scheme to solve for the intensity 
      * multipliers, beta_j.
-     * @param I Matrix of intensity measurements
-     * @param W Matrix of intensity weights
+     * @param obs the intensity measurements and their weights
      * @param beta column vector of intensity multipliers
      * @param normalizeIbar <code>true</code> if ensure that the sum of
      * the adopted intensities is 1.
+     * @param sums cache for the golden section search, used when 
+     * <code>normalizeIbar</code> is <code>false</code>
      * @return the percent difference between the old and new beta vectors
      */
-    private static double betaUpdate(Matrix I, Matrix W, Matrix beta, 
-            boolean normalizeIbar){
+    private static double betaUpdate(intensityObservations obs, Matrix beta, 
+            boolean normalizeIbar, intensitySums sums){
         
         Matrix oldBeta = beta.copy();
-        int i,j;
+        int i, j, k, p;
         double sum_num, sum_denom;
         
         if(normalizeIbar){
             //iterative solution method is stable when Ibar is normalized
-            Matrix Ibar = calcIbar(I, W, beta);
+            Matrix Ibar = calcIbar(obs, beta, null);
             sum_num = 0.0d;
             for(i=0; i<Ibar.getRowDimension(); i++){
                 if(Ibar.get(i, 0) > 0.0d){
@@ -780,11 +1820,11 @@ public class GAMUT_Algorithms {
             for(j=0; j<beta.getRowDimension(); j++){
                 sum_num = 0.0d;
                 sum_denom = 0.0d;
-                for(i=0; i<Ibar.getRowDimension(); i++){
-                    if(I.get(i, j) > 0.0d){
-                        sum_num += W.get(i, j)*I.get(i, j)*Ibar.get(i, 0);
-                        sum_denom += W.get(i, j)*Ibar.get(i, 0)*Ibar.get(i, 0);
-                    }
+                for(p=0; p<obs.getColumnCount(j); p++){
+                    k = obs.getColumnEntry(j, p);
+                    i = obs.getRow(k);
+                    sum_num += obs.getWeight(k)*obs.getValue(k)*Ibar.get(i, 0);
+                    sum_denom += obs.getWeight(k)*Ibar.get(i, 0)*Ibar.get(i, 0);
                 }
                 if(sum_num > 0.0d){
                     beta.set(j, 0, sum_num/sum_denom);
@@ -798,38 +1838,235 @@ public class GAMUT_Algorithms {
             //is a symmetry in the global chi^2: Ibar -> Ibar*k; beta -> beta/k
             //for any k. However, when the sum of Ibar is forced to be 1 then
             //this symmetry is broken.
+            //Only the rows containing a measurement from data set j depend
+            //on beta_j, and the sums needed for each of them are cached
+            //before the search, so each evaluation of chi^2 is cheap.
             for(j=1; j<beta.getRowDimension(); j++){
                 final double a = Math.max(beta.get(j, 0) - 0.9, 0.00001d);
                 final double b = beta.get(j, 0) + 0.9;
                 final int j_final = j;
-                beta.set(j, 0, goldenSearch(x -> {return calcIntensityChiSq(I, W, beta, j_final, x);}, a, b, 1e-5));
+                sums.beginColumn(j, beta);
+                beta.set(j, 0, goldenSearch(x -> {return sums.columnChiSq(j_final, x);}, a, b, 1e-5));
             }
         }  
         
-        return beta.minus(oldBeta).normF() / oldBeta.normF();
+        return beta.minus(oldBeta).normF() / oldBeta.normF();
+    }
+    
+    /**
+     * Calculates the intensity multipliers to put all measurements on the
+     * same scale. Calls <code>{@link #intensitySolve(Jama.Matrix, Jama.Matrix, boolean, jgamut.intensitySolver) 
+     * intensitySolve(I, W, normalizeIbar, new intensitySolver())}</code>,
+     * i.e. the original GAMUT iteration, limited to
+     * {@link intensitySolver#DEFAULT_MAX_ITERATIONS} iterations, unless other
+     * settings were chosen with the system properties (see
+     * {@link intensitySolver#intensitySolver() intensitySolver}).
+     * @param I the matrix of measured intensities
+     * @param W the matrix of intensity weights
+     * @param normalizeIbar <code>true</code> if ensure that the sum of
+     * the adopted intensities is 1.
+     * @return the column vector of intensity multipliers
+     */
+    public static Matrix intensitySolve(Matrix I, Matrix W, boolean normalizeIbar){
+        return intensitySolve(I, W, normalizeIbar, new intensitySolver());
+    }
+    
+    /**
+     * Calculates the intensity multipliers to put all measurements on the
+     * same scale. If the solver stops at its iteration limit then the last
+     * iterate is returned.
+     * @param I the matrix of measured intensities
+     * @param W the matrix of intensity weights
+     * @param normalizeIbar <code>true</code> if ensure that the sum of
+     * the adopted intensities is 1.
+     * @param solver the settings of the iteration, the convergence statistics
+     * are recorded in this object
+     * @return the column vector of intensity multipliers
+     */
+    public static Matrix intensitySolve(Matrix I, Matrix W, boolean normalizeIbar,
+            intensitySolver solver){
+        return intensitySolve(intensityObservations.fromMatrices(I, W), normalizeIbar, solver);
+    }
+    
+    /**
+     * Calculates the intensity multipliers to put all measurements on the
+     * same scale. If the solver stops at its iteration limit then the last
+     * iterate is returned.
+     * @param obs the measured intensities and their weights
+     * @param normalizeIbar <code>true</code> if ensure that the sum of
+     * the adopted intensities is 1.
+     * @param solver the settings of the iteration, the convergence statistics
+     * are recorded in this object
+     * @return the column vector of intensity multipliers
+     */
+    public static Matrix intensitySolve(intensityObservations obs, boolean normalizeIbar,
+            intensitySolver solver){
+        Matrix beta = new Matrix(obs.getColumnDimension(), 1, 1.0d);   
+        intensitySums sums;
+        double eps, change;
+        int iterations, maxIterations;
+        if(normalizeIbar){
+            eps = 1e-9;
+            sums = null;
+        }else{
+            eps = 1e-4;
+            sums = new intensitySums(obs);
+        }
+        
+        solver.begin();
+        maxIterations = solver.getMaxIterations();
+        if(solver.getMethod() == intensitySolver.Method.ANDERSON){
+            return andersonIntensitySolve(obs, beta, normalizeIbar, sums, eps, solver);
+        }
+        iterations = 0;
+        do{
+            change = betaUpdate(obs, beta, normalizeIbar, sums);
+            iterations += 1;
+            solver.iteration(change, false, false);
+        }while(change > eps && (maxIterations < 1 || iterations < maxIterations));
+        solver.end(iterations, change <= eps);
+        
+        return beta;
+    }
+    
+    /**
+     * Anderson accelerated version of the iteration in 
+     * {@link #intensitySolve(jgamut.intensityObservations, boolean, jgamut.intensitySolver) 
+     * intensitySolve}. If x is the current iterate and g(x) the result of 
+     * {@link #betaUpdate(jgamut.intensityObservations, Jama.Matrix, boolean, jgamut.GAMUT_Algorithms.intensitySums) 
+     * betaUpdate} then the next iterate is g(x) - dG c, where the columns of dG
+     * are the differences between successive values of g and c minimises
+     * |f - dF c| with f = g(x) - x and dF the corresponding differences of f.
+     * The history is discarded (and the plain update used) whenever the size 
+     * of f grows, the least squares problem is singular, or the accelerated
+     * iterate has a non-positive multiplier which the plain update did not.
+     */
+    private static Matrix andersonIntensitySolve(intensityObservations obs, Matrix beta,
+            boolean normalizeIbar, intensitySums sums, double eps, 
+            intensitySolver solver){
+        int n = beta.getRowDimension();
+        int maxIterations = solver.getMaxIterations();
+        int mem = Math.min(solver.getMemory(), n);
+        List<double[]> dF = new ArrayList<>();
+        List<double[]> dG = new ArrayList<>();
+        double[] x, gx, f, prevF, prevG, next;
+        double change, fNorm, prevFNorm;
+        boolean accelerated, restarted;
+        int i, k, iterations;
+        
+        prevF = null;
+        prevG = null;
+        prevFNorm = 0.0d;
+        iterations = 0;
+        while(true){
+            x = beta.getColumnPackedCopy();
+            betaUpdate(obs, beta, normalizeIbar, sums);
+            gx = beta.getColumnPackedCopy();
+            f = new double[n];
+            for(i=0; i<n; i++){
+                f[i] = gx[i] - x[i];
+            }
+            fNorm = norm(f);
+            change = fNorm / norm(x);
+            iterations += 1;
+            if(change <= eps || (maxIterations > 0 && iterations >= maxIterations)){
+                solver.iteration(change, false, false);
+                break;
+            }
+            
+            restarted = false;
+            if(prevF != null){
+                if(fNorm > prevFNorm){
+                    restarted = !dF.isEmpty();
+                    dF.clear();
+                    dG.clear();
+                }else{
+                    dF.add(difference(f, prevF));
+                    dG.add(difference(gx, prevG));
+                    if(dF.size() > mem){
+                        dF.remove(0);
+                        dG.remove(0);
+                    }
+                }
+            }
+            prevF = f;
+            prevG = gx;
+            prevFNorm = fNorm;
+            
+            accelerated = false;
+            if(!dF.isEmpty()){
+                next = andersonStep(dF, dG, f, gx);
+                if(next == null){
+                    restarted = true;
+                    dF.clear();
+                    dG.clear();
+                }else{
+                    for(k=0; k<n; k++){
+                        beta.set(k, 0, next[k]);
+                    }
+                    accelerated = true;
+                }
+            }
+            solver.iteration(change, accelerated, restarted);
+        }
+        solver.end(iterations, change <= eps);
+        
+        return beta;
     }
     
-    /**
-     * Calculates the intensity multipliers to put all measurements on the
-     * same scale.
-     * @param I the matrix of measured intensities
-     * @param W the matrix of intensity weights
-     * @param normalizeIbar <code>true</code> if ensure that the sum of
-     * the adopted intensities is 1.
-     * @return the column vector of intensity multipliers
-     */
-    public static Matrix intensitySolve(Matrix I, Matrix W, boolean normalizeIbar){
-        Matrix beta = new Matrix(I.getColumnDimension(), 1, 1.0d);   
-        double eps;
-        if(normalizeIbar){
-            eps = 1e-9;
-        }else{
-            eps = 1e-4;
-        }
-        
-        while(betaUpdate(I, W, beta, normalizeIbar) > eps){}
+    //returns the accelerated iterate, or null if the least squares problem is
+    //singular or the iterate makes a valid multiplier non-positive
+    private static double[] andersonStep(List<double[]> dF, List<double[]> dG, 
+            double[] f, double[] gx){
+        int n = f.length;
+        int m = dF.size();
+        Matrix A = new Matrix(n, m);
+        Matrix c;
+        double[] result;
+        int i, k;
         
-        return beta;
+        for(k=0; k<m; k++){
+            for(i=0; i<n; i++){
+                A.set(i, k, dF.get(k)[i]);
+            }
+        }
+        try{
+            c = A.qr().solve(new Matrix(f, n));
+        }catch(RuntimeException e){
+            return null; //rank deficient
+        }
+        result = gx.clone();
+        for(k=0; k<m; k++){
+            for(i=0; i<n; i++){
+                result[i] -= dG.get(k)[i]*c.get(k, 0);
+            }
+        }
+        for(i=0; i<n; i++){
+            if(gx[i] <= 0.0d){
+                result[i] = gx[i]; //no valid data for this multiplier
+            }else if(!(result[i] > 0.0d)){
+                return null;
+            }
+        }
+        return result;
+    }
+    
+    //returns a - b
+    private static double[] difference(double[] a, double[] b){
+        double[] result = new double[a.length];
+        for(int i=0; i<a.length; i++){
+            result[i] = a[i] - b[i];
+        }
+        return result;
+    }
+    
+    //returns the Euclidean norm of x
+    private static double norm(double[] x){
+        double sum = 0.0d;
+        for(double v : x){
+            sum += v*v;
+        }
+        return Math.sqrt(sum);
     }
     
     /**
@@ -892,6 +2129,64 @@ public class GAMUT_Algorithms {
         return result;
     }
     
+    /**
+     * Returns the gammas whose intensity differs from the fitted intensity by
+     * more than the given number of standard deviations, sorted from the 
+     * largest chi^2 to the smallest. Gammas with equal chi^2 are kept in the
+     * same order as in {@link #largestIgChiSq(ENSDF_data.ENSDFDataset, Jama.Matrix, Jama.Matrix, Jama.Matrix, int[], double[]) 
+     * largestIgChiSq}.
+     * @param data the data which was used to obtain the fit
+     * @param beta the fitted scale factors
+     * @param Ibar the fitted intensities
+     * @param W the weights of the gamma-rays, or <code>null</code> if the
+     * weights are taken from <code>obs</code>
+     * @param obs the intensity measurements, used only if <code>W</code> is
+     * <code>null</code>
+     * @param threshold the number of standard deviations
+     * @return the gammas whose intensity differs from the fitted intensity by
+     * more than the given number of standard deviations
+     */
+    private static List<outlier> IgOutliers(ENSDFDataset data, Matrix beta, 
+            Matrix Ibar, Matrix W, intensityObservations obs, double threshold){
+        level[] levels = data.getLevelsWithGammas();
+        List<String> sources = java.util.Arrays.asList(data.getSources());
+        List<outlier> result = new ArrayList<>();
+        int k, i, j;
+        double chiSq, I, w;
+        
+        i = 0;
+        for(k=0; k<levels.length; k++){
+            for(gammaEquivalenceClass G : ENSDFDataset.groupByGamma(levels[k])){
+                for(gamma g : G.getGammas()){
+                    j = sources.indexOf(g.getSource());
+                    if(j == -1){
+                        continue; //source not in list, i.e. must be from adopted
+                    }
+                    if (!g.getDIg(true).equals("") && g.ig.isPresent()) {
+                        if(W != null){
+                            w = W.get(i, j);
+                        }else if(obs.find(i, j) >= 0){
+                            w = obs.getWeight(obs.find(i, j));
+                        }else{
+                            continue; //not used in the fit
+                        }
+                        I = g.ig.get();
+                        chiSq = w*(I - beta.get(j, 0)*Ibar.get(i, 0))
+                                *(I - beta.get(j, 0)*Ibar.get(i, 0));
+                        if(Math.sqrt(chiSq) > threshold){
+                            result.add(new outlier(g, i, j, chiSq));
+                        }
+                    }
+                }
+                if(G.containsNonAdopted()){
+                    i += 1;
+                }
+            }
+        }
+        result.sort((a, b) -> Double.compare(b.chiSq, a.chiSq));
+        return result;
+    }
+    
     /**
      * Performs a Chi Squared analysis on the fitted gamma ray intensities. The user
      * is asked to increase the uncertainty of gamma rays which are differ from
@@ -906,47 +2201,192 @@ public class GAMUT_Algorithms {
      */
     public static boolean IgChiSqAnalysis(ENSDFDataset data, Matrix beta, Matrix Ibar,
             Matrix W){
-        int i, j;
-        double chiSq, I, sigma_new, W_new;
-        double[] _chiSq = new double[1];
-        level p;
+        return IgChiSqAnalysis(data, beta, Ibar, W, outlierPolicy.interactive());
+    }
+    
+    /**
+     * Performs a Chi Squared analysis on the fitted gamma ray intensities. The
+     * uncertainties of gamma rays which differ from the fit by 4 or more 
+     * standard deviations are changed according to the given policy.
+     * @param data dataset on which the fit was performed
+     * @param beta the fitted scale factors
+     * @param Ibar the fitted intensities
+     * @param W matrix of weights (i.e. reciprocal squared uncertainties),
+     * elements of this matrix will be adjusted as the uncertainties are changed.
+     * @param policy how discrepant gamma rays are treated. The decisions made
+     * are recorded in the policy.
+     * @return <code>true</code> when no gamma ray energy uncertainties were
+     * adjusted, <code>false</code> otherwise.
+     */
+    public static boolean IgChiSqAnalysis(ENSDFDataset data, Matrix beta, Matrix Ibar,
+            Matrix W, outlierPolicy policy){
+        return IgChiSqAnalysis(data, beta, Ibar, W, null, policy);
+    }
+    
+    /**
+     * Performs a Chi Squared analysis on the fitted gamma ray intensities. The
+     * uncertainties of gamma rays which differ from the fit by 4 or more 
+     * standard deviations are changed according to the given policy.
+     * @param data dataset on which the fit was performed
+     * @param beta the fitted scale factors
+     * @param Ibar the fitted intensities
+     * @param obs the intensity measurements, the weights are adjusted as the
+     * uncertainties are changed.
+     * @param policy how discrepant gamma rays are treated. The decisions made
+     * are recorded in the policy.
+     * @return <code>true</code> when no gamma ray energy uncertainties were
+     * adjusted, <code>false</code> otherwise.
+     */
+    public static boolean IgChiSqAnalysis(ENSDFDataset data, Matrix beta, Matrix Ibar,
+            intensityObservations obs, outlierPolicy policy){
+        return IgChiSqAnalysis(data, beta, Ibar, null, obs, policy);
+    }
+    
+    //chi^2 analysis using the weights in W, or in obs if W is null
+    private static boolean IgChiSqAnalysis(ENSDFDataset data, Matrix beta, Matrix Ibar,
+            Matrix W, intensityObservations obs, outlierPolicy policy){
+        List<outlier> outliers;
+        
+        if(!policy.canIterate("Ig")){
+            return true;
+        }
+        if(W == null && obs.hasGammas()){
+            outliers = IgOutliers(obs, beta, Ibar, policy.getThreshold(4.0d), 
+                    !policy.isBatch());
+        }else{
+            outliers = IgOutliers(data, beta, Ibar, W, obs, policy.getThreshold(4.0d));
+        }
+        return treatIgOutliers(outliers, beta, Ibar, W, obs, policy, true);
+    }
+    
+    /**
+     * Performs a Chi Squared analysis on the intensity fit of a single level.
+     * The uncertainties of gamma rays which differ from the fit by 4 or more 
+     * standard deviations are changed according to the given policy. Only the
+     * weights of the problem are changed, the gammas themselves are not.
+     * @param problem the intensity measurements of the level
+     * @param beta the fitted scale factors
+     * @param Ibar the fitted intensities
+     * @param policy how discrepant gamma rays are treated. The decisions made
+     * are recorded in the policy.
+     * @return <code>true</code> when no gamma ray intensity uncertainties were
+     * adjusted, <code>false</code> otherwise.
+     */
+    public static boolean IgChiSqAnalysis(levelIntensityProblem problem, Matrix beta, 
+            Matrix Ibar, outlierPolicy policy){
+        if(!policy.canIterate("Ig")){
+            return true;
+        }
+        return treatIgOutliers(IgOutliers(problem.getObservations(), beta, Ibar, 
+                policy.getThreshold(4.0d), !policy.isBatch()), beta, Ibar, null, 
+                problem.getObservations(), policy, false);
+    }
+    
+    /**
+     * Returns the measurements which differ from the fitted intensity by more 
+     * than the given number of standard deviations, sorted from the largest 
+     * chi^2 to the smallest. The chi^2 values are kept in the heap of the
+     * observations, so only the measurements affected by the changes since the
+     * previous call are recomputed.
+     * @param obs the intensity measurements, including the gamma of each
+     * @param beta the fitted scale factors
+     * @param Ibar the fitted intensities
+     * @param threshold the number of standard deviations
+     * @param largestOnly if <code>true</code> then at most one measurement
+     * (the most discrepant one) is returned
+     * @return the discrepant measurements
+     */
+    private static List<outlier> IgOutliers(intensityObservations obs, Matrix beta, 
+            Matrix Ibar, double threshold, boolean largestOnly){
+        residualHeap residuals = obs.getResiduals();
+        List<outlier> result = new ArrayList<>();
+        List<Integer> entries = new ArrayList<>();
+        
+        residuals.update(beta, Ibar);
+        if(largestOnly){
+            if(residuals.top() >= 0 && Math.sqrt(residuals.getChiSq(residuals.top())) > threshold){
+                entries.add(residuals.top());
+            }
+        }else{
+            residuals.collectAbove(threshold, entries);
+        }
+        for(int k : entries){
+            result.add(new outlier(obs.getGamma(k), obs.getRow(k), obs.getColumn(k), 
+                    residuals.getChiSq(k)));
+        }
+        result.sort((a, b) -> Double.compare(b.chiSq, a.chiSq));
+        return result;
+    }
+    
+    /**
+     * Changes the uncertainties of discrepant intensity measurements according
+     * to the given policy.
+     * @param outliers the discrepant measurements, most discrepant first
+     * @param beta the fitted scale factors
+     * @param Ibar the fitted intensities
+     * @param W the weights, or <code>null</code> if the weights in 
+     * <code>obs</code> are to be changed
+     * @param obs the intensity measurements, used only if <code>W</code> is
+     * <code>null</code>
+     * @param policy how discrepant gamma rays are treated
+     * @param changeGammas if <code>true</code> then the uncertainties of the
+     * gammas themselves are also changed
+     * @return <code>true</code> when no uncertainties were adjusted
+     */
+    private static boolean treatIgOutliers(List<outlier> outliers, Matrix beta, 
+            Matrix Ibar, Matrix W, intensityObservations obs, outlierPolicy policy,
+            boolean changeGammas){
+        double residual, sigma_new;
+        String oldUncert;
         gamma g;
-        int[] indicies = new int[2];
         boolean result;
         
+        if(!policy.isBatch() && outliers.size() > 1){
+            outliers = outliers.subList(0, 1);
+        }
+        
         result = true;
-        g = largestIgChiSq(data, beta, Ibar, W, indicies, _chiSq);
-        i = indicies[0];
-        j = indicies[1];
-        if (g != null && g.ig.isPresent()) {
-            I = g.ig.get();
-            chiSq = _chiSq[0];
-        } else {
-            I = 0.0d;
-            chiSq = 0.0d;
-        }
-        if(Math.sqrt(chiSq) > 4){
-            sigma_new = Math.abs(I - beta.get(j, 0)*Ibar.get(i, 0));
-            W_new = 1.0d/(sigma_new*sigma_new);
-            p = g.getParent();
-            if(askChangeIntensityUncert(g, p, sigma_new)){
-                W.set(i, j, W_new);
-                g.setNumericDIg(sigma_new);
-                result = false;
-            }else if(askEnterUncert(g)){
-                try{
-                    sigma_new = dataPt.constructFromString(g.getIg() + 
-                            " " + String.valueOf(getUserUncert())).getUpper();
-                    W_new = 1.0d/(sigma_new*sigma_new);
-                    W.set(i, j, W_new);
+        for(outlier o : outliers){
+            g = o.g;
+            residual = g.ig.get() - beta.get(o.j, 0)*Ibar.get(o.i, 0);
+            oldUncert = g.getDIg();
+            if(policy.getAction() == outlierPolicy.Action.ASK){
+                sigma_new = Math.abs(residual);
+                if(askChangeIntensityUncert(g, g.getParent(), sigma_new)){
+                    policy.record("Ig", g, oldUncert, o.chiSq, sigma_new, "Accepted by user");
+                }else if(askEnterUncert(g)){
+                    try{
+                        sigma_new = dataPt.constructFromString(g.getIg() + 
+                                " " + String.valueOf(getUserUncert())).getUpper();
+                        policy.record("Ig", g, oldUncert, o.chiSq, sigma_new, "Entered by user");
+                    }catch(NullPointerException e){
+                        //failed to change the uncertainty
+                        sigma_new = -1.0d;
+                        policy.record("Ig", g, oldUncert, o.chiSq, sigma_new, "Declined by user");
+                    }
+                }else{
+                    sigma_new = -1.0d;
+                    policy.record("Ig", g, oldUncert, o.chiSq, sigma_new, "Declined by user");
+                }
+            }else{
+                sigma_new = policy.newUncertainty(residual);
+                policy.record("Ig", g, oldUncert, o.chiSq, sigma_new, "Automatic");
+            }
+            if(sigma_new > 0.0d){
+                if(W != null){
+                    W.set(o.i, o.j, 1.0d/(sigma_new*sigma_new));
+                }else{
+                    obs.setWeight(obs.find(o.i, o.j), 1.0d/(sigma_new*sigma_new));
+                }
+                if(changeGammas){
                     g.setNumericDIg(sigma_new);
-                    result = false;
-                }catch(NullPointerException e){
-                    //failed to change the uncertainty
                 }
-
+                result = false;
             }
         }
+        if(!result){
+            policy.countIteration();
+        }
         return result;
     }
     
@@ -964,50 +2404,267 @@ public class GAMUT_Algorithms {
      */
     public static void calcIntensitiesLevelByLevel(ENSDFDataset data, Matrix Ibar,
             Matrix dIbar, double nonNumericDefaultUncertainty){
+        calcIntensitiesLevelByLevel(data, Ibar, dIbar, nonNumericDefaultUncertainty,
+                outlierPolicy.interactive());
+    }
+    
+    /**
+     * Uses the GAMUT intensity algorithm on each level to determine the 
+     * adopted intensities for the gamma rays.
+     * @param data the dataset containing the gamma ray data
+     * @param Ibar the column vector which will be filled with the adopted
+     * intensities
+     * @param dIbar the column vector which will be filled with the uncertainties
+     * on the adopted intensities
+     * @param nonNumericDefaultUncertainty the (percent) uncertainty to assign
+     * gamma ray intensities with non-numeric uncertainty (including those with
+     * missing uncertainty) 
+     * @param policy how gamma rays with discrepant intensities are treated.
+     * The iteration limit of the policy applies to each level separately.
+     */
+    public static void calcIntensitiesLevelByLevel(ENSDFDataset data, Matrix Ibar,
+            Matrix dIbar, double nonNumericDefaultUncertainty, outlierPolicy policy){
+        calcIntensitiesLevelByLevel(data, Ibar, dIbar, nonNumericDefaultUncertainty,
+                policy, new intensitySolver());
+    }
+    
+    /**
+     * Uses the GAMUT intensity algorithm on each level to determine the 
+     * adopted intensities for the gamma rays.
+     * @param data the dataset containing the gamma ray data
+     * @param Ibar the column vector which will be filled with the adopted
+     * intensities
+     * @param dIbar the column vector which will be filled with the uncertainties
+     * on the adopted intensities
+     * @param nonNumericDefaultUncertainty the (percent) uncertainty to assign
+     * gamma ray intensities with non-numeric uncertainty (including those with
+     * missing uncertainty) 
+     * @param policy how gamma rays with discrepant intensities are treated.
+     * The iteration limit of the policy applies to each level separately.
+     * The levels are fitted in parallel; if the policy asks the user then the
+     * levels with discrepant gamma rays are finished one at a time, in level 
+     * order, after all the other levels have been fitted.
+     * @param solver the settings of the solver for the intensity multipliers,
+     * the statistics of all levels are added to it
+     */
+    public static void calcIntensitiesLevelByLevel(ENSDFDataset data, Matrix Ibar,
+            Matrix dIbar, double nonNumericDefaultUncertainty, outlierPolicy policy,
+            intensitySolver solver){
+        calcIntensitiesLevelByLevel(data, Ibar, dIbar, nonNumericDefaultUncertainty,
+                policy, solver, null);
+    }
+    
+    /**
+     * Uses the GAMUT intensity algorithm on each level to determine the 
+     * adopted intensities for the gamma rays.
+     * @param data the dataset containing the gamma ray data
+     * @param Ibar the column vector which will be filled with the adopted
+     * intensities
+     * @param dIbar the column vector which will be filled with the uncertainties
+     * on the adopted intensities
+     * @param nonNumericDefaultUncertainty the (percent) uncertainty to assign
+     * gamma ray intensities with non-numeric uncertainty (including those with
+     * missing uncertainty) 
+     * @param policy how gamma rays with discrepant intensities are treated.
+     * The iteration limit of the policy applies to each level separately.
+     * The levels are fitted in parallel; if the policy asks the user then the
+     * levels with discrepant gamma rays are finished one at a time, in level 
+     * order, after all the other levels have been fitted.
+     * @param solver the settings of the solver for the intensity multipliers.
+     * Each level is solved with its own copy of the solver (see
+     * {@link intensitySolver#copySettings() copySettings}), whose statistics
+     * are added to this solver in level order after all levels are fitted.
+     * @param fitted if not <code>null</code> then a copy of the measurements
+     * of each fitted level, with the final weights, is added to this list in
+     * level order. The rows of the copies, taken in order, are the rows of Ibar.
+     */
+    public static void calcIntensitiesLevelByLevel(ENSDFDataset data, Matrix Ibar,
+            Matrix dIbar, double nonNumericDefaultUncertainty, outlierPolicy policy,
+            intensitySolver solver, List<intensityObservations> fitted){
         int j, offset;
         level[] levels = data.getLevelsWithGammas();
-        ENSDFDataset tmp;
-        Matrix I, W, beta, Ibar_level, dIbar_level;
-        offset = 0;
-        gamma tmpLastGamma;
+        List<levelIntensityFit> fits = new ArrayList<>();
+        levelIntensityProblem problem;
+        final boolean ask = policy.getAction() == outlierPolicy.Action.ASK;
+        //the problem buffers are reused by the levels fitted on each thread
+        final ThreadLocal<levelIntensityProblem> problems = 
+                ThreadLocal.withInitial(levelIntensityProblem::new);
+        
         for (level l : levels) {
-            tmp = new ENSDFDataset(data.getNucid(), "tmp", "");
-            tmp.addLevel(new level(l.getLvlRecord(), l.getSource()), false);
-            for (gamma g : l.getGammaOutList()) {
-                tmp.addGamma(new gamma(g.getGammaRecord(), g.getSource()), tmp.getLastLevel());
-                tmpLastGamma = tmp.getLastGamma();
-                tmpLastGamma.setFinalLevel(g.getFinalLevel());
-                if (!tmpLastGamma.dig.isPresent()) {
-                    if (tmpLastGamma.ig.isPresent()) {
-                        tmpLastGamma.setNumericDIg(nonNumericDefaultUncertainty*tmpLastGamma.ig.get());
-                    }
+            fits.add(new levelIntensityFit(l, policy.copy(), solver.copySettings()));
+        }
+        
+        //the gammas are only read, so the levels can be fitted in parallel
+        fits.parallelStream().forEach(f -> {
+            levelIntensityProblem p = problems.get();
+            if(!p.load(f.l, nonNumericDefaultUncertainty)){
+                return;
+            }
+            f.sources = p.getSources();
+            f.dIbar = new Matrix(p.getObservations().getRowDimension(), 1);
+            f.beta = intensitySolve(p.getObservations(), true, f.solver);
+            f.Ibar = calcIbar(p.getObservations(), f.beta, f.dIbar);
+            if(ask){
+                //the user is asked later, on this thread
+                f.deferred = !IgOutliers(p.getObservations(), f.beta, f.Ibar, 
+                        policy.getThreshold(4.0d), true).isEmpty();
+                if(!f.deferred && fitted != null){
+                    f.obs = p.getObservations().copy();
                 }
+                return;
             }
-            if(tmp.getGammas().length == 0){
-                continue;
+            f.policy.beginFit();
+            while(!IgChiSqAnalysis(p, f.beta, f.Ibar, f.policy)){
+                f.beta = intensitySolve(p.getObservations(), true, f.solver);
+                f.Ibar = calcIbar(p.getObservations(), f.beta, f.dIbar);
+            }
+            if(fitted != null){
+                f.obs = p.getObservations().copy();
+            }
+        });
+        
+        offset = 0;
+        problem = new levelIntensityProblem();
+        for(levelIntensityFit f : fits){
+            if(f.beta == null){
+                continue; //no gammas
+            }
+            if(f.deferred){
+                problem.load(f.l, nonNumericDefaultUncertainty);
+                policy.beginFit();
+                while(!IgChiSqAnalysis(problem, f.beta, f.Ibar, policy)){
+                    f.beta = intensitySolve(problem.getObservations(), true, f.solver);
+                    f.Ibar = calcIbar(problem.getObservations(), f.beta, f.dIbar);
+                }
+                if(fitted != null){
+                    f.obs = problem.getObservations().copy();
+                }
+            }else{
+                policy.addDecisions(f.policy);
+            }
+            solver.add(f.solver);
+            if(fitted != null){
+                fitted.add(f.obs);
             }
-            tmp.renormalizeGammaRays(false);
-            l.gammaSources = tmp.getSources();
-            I = new Matrix(tmp.getNumUniqueGammas(), tmp.getNumSources());
-            W = new Matrix(I.getRowDimension(), I.getColumnDimension());
-            dIbar_level = new Matrix(I.getRowDimension(), 1);
-            setupIntensityMatrices(tmp, I, W, nonNumericDefaultUncertainty);
-            beta = intensitySolve(I, W, true);
-            Ibar_level = calcIbar(I, W, beta, dIbar_level);
-            while(!IgChiSqAnalysis(tmp, beta, Ibar_level, W)){
-                beta = intensitySolve(I, W, true);
-                Ibar_level = calcIbar(I, W, beta, dIbar_level);
-            }
-            l.beta = beta.getColumnPackedCopy();
+            f.l.gammaSources = f.sources;
+            f.l.beta = f.beta.getColumnPackedCopy();
 
-            for(j=0; j<Ibar_level.getRowDimension(); j++){
-                Ibar.set(offset+j, 0, Ibar_level.get(j, 0));
-                dIbar.set(offset+j, 0, dIbar_level.get(j, 0));
+            for(j=0; j<f.Ibar.getRowDimension(); j++){
+                Ibar.set(offset+j, 0, f.Ibar.get(j, 0));
+                dIbar.set(offset+j, 0, f.dIbar.get(j, 0));
             }
             offset += j;
         }
     }
     
+    /**
+     * The state of the intensity fit of a single level in
+     * {@link #calcIntensitiesLevelByLevel(ENSDF_data.ENSDFDataset, Jama.Matrix, Jama.Matrix, double, jgamut.outlierPolicy, jgamut.intensitySolver) 
+     * calcIntensitiesLevelByLevel}.
+     */
+    private static class levelIntensityFit {
+        final level l;
+        final outlierPolicy policy; //records the decisions for this level
+        final intensitySolver solver; //records the iterations for this level
+        String[] sources;
+        Matrix beta, Ibar, dIbar;
+        intensityObservations obs; //final measurements, if requested
+        boolean deferred; //true if the user has to be asked about outliers
+        
+        levelIntensityFit(level l, outlierPolicy policy, intensitySolver solver){
+            this.l = l;
+            this.policy = policy;
+            this.solver = solver;
+        }
+    }
+    
+    /**
+     * Checks the uncertainties of the adopted intensities by Monte Carlo. In
+     * each sample the measured intensities are replaced by values drawn from
+     * normal distributions (truncated to positive values) with the 
+     * uncertainties given by the weights, and the intensity multipliers and
+     * adopted intensities are fitted again. Each set of measurements is
+     * fitted separately, as in the fit being checked. The samples of all the 
+     * sets are run in parallel, see {@link monteCarloUncertainty}.
+     * @param fits the measurements, with the final weights, of each fit (e.g.
+     * the single data set wide fit, or one set per level from
+     * {@link #calcIntensitiesLevelByLevel(ENSDF_data.ENSDFDataset, Jama.Matrix, Jama.Matrix, double, jgamut.outlierPolicy, jgamut.intensitySolver, java.util.List) 
+     * calcIntensitiesLevelByLevel})
+     * @param normalizeIbar <code>true</code> if the adopted intensities of 
+     * each fit are normalized to sum to 1
+     * @param mc the settings of the Monte Carlo check, the results for the
+     * adopted intensities are recorded in this object
+     * @return the standard deviation of each adopted intensity over the 
+     * samples (the rows of all fits, in order), -1 for rows without an 
+     * adopted intensity
+     */
+    public static Matrix monteCarloIntensities(List<intensityObservations> fits,
+            boolean normalizeIbar, monteCarloUncertainty mc){
+        final int numBlocks = mc.getNumBlocks();
+        final java.util.Random[] streams = mc.createStreams(fits.size()*numBlocks);
+        final List<double[]> refs = new ArrayList<>();
+        List<Matrix> dRefs = new ArrayList<>();
+        monteCarloUncertainty.moments[] blocks;
+        monteCarloUncertainty.moments total;
+        intensityObservations obs;
+        Matrix result, beta, Ibar, dIbar;
+        gamma g;
+        int f, i, b, offset, rows;
+        
+        rows = 0;
+        for(intensityObservations o : fits){
+            dIbar = new Matrix(o.getRowDimension(), 1);
+            beta = intensitySolve(o, normalizeIbar, new intensitySolver());
+            refs.add(calcIbar(o, beta, dIbar).getColumnPackedCopy());
+            dRefs.add(dIbar);
+            rows += o.getRowDimension();
+        }
+        
+        blocks = java.util.stream.IntStream.range(0, streams.length).parallel()
+                .mapToObj(t -> {
+            intensityObservations o = fits.get(t/numBlocks);
+            intensityObservations sample = o.copy();
+            intensitySolver solver = new intensitySolver();
+            monteCarloUncertainty.moments sums = 
+                    new monteCarloUncertainty.moments(refs.get(t/numBlocks));
+            int s, k;
+            
+            for(s=0; s<mc.getBlockSamples(t % numBlocks); s++){
+                for(k=0; k<o.getNumEntries(); k++){
+                    sample.setValue(k, monteCarloUncertainty.positiveNormal(streams[t],
+                            o.getValue(k), 1.0d/Math.sqrt(o.getWeight(k))));
+                }
+                sums.add(calcIbar(sample, intensitySolve(sample, normalizeIbar, solver),
+                        null).getColumnPackedCopy());
+            }
+            return sums;
+        }).toArray(monteCarloUncertainty.moments[]::new);
+        
+        result = new Matrix(rows, 1);
+        offset = 0;
+        for(f=0; f<fits.size(); f++){
+            obs = fits.get(f);
+            //the blocks are added in order so the result is reproducible
+            total = new monteCarloUncertainty.moments(refs.get(f));
+            for(b=0; b<numBlocks; b++){
+                total.add(blocks[f*numBlocks + b]);
+            }
+            for(i=0; i<obs.getRowDimension(); i++){
+                if(refs.get(f)[i] <= 0.0d){
+                    result.set(offset + i, 0, -1.0d);
+                    continue;
+                }
+                result.set(offset + i, 0, total.sd(i));
+                g = obs.getGamma(obs.rowStart(i));
+                mc.addGamma(g == null || g.getParent() == null ? "" : 
+                        g.getParent().getLvlRecord().getE(), g == null ? "" : g.getEg(),
+                        refs.get(f)[i], dRefs.get(f).get(i, 0), total.sd(i));
+            }
+            offset += obs.getRowDimension();
+        }
+        return result;
+    }
+    
     /**
      * Determines linear shifts in the gamma-ray energies of each measurement
      * (source) relative to a particular source (the "standard"). The calculated
@@ -1034,6 +2691,40 @@ public class GAMUT_Algorithms {
      */
     public static Matrix calculateLinearEnergyShifts(ENSDFDataset data, String standard,
             double nonNumericDefaultUncertainty, Matrix uncert){
+        energyShiftFit fit;
+        int i;
+        
+        fit = fitLinearEnergyShifts(data, standard, nonNumericDefaultUncertainty);
+        if(fit == null){
+            return null;
+        }
+        if(fit.isSingular()){
+            warnSingular();
+        }
+        for(i=0; i<fit.getUncertainties().getRowDimension(); i++){
+            uncert.set(i, 0, fit.getUncertainties().get(i, 0));
+        }
+        return fit.getSlopesAndIntercepts();
+    }
+    
+    /**
+     * Determines linear shifts in the gamma-ray energies of each measurement
+     * (source) relative to the standard, as in
+     * {@link #calculateLinearEnergyShifts(ENSDF_data.ENSDFDataset, java.lang.String, double, Jama.Matrix)
+     * calculateLinearEnergyShifts}, and the residual chi^2 of the fit. The
+     * user is not warned if the shifts are not all determined (see
+     * {@link energyShiftFit#isSingular()}), so several fits may be run at once.
+     * @param data the dataset generated from the intermediate file
+     * @param standard the title of the dataset (the source) to be used as 
+     * the standard all other datasets are compared against.
+     * @param nonNumericDefaultUncertainty the (percent) uncertainty to assign
+     * measurements with a non-numeric uncertainty (i.e. LT, GT, AP, CA).
+     * Should be a number between 0 and 1.
+     * @return the fitted shifts, or <code>null</code> if the standard is not
+     * one of the sources or has no gamma-rays in common with the others
+     */
+    public static energyShiftFit fitLinearEnergyShifts(ENSDFDataset data, String standard,
+            double nonNumericDefaultUncertainty){
         List<String> sources;
         List<gammaEquivalenceClass> gammaGroups, tmp;
         gammaEquivalenceClass GEC;
@@ -1045,8 +2736,11 @@ public class GAMUT_Algorithms {
         int m, n; //the size of the linear system
         double EStandard, E, w, wStandard;
         gamma gStandard;
-        Matrix WA, WdE;
-        Matrix V, uncertSq;
+        Matrix WdE;
+        Matrix V, uncertSq, uncert, x, r;
+        int[] rank;
+        double chiSq;
+        int numComparisons;
         
         sources = new ArrayList<>(java.util.Arrays.asList(data.getSources()));
         if(!sources.contains(standard)){
@@ -1095,12 +2789,12 @@ public class GAMUT_Algorithms {
                             A.set(count, j, -EStandard);
                             A.set(count, j+sources.size(), -1.0d);
                             try{
-                                w = dataPt.constructFromString(g.getEg() + " " + g.getDEg()).getLower();
+                                w = g.getEnergyDataPt().getLower();
                             }catch(NullPointerException e){
                                 w = nonNumericDefaultUncertainty;
                             }
                             try{
-                                wStandard = dataPt.constructFromString(gStandard.getEg() + " " + gStandard.getDEg()).getLower();
+                                wStandard = gStandard.getEnergyDataPt().getLower();
                             }catch(NullPointerException e){
                                 wStandard = nonNumericDefaultUncertainty;
                             }
@@ -1112,25 +2806,58 @@ public class GAMUT_Algorithms {
             }
         }
         
-        WA = new Matrix(m, n);
-        for(j=0; j<n; j++){
-            for(i=0; i<m; i++){
-                WA.set(i, j, W.get(i, 0)*A.get(i, j));
-            }
-        }
         WdE = new Matrix(m, 1);
+        numComparisons = 0;
         for(i=0; i<m; i++){
             WdE.set(i, 0, W.get(i, 0)*dE.get(i, 0));
+            if(W.get(i, 0) > 0.0d){
+                numComparisons += 1; //rows without energies have no weight
+            }
         }
         
-        V = pseudoinverse(A.transpose().times(WA));
-        uncertSq = V.times(A.transpose());
-        uncertSq = uncertSq.arrayTimes(uncertSq).times(W);
+        rank = new int[1];
+        V = pseudoinverse(backend.weightedNormalMatrix(A, W), rank);
+        uncertSq = backend.times(V, A.transpose());
+        uncertSq = backend.times(uncertSq.arrayTimes(uncertSq), W);
+        uncert = new Matrix(n, 1);
         for(i=0; i<n; i++){
             uncert.set(i, 0, Math.sqrt(uncertSq.get(i, 0)));
         }
         
-        return V.times(A.transpose().times(WdE));
+        x = backend.times(V, backend.transposeTimes(A, WdE));
+        r = dE.minus(backend.times(A, x));
+        chiSq = 0.0d;
+        for(i=0; i<m; i++){
+            chiSq += W.get(i, 0)*r.get(i, 0)*r.get(i, 0);
+        }
+        
+        return new energyShiftFit(standard, data.getSources(), x, uncert, chiSq,
+                numComparisons, rank[0]);
+    }
+    
+    /**
+     * Determines the linear gamma-ray energy shifts (see 
+     * {@link #fitLinearEnergyShifts(ENSDF_data.ENSDFDataset, java.lang.String, double)
+     * fitLinearEnergyShifts}) using each source in turn as the standard. The
+     * fits are run in parallel. The results are ranked from the best standard
+     * to the worst (see {@link energyShiftFit#rank(java.util.List)}).
+     * @param data the dataset generated from the intermediate file
+     * @param nonNumericDefaultUncertainty the (percent) uncertainty to assign
+     * measurements with a non-numeric uncertainty (i.e. LT, GT, AP, CA).
+     * Should be a number between 0 and 1.
+     * @return the fitted shifts for each source which has gamma-rays in 
+     * common with the others, ranked
+     */
+    public static List<energyShiftFit> fitLinearEnergyShiftsForAllStandards(ENSDFDataset data,
+            double nonNumericDefaultUncertainty){
+        List<energyShiftFit> result;
+        
+        result = java.util.Arrays.stream(data.getSources()).parallel()
+                .map(s -> fitLinearEnergyShifts(data, s, nonNumericDefaultUncertainty))
+                .filter(f -> f != null)
+                .collect(java.util.stream.Collectors.toList());
+        energyShiftFit.rank(result);
+        return result;
     }
     
     /**
@@ -1196,11 +2923,11 @@ public class GAMUT_Algorithms {
                                     slopesAndIntercepts.get(j, 0)*EStandard + 
                                     slopesAndIntercepts.get(j+sources.size(), 0);
                             try{
-                                w = dataPt.constructFromString(g.getEg() + " " + g.getDEg()).getLower();
+                                w = g.getEnergyDataPt().getLower();
                                 g.setNumericEnergy(E, w);
                             }catch(NullPointerException e){
                                 newEg = String.format("%1.0f", E);
-                                g.getGammaRecord().setE(newEg);
+                                g.setEg(newEg);
                             }
                         }
                     }
@@ -23,6 +23,10 @@ import java.io.File;
  * @author Michael
  */
 public class JGAMUT_GUI extends javax.swing.JFrame {
+    
+    //maximum number of refits in each chi^2 loop when discrepant 
+    //measurements are treated automatically
+    private static final int MAX_OUTLIER_ITERATIONS = 20;
 
     /**
      * Creates new form JGAMUT_GUI
@@ -56,6 +60,13 @@ public class JGAMUT_GUI extends javax.swing.JFrame {
         limitMinUncertCheckBox = new javax.swing.JCheckBox();
         gamutButton = new javax.swing.JButton();
         useEnergyShiftsCheckBox = new javax.swing.JCheckBox();
+        automaticOutliersCheckBox = new javax.swing.JCheckBox();
+        robustEnergyFitCheckBox = new javax.swing.JCheckBox();
+        monteCarloCheckBox = new javax.swing.JCheckBox();
+        jackknifeCheckBox = new javax.swing.JCheckBox();
+        influenceCheckBox = new javax.swing.JCheckBox();
+        averageCacheCheckBox = new javax.swing.JCheckBox();
+        robustAveragesCheckBox = new javax.swing.JCheckBox();
         jPanel1 = new javax.swing.JPanel();
         statusTextLabel = new javax.swing.JLabel();
         jLabel4 = new javax.swing.JLabel();
@@ -136,6 +147,20 @@ public class JGAMUT_GUI extends javax.swing.JFrame {
 
         useEnergyShiftsCheckBox.setText("Include energy shifts in fit (GAMUT only)");
 
+        automaticOutliersCheckBox.setText("Treat discrepant measurements automatically, without asking (GAMUT only)");
+
+        robustEnergyFitCheckBox.setText("Robust (Huber IRLS) energy fit instead of energy Chi^2 analysis (GAMUT only)");
+
+        monteCarloCheckBox.setText("Check fitted uncertainties by Monte Carlo (GAMUT only)");
+
+        jackknifeCheckBox.setText("Report level energies refitted without each data set (GAMUT only)");
+
+        influenceCheckBox.setText("Report leverage and Cook's distance of gamma-ray energies (GAMUT only)");
+
+        averageCacheCheckBox.setText("Reuse unchanged averages from previous runs (Gamma-by-gamma only)");
+
+        robustAveragesCheckBox.setText("Add bootstrap and LWM averages (Gamma-by-gamma only)");
+
         jPanel1.setBorder(javax.swing.BorderFactory.createBevelBorder(javax.swing.border.BevelBorder.LOWERED));
 
         statusTextLabel.setText("Status: Ready!");
@@ -258,6 +283,13 @@ public class JGAMUT_GUI extends javax.swing.JFrame {
                             .addComponent(useNonNumericUncertCheckBox)
                             .addComponent(limitMinUncertCheckBox)
                             .addComponent(useEnergyShiftsCheckBox)
+                            .addComponent(automaticOutliersCheckBox)
+                            .addComponent(robustEnergyFitCheckBox)
+                            .addComponent(monteCarloCheckBox)
+                            .addComponent(jackknifeCheckBox)
+                            .addComponent(influenceCheckBox)
+                            .addComponent(averageCacheCheckBox)
+                            .addComponent(robustAveragesCheckBox)
                             .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.TRAILING, false)
                                 .addGroup(javax.swing.GroupLayout.Alignment.LEADING, layout.createSequentialGroup()
                                     .addComponent(jLabel6)
@@ -306,6 +338,20 @@ public class JGAMUT_GUI extends javax.swing.JFrame {
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
                 .addComponent(useEnergyShiftsCheckBox)
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(automaticOutliersCheckBox)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(robustEnergyFitCheckBox)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(monteCarloCheckBox)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(jackknifeCheckBox)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(influenceCheckBox)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(averageCacheCheckBox)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(robustAveragesCheckBox)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
                     .addComponent(defaultIntensityUncertSpinner, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
                     .addComponent(jLabel5))
@@ -365,6 +411,13 @@ public class JGAMUT_GUI extends javax.swing.JFrame {
             limitMinUncertCheckBox.setEnabled(false);
             useNonNumericUncertCheckBox.setEnabled(false);
             useEnergyShiftsCheckBox.setEnabled(false);
+            automaticOutliersCheckBox.setEnabled(false);
+            robustEnergyFitCheckBox.setEnabled(false);
+            monteCarloCheckBox.setEnabled(false);
+            jackknifeCheckBox.setEnabled(false);
+            influenceCheckBox.setEnabled(false);
+            averageCacheCheckBox.setEnabled(false);
+            robustAveragesCheckBox.setEnabled(false);
             outputAdoptedCheckBox.setEnabled(false);
             defaultIntensityUncertSpinner.setEnabled(false);
             defaultEnergyUncertSpinner.setEnabled(false);
@@ -385,6 +438,13 @@ public class JGAMUT_GUI extends javax.swing.JFrame {
             limitMinUncertCheckBox.setEnabled(true);
             useNonNumericUncertCheckBox.setEnabled(true);
             useEnergyShiftsCheckBox.setEnabled(true);
+            automaticOutliersCheckBox.setEnabled(true);
+            robustEnergyFitCheckBox.setEnabled(true);
+            monteCarloCheckBox.setEnabled(true);
+            jackknifeCheckBox.setEnabled(true);
+            influenceCheckBox.setEnabled(true);
+            averageCacheCheckBox.setEnabled(true);
+            robustAveragesCheckBox.setEnabled(true);
             outputAdoptedCheckBox.setEnabled(true);
             defaultIntensityUncertSpinner.setEnabled(true);
             defaultEnergyUncertSpinner.setEnabled(true);
@@ -452,6 +512,8 @@ public class JGAMUT_GUI extends javax.swing.JFrame {
             ENSDFDataset datatableset;
             updateStatus updater = new updateStatus();
             List<ENSDFDataset> datasets;
+            averageCache cache;
+            gamma[] averages;
 
             SwingUtilities.invokeLater(new disableInterface());
             try{
@@ -478,13 +540,25 @@ public class JGAMUT_GUI extends javax.swing.JFrame {
                     }
                 }
                 updater.setMessage("Satus: Creating Averages File...");
+                cache = null;
+                if(averageCacheCheckBox.isSelected()){
+                    //the cache is kept next to the averages file
+                    cache = averageCache.load(averagesFilePathTextField.getText() + ".cache");
+                }
+                //all the groups are averaged at once, and the averages are
+                //used for both the averages file and the adopted dataset
+                averages = ENSDFDataset.averageGammaGroups(gammaGroups,
+                        limitMinUncertCheckBox.isSelected(),
+                        useNonNumericUncertCheckBox.isSelected(), cache);
+                if(cache != null){
+                    cache.save();
+                }
                 textFileIO.write(ENSDFDataset.generateAveragesTable(gammaGroups, 
-                                limitMinUncertCheckBox.isSelected(),
-                                useNonNumericUncertCheckBox.isSelected(),
-                                decayDatasetNormalizationCheckBox.isSelected()), 
+                                averages,
+                                decayDatasetNormalizationCheckBox.isSelected(),
+                                robustAveragesCheckBox.isSelected() ? 
+                                        new robustAverages() : null), 
                         averagesFilePathTextField.getText());
-                //as a side-effect generateAveragesTable adds the average gamma
-                //to gammaGroups
                 if(outputAdoptedCheckBox.isSelected()){
                     try{
                         fileData.clear();
@@ -496,12 +570,12 @@ public class JGAMUT_GUI extends javax.swing.JFrame {
                         
                         if(datasets == null){ //failed to read input file
                             updater.setMessage("Status: Creating New Adopted Dataset...");
-                            fileData = ENSDFDataset.generateAdoptedDataset(gammaGroups);
+                            fileData = ENSDFDataset.generateAdoptedDataset(gammaGroups, averages);
                         }else{
                             for(ENSDFDataset d : datasets){
                                 if(d.getTitle().equals("ADOPTED LEVELS, GAMMAS")){
                                     updater.setMessage("Status: Creating New Adopted Dataset...");
-                                    fileData = ENSDFDataset.generateAdoptedDataset(gammaGroups, d);
+                                    fileData = ENSDFDataset.generateAdoptedDataset(gammaGroups, averages, d);
                                     break;
                                 }
                             }
@@ -509,7 +583,7 @@ public class JGAMUT_GUI extends javax.swing.JFrame {
                         
                         if(fileData.isEmpty()){
                             updater.setMessage("Status: Creating New Adopted Dataset...");
-                            fileData = ENSDFDataset.generateAdoptedDataset(gammaGroups);
+                            fileData = ENSDFDataset.generateAdoptedDataset(gammaGroups, averages);
                         }
                         
                         updater.setMessage("Status: Writing New Adopted Dataset...");
@@ -598,13 +672,34 @@ public class JGAMUT_GUI extends javax.swing.JFrame {
         public void run(){
             List<String> fileData;
             ENSDFDataset datatableset, orig_datatableset, gamutDataset;
+            gammaTable table;
             Matrix E, W_E, G, L, dL, fitEg, dFitEg; //energy matrices
             boolean useShifts = useEnergyShiftsCheckBox.isSelected();
-            Matrix I, W_I, beta, Ibar, dIbar; //intensity matrices
+            intensityObservations intensities;
+            Matrix beta, Ibar, dIbar; //intensity matrices
             updateStatus updater = new updateStatus();
             List<ENSDFDataset> datasets;
             double defaultIntensityUncert = (double)defaultIntensityUncertSpinner.getValue() / 100d;
             double defaultEnergyUncert = (double)defaultEnergyUncertSpinner.getValue();
+            outlierPolicy policy;
+            intensitySolver solver = new intensitySolver();
+            List<String> reportNotes;
+            List<gammaReportColumn> reportColumns = new ArrayList<>();
+            gammaReportColumn robustColumn, leverageColumn, cooksColumn;
+            gamma[] rowGammas;
+            Matrix robustW;
+            Matrix W_fit; //energy weights of the final fit
+            Matrix leverage, cooksD;
+            List<intensityObservations> fittedIntensities = new ArrayList<>();
+            monteCarloUncertainty mc = null;
+            datasetJackknife jackknife = null;
+            int i;
+            
+            if(automaticOutliersCheckBox.isSelected()){
+                policy = outlierPolicy.automatic(MAX_OUTLIER_ITERATIONS);
+            }else{
+                policy = outlierPolicy.interactive();
+            }
 
             SwingUtilities.invokeLater(new disableInterface());
             try{
@@ -622,6 +717,9 @@ public class JGAMUT_GUI extends javax.swing.JFrame {
 
                 //remove gammas with bad uncertainties
                 datatableset.removeGammasWithBadUncert();
+                //the columns of the gammas are copied once for the
+                //placement matrix and the intensity matrices
+                table = new gammaTable(datatableset);
                 
                 orig_datatableset = ENSDFDataset.readDatasetTable(fileData, 
                         true, tabSeparatedCheckBox.isSelected());
@@ -632,20 +730,65 @@ public class JGAMUT_GUI extends javax.swing.JFrame {
                 W_E = new Matrix(E.getRowDimension(), 1);
                 fitEg = new Matrix(E.getRowDimension(), 1);
                 dFitEg = new Matrix(E.getRowDimension(), 1);
-                G = GAMUT_Algorithms.createPlacementMatrix(datatableset, E, W_E, 
+                G = GAMUT_Algorithms.createPlacementMatrix(table, E, W_E, 
                         defaultEnergyUncert,
                         useShifts);
                 dL = new Matrix(G.getColumnDimension(), 1);
                 updater.setMessage("Satus: Fitting Energy Levels...");
-                L = GAMUT_Algorithms.solveLevelSchemeSystem(datatableset, G, E, W_E, 
-                        fitEg, dFitEg, dL);
-
-                updater.setMessage("Satus: Performing Gamma-Ray Energy Chi^2 Analysis...");
-                while(!GAMUT_Algorithms.EgChiSqAnalysis(datatableset, G, L, W_E)){
-                    updater.setMessage("Satus: Fitting Energy Levels...");
+                if(robustEnergyFitCheckBox.isSelected()){
+                    robustW = new Matrix(W_E.getRowDimension(), 1);
+                    L = GAMUT_Algorithms.solveLevelSchemeSystemRobust(datatableset, 
+                            G, E, W_E, fitEg, dFitEg, dL, robustWeighting.HUBER, robustW);
+                    robustColumn = new gammaReportColumn("Robust Wt. (Eg)");
+                    rowGammas = GAMUT_Algorithms.getEnergyRowGammas(table, 
+                            W_E.getRowDimension());
+                    for(i=0; i<rowGammas.length; i++){
+                        if(rowGammas[i] != null){
+                            robustColumn.put(rowGammas[i], "%1.3f", robustW.get(i, 0));
+                        }
+                    }
+                    reportColumns.add(robustColumn);
+                    W_fit = W_E.arrayTimes(robustW);
+                }else{
                     L = GAMUT_Algorithms.solveLevelSchemeSystem(datatableset, G, E, W_E, 
-                        fitEg, dFitEg, dL);
+                            fitEg, dFitEg, dL);
+
                     updater.setMessage("Satus: Performing Gamma-Ray Energy Chi^2 Analysis...");
+                    policy.beginFit();
+                    while(!GAMUT_Algorithms.EgChiSqAnalysis(datatableset, G, L, W_E, policy)){
+                        updater.setMessage("Satus: Fitting Energy Levels...");
+                        L = GAMUT_Algorithms.solveLevelSchemeSystem(datatableset, G, E, W_E, 
+                            fitEg, dFitEg, dL);
+                        updater.setMessage("Satus: Performing Gamma-Ray Energy Chi^2 Analysis...");
+                    }
+                    W_fit = W_E;
+                }
+                
+                if(influenceCheckBox.isSelected()){
+                    updater.setMessage("Satus: Calculating Gamma-Ray Energy Leverages...");
+                    leverage = new Matrix(W_fit.getRowDimension(), 1);
+                    cooksD = new Matrix(W_fit.getRowDimension(), 1);
+                    if(GAMUT_Algorithms.energyFitInfluence(datatableset, G, E, W_fit, 
+                            leverage, cooksD)){
+                        leverageColumn = new gammaReportColumn("Leverage (Eg)");
+                        cooksColumn = new gammaReportColumn("Cook's D (Eg)");
+                        rowGammas = GAMUT_Algorithms.getEnergyRowGammas(table, 
+                                W_fit.getRowDimension());
+                        for(i=0; i<rowGammas.length; i++){
+                            if(rowGammas[i] == null){
+                                continue;
+                            }
+                            leverageColumn.put(rowGammas[i], "%1.3f", leverage.get(i, 0));
+                            if(Double.isNaN(cooksD.get(i, 0))){
+                                //the only connection of some level
+                                cooksColumn.put(rowGammas[i], "critical");
+                            }else{
+                                cooksColumn.put(rowGammas[i], "%1.3g", cooksD.get(i, 0));
+                            }
+                        }
+                        reportColumns.add(leverageColumn);
+                        reportColumns.add(cooksColumn);
+                    }
                 }
 
                 if(decayDatasetNormalizationCheckBox.isSelected()){
@@ -662,33 +805,53 @@ public class JGAMUT_GUI extends javax.swing.JFrame {
                         }
                     }
                     datatableset.renormalizeGammaRays(true);
+                    table.update();
                     updater.setMessage("Satus: Creating Gamma-Ray Intensities Matrix...");
-                    I = new Matrix(datatableset.getNumUniqueGammas(), 
-                            datatableset.getNumSources());
-                    W_I = new Matrix(I.getRowDimension(), I.getColumnDimension());
-                    GAMUT_Algorithms.setupIntensityMatrices(datatableset, I, W_I,
+                    intensities = GAMUT_Algorithms.setupIntensityObservations(table,
                             defaultIntensityUncert);
                     updater.setMessage("Satus: Calculating Dataset Intensity Multipliers...");
-                    beta = GAMUT_Algorithms.intensitySolve(I, W_I, false);
-                    dIbar = new Matrix(I.getRowDimension(), 1);
+                    beta = GAMUT_Algorithms.intensitySolve(intensities, false, solver);
+                    dIbar = new Matrix(intensities.getRowDimension(), 1);
                     updater.setMessage("Satus: Calculating Adopted Intensities...");
-                    Ibar = GAMUT_Algorithms.calcIbar(I, W_I, beta, dIbar);
+                    Ibar = GAMUT_Algorithms.calcIbar(intensities, beta, dIbar);
 
 
                     updater.setMessage("Satus: Performing Gamma-Ray Intensity Chi^2 Analysis...");
-                    while(!GAMUT_Algorithms.IgChiSqAnalysis(datatableset, beta, Ibar, W_I)){
+                    policy.beginFit();
+                    while(!GAMUT_Algorithms.IgChiSqAnalysis(datatableset, beta, Ibar, intensities, policy)){
                         updater.setMessage("Satus: Calculating Dataset Intensity Multipliers...");
-                        beta = GAMUT_Algorithms.intensitySolve(I, W_I, false);
+                        beta = GAMUT_Algorithms.intensitySolve(intensities, false, solver);
                         updater.setMessage("Satus: Calculating Adopted Intensities...");
-                        Ibar = GAMUT_Algorithms.calcIbar(I, W_I, beta, dIbar);
+                        Ibar = GAMUT_Algorithms.calcIbar(intensities, beta, dIbar);
                         updater.setMessage("Satus: Performing Gamma-Ray Intensity Chi^2 Analysis...");
                     }
+                    fittedIntensities.add(intensities);
                 }else{
                     Ibar = new Matrix(datatableset.getNumUniqueGammas(), 1);
                     dIbar = new Matrix(Ibar.getRowDimension(), 1);
                     updater.setMessage("Satus: Calculating Dataset Intensity Multipliers...");
                     GAMUT_Algorithms.calcIntensitiesLevelByLevel(datatableset, Ibar, 
-                            dIbar, defaultIntensityUncert);
+                            dIbar, defaultIntensityUncert, policy, solver, fittedIntensities);
+                }
+                if(solver.getNotConverged() > 0){
+                    JOptionPane.showMessageDialog(null, "Warning! " + solver.getNotConverged() +
+                            " solution(s) for the intensity multipliers did not converge within " +
+                            solver.getMaxIterations() + " iterations. The last iterate was used; see the report file.");
+                }
+                
+                if(jackknifeCheckBox.isSelected()){
+                    updater.setMessage("Satus: Refitting Energy Levels Without Each Data Set...");
+                    jackknife = GAMUT_Algorithms.jackknifeLevelSchemeSystem(datatableset, 
+                            G, E, W_fit);
+                }
+                if(monteCarloCheckBox.isSelected()){
+                    mc = new monteCarloUncertainty();
+                    updater.setMessage("Satus: Monte Carlo Check of Level Energies...");
+                    GAMUT_Algorithms.monteCarloLevelSchemeSystem(datatableset, G, E, 
+                            W_fit, mc);
+                    updater.setMessage("Satus: Monte Carlo Check of Adopted Intensities...");
+                    GAMUT_Algorithms.monteCarloIntensities(fittedIntensities, 
+                            !decayDatasetNormalizationCheckBox.isSelected(), mc);
                 }
 
                 updater.setMessage("Satus: Creating GAMUT Adopted Dataset...");
@@ -696,16 +859,26 @@ public class JGAMUT_GUI extends javax.swing.JFrame {
                     decayDatasetNormalizationCheckBox.isSelected());
 
                 updater.setMessage("Satus: Writing Report Table...");
+                reportNotes = policy.getReportLines();
+                reportNotes.addAll(solver.getReportLines());
+                if(mc != null){
+                    reportNotes.addAll(mc.getReportLines());
+                }
+                if(jackknife != null){
+                    reportNotes.addAll(jackknife.getReportLines());
+                }
                 if(useShifts){
                     textFileIO.write(ENSDFDataset.generateReportTable(orig_datatableset, 
                         datatableset, gamutDataset, null, L.getMatrix(datatableset.getNumLevelsWithGammas(),
                                 L.getRowDimension()-1, 0, 0),
                                 dL.getMatrix(datatableset.getNumLevelsWithGammas(),
-                                dL.getRowDimension()-1, 0, 0)), averagesFilePathTextField.getText());
+                                dL.getRowDimension()-1, 0, 0), reportColumns, 
+                                reportNotes), 
+                            averagesFilePathTextField.getText());
                 }else{
                     textFileIO.write(ENSDFDataset.generateReportTable(orig_datatableset, 
-                        datatableset, gamutDataset, null, null, null), 
-                            averagesFilePathTextField.getText());
+                        datatableset, gamutDataset, null, null, null, reportColumns,
+                        reportNotes), averagesFilePathTextField.getText());
                 }
                 
                 
@@ -779,15 +952,18 @@ public class JGAMUT_GUI extends javax.swing.JFrame {
     }//GEN-LAST:event_adoptedBrowseButtonActionPerformed
 
     
+    private static final String ALL_STANDARDS_CHOICE = "All datasets (rank by chi^2)";
+    
     private class energyShifts_runnable implements Runnable{
         @Override
         public void run(){
             List<String> fileData;
             ENSDFDataset datatableset;
             updateStatus updater = new updateStatus();
-            String[] sources;
+            String[] sources, choices;
             String standard;
             Matrix slopesAndIntercepts, uncert;
+            List<energyShiftFit> fits;
             int j, offset, answer;
             textTable result;
             gammaContextDialog resultWindow = new gammaContextDialog(null, false);
@@ -813,11 +989,13 @@ public class JGAMUT_GUI extends javax.swing.JFrame {
                 datatableset.removeGammasWithBadUncert();
                 
                 sources = datatableset.getSources();
+                choices = java.util.Arrays.copyOf(sources, sources.length + 1);
+                choices[sources.length] = ALL_STANDARDS_CHOICE;
                 updater.setMessage("Satus: Waiting For Input...");
                 standard = (String)JOptionPane.showInputDialog(null,
                         "Select a dataset to be used as the standard to calculate shifts relative to.",
                         "Choose Energy Standard...",
-                        JOptionPane.QUESTION_MESSAGE, null, sources, sources[0]);
+                        JOptionPane.QUESTION_MESSAGE, null, choices, sources[0]);
                 
                 if(standard == null){
                     updater.setMessage("Satus: Ready!");
@@ -826,10 +1004,44 @@ public class JGAMUT_GUI extends javax.swing.JFrame {
                 }
                 
                 updater.setMessage("Satus: Calculating Linear Shifts...");
-                uncert = new Matrix(2*(sources.length - 1), 1);
-                slopesAndIntercepts = GAMUT_Algorithms.calculateLinearEnergyShifts(datatableset, 
-                        standard, (double)defaultEnergyUncertSpinner.getValue(),
-                        uncert);
+                if(standard.equals(ALL_STANDARDS_CHOICE)){
+                    //try every dataset as the standard, then let the user
+                    //choose from the ranked list
+                    fits = GAMUT_Algorithms.fitLinearEnergyShiftsForAllStandards(datatableset,
+                            (double)defaultEnergyUncertSpinner.getValue());
+                    if(fits.isEmpty()){
+                        updater.setMessage("Satus: Ready!");
+                        JOptionPane.showMessageDialog(null, "No dataset can be used as the standard. Ensure the datasets have gamma-ray energy measurements in common.", "Invalid Standard", JOptionPane.ERROR_MESSAGE);
+                        SwingUtilities.invokeLater(new enableInterface());
+                        return;
+                    }
+                    resultWindow.setTitle("Shift results for each standard");
+                    resultWindow.setTextArea(energyShiftFit.getRankingLines(fits));
+                    resultWindow.setVisible(true);
+                    updater.setMessage("Satus: Waiting For Input...");
+                    choices = new String[fits.size()];
+                    for(j=0; j<fits.size(); j++){
+                        choices[j] = fits.get(j).getStandard();
+                    }
+                    standard = (String)JOptionPane.showInputDialog(null,
+                            "Select the standard whose shifts should be used (ranked from the smallest chi^2/DOF).",
+                            "Choose Energy Standard...",
+                            JOptionPane.QUESTION_MESSAGE, null, choices, choices[0]);
+                    if(standard == null){
+                        resultWindow.setVisible(false);
+                        updater.setMessage("Satus: Ready!");
+                        SwingUtilities.invokeLater(new enableInterface());
+                        return;
+                    }
+                    j = java.util.Arrays.asList(choices).indexOf(standard);
+                    slopesAndIntercepts = fits.get(j).getSlopesAndIntercepts();
+                    uncert = fits.get(j).getUncertainties();
+                }else{
+                    uncert = new Matrix(2*(sources.length - 1), 1);
+                    slopesAndIntercepts = GAMUT_Algorithms.calculateLinearEnergyShifts(datatableset, 
+                            standard, (double)defaultEnergyUncertSpinner.getValue(),
+                            uncert);
+                }
                 
                 if(slopesAndIntercepts == null){
                     updater.setMessage("Satus: Ready!");
@@ -1059,6 +1271,13 @@ public class JGAMUT_GUI extends javax.swing.JFrame {
     private javax.swing.JLabel statusTextLabel;
     private javax.swing.JCheckBox tabSeparatedCheckBox;
     private javax.swing.JCheckBox useEnergyShiftsCheckBox;
+    private javax.swing.JCheckBox automaticOutliersCheckBox;
+    private javax.swing.JCheckBox robustEnergyFitCheckBox;
+    private javax.swing.JCheckBox monteCarloCheckBox;
+    private javax.swing.JCheckBox jackknifeCheckBox;
+    private javax.swing.JCheckBox influenceCheckBox;
+    private javax.swing.JCheckBox averageCacheCheckBox;
+    private javax.swing.JCheckBox robustAveragesCheckBox;
     private javax.swing.JCheckBox useNonNumericUncertCheckBox;
     // End of variables declaration//GEN-END:variables
 }
@@ -0,0 +1,124 @@
+package jgamut;
+
+import Jama.Matrix;
+import java.util.stream.IntStream;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.BlockRealMatrix;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.SingularValueDecomposition;
+
+/**
+ * Implementation of {@link linearAlgebraBackend} using the Apache Commons 
+ * Math library. Matrix products are computed with cache-blocked 
+ * {@link BlockRealMatrix} storage and, for large matrices, the rows of the
+ * result are computed in parallel.
+ * 
+ * Date Modified: 18/10/2026
+ * 
+ * @author agent
+ */
+public class commonsMathBackend implements linearAlgebraBackend {
+    
+    //products with fewer multiply-adds than this are computed on one thread
+    private static final long PARALLEL_THRESHOLD = 1L << 18;
+    
+    @Override public String getName(){
+        return "commons-math";
+    }
+    
+    private static RealMatrix toRealMatrix(Matrix A){
+        return new BlockRealMatrix(A.getArray());
+    }
+    
+    private static Matrix toMatrix(RealMatrix A){
+        return new Matrix(A.getData());
+    }
+    
+    //computes A*B (or A^T*B if transposeA is true) using the row-major 
+    //arrays of the operands, splitting the rows of the result between threads
+    private static Matrix multiply(final double[][] a, final double[][] b, 
+            final boolean transposeA){
+        final int n = transposeA ? (a.length == 0 ? 0 : a[0].length) : a.length;
+        final int inner = transposeA ? a.length : (a.length == 0 ? 0 : a[0].length);
+        final int m = b.length == 0 ? 0 : b[0].length;
+        final double[][] c = new double[n][m];
+        IntStream rows = IntStream.range(0, n);
+        
+        if((long)n*inner*m > PARALLEL_THRESHOLD){
+            rows = rows.parallel();
+        }
+        rows.forEach(i -> {
+            double[] ci = c[i];
+            double aik;
+            for(int k=0; k<inner; k++){
+                aik = transposeA ? a[k][i] : a[i][k];
+                if(aik == 0.0d){
+                    continue; //placement matrices are mostly zeros
+                }
+                double[] bk = b[k];
+                for(int j=0; j<m; j++){
+                    ci[j] += aik*bk[j];
+                }
+            }
+        });
+        return new Matrix(c, n, m);
+    }
+    
+    @Override public Matrix times(Matrix A, Matrix B){
+        if((long)A.getRowDimension()*A.getColumnDimension()*B.getColumnDimension() > PARALLEL_THRESHOLD){
+            return multiply(A.getArray(), B.getArray(), false);
+        }
+        return toMatrix(toRealMatrix(A).multiply(toRealMatrix(B)));
+    }
+    
+    @Override public Matrix transposeTimes(Matrix A, Matrix B){
+        if((long)A.getRowDimension()*A.getColumnDimension()*B.getColumnDimension() > PARALLEL_THRESHOLD){
+            return multiply(A.getArray(), B.getArray(), true);
+        }
+        return toMatrix(toRealMatrix(A).transpose().multiply(toRealMatrix(B)));
+    }
+    
+    @Override public Matrix weightedNormalMatrix(Matrix A, Matrix W){
+        double[][] WA = A.getArrayCopy();
+        int i, j;
+        
+        for(i=0; i<WA.length; i++){
+            for(j=0; j<WA[i].length; j++){
+                WA[i][j] *= W.get(i, 0);
+            }
+        }
+        return transposeTimes(A, new Matrix(WA, A.getRowDimension(), 
+                A.getColumnDimension()));
+    }
+    
+    @Override public Matrix pseudoinverse(Matrix M, int[] rank){
+        SingularValueDecomposition svd = new SingularValueDecomposition(
+                new Array2DRowRealMatrix(M.getArray()));
+        double[] s = svd.getSingularValues();
+        RealMatrix U, V;
+        double tol = (1e-15)*Math.max(M.getColumnDimension(), M.getRowDimension());
+        int count, i, j;
+        
+        //same cut-off as the JAMA backend so the two agree on the rank
+        tol *= s.length > 0 ? s[0] : 0.0d;
+        U = svd.getU();
+        V = svd.getV().copy();
+        count = 0;
+        for(j=0; j<s.length; j++){
+            if(s[j] > tol){
+                for(i=0; i<V.getRowDimension(); i++){
+                    V.multiplyEntry(i, j, 1.0d/s[j]);
+                }
+                count += 1;
+            }else{
+                for(i=0; i<V.getRowDimension(); i++){
+                    V.setEntry(i, j, 0.0d);
+                }
+            }
+        }
+        if(rank != null){
+            rank[0] = count;
+        }
+        return toMatrix(V.multiply(U.transpose()));
+    }
+}
@@ -0,0 +1,185 @@
+package jgamut;
+
+import java.util.ArrayList;
+import java.util.List;
+import text_io.textTable;
+
+/**
+ * This class holds the results of the leave-one-data-set-out jackknife of the
+ * level energies (see {@link GAMUT_Algorithms#jackknifeLevelSchemeSystem(ENSDF_data.ENSDFDataset, Jama.Matrix, Jama.Matrix, Jama.Matrix)
+ * jackknifeLevelSchemeSystem}): for each data set (source), the change of each
+ * fitted level energy when all gamma rays of that data set are removed from
+ * the fit. A level whose energy is no longer determined without the data set
+ * has no change recorded for it.
+ *
+ * Date Modified: 18/10/2026
+ *
+ * @author agent
+ */
+public class datasetJackknife {
+
+    private final String[] sources;
+    private final String[] levels;
+    private final double[] fit, dFit;
+    private final double[][] changes; //changes[i][s] for level i, source s
+    private final boolean[] leftOut; //true if source s had gammas to remove
+
+    /**
+     * Creates a new, empty, set of results.
+     * @param sources the titles of the data sets
+     * @param levels the energies of the levels (as in the input)
+     * @param fit the fitted level energies using all data sets
+     * @param dFit the uncertainties of the fitted level energies
+     */
+    public datasetJackknife(String[] sources, String[] levels, double[] fit, double[] dFit){
+        this.sources = sources.clone();
+        this.levels = levels.clone();
+        this.fit = fit.clone();
+        this.dFit = dFit.clone();
+        this.changes = new double[levels.length][sources.length];
+        this.leftOut = new boolean[sources.length];
+        for(double[] row : changes){
+            java.util.Arrays.fill(row, Double.NaN);
+        }
+    }
+
+    /**
+     * Records the level energies fitted without the given data set.
+     * @param s the index of the data set
+     * @param refit the fitted level energies (at least one per level) without
+     * the data set, <code>NaN</code> for the levels which are not determined
+     */
+    synchronized void setLeftOut(int s, double[] refit){
+        leftOut[s] = true;
+        for(int i=0; i<levels.length; i++){
+            changes[i][s] = refit[i] - fit[i];
+        }
+    }
+
+    /**
+     * Returns the number of data sets.
+     * @return the number of data sets
+     */
+    public int getNumSources(){
+        return sources.length;
+    }
+
+    /**
+     * Returns the number of levels.
+     * @return the number of levels
+     */
+    public int getNumLevels(){
+        return levels.length;
+    }
+
+    /**
+     * Returns the change of the energy of level i when data set s is removed
+     * from the fit, or <code>NaN</code> if the level is not determined
+     * without the data set or the data set has no gamma rays in the fit.
+     * @param i the index of the level
+     * @param s the index of the data set
+     * @return the change of the energy of level i without data set s
+     */
+    public synchronized double getChange(int i, int s){
+        return changes[i][s];
+    }
+
+    /**
+     * Returns the jackknife estimate of the uncertainty of the energy of
+     * level i, sqrt((g-1)/g sum (E_s - mean)^2), where the sum runs over the
+     * g data sets which could be removed without losing the level. Returns
+     * <code>NaN</code> if g is less than 2.
+     * @param i the index of the level
+     * @return the jackknife estimate of the uncertainty of the level energy
+     */
+    public synchronized double getJackknifeUncertainty(int i){
+        double mean, ss;
+        int s, g;
+
+        mean = 0.0d;
+        g = 0;
+        for(s=0; s<sources.length; s++){
+            if(!Double.isNaN(changes[i][s])){
+                mean += changes[i][s];
+                g += 1;
+            }
+        }
+        if(g < 2){
+            return Double.NaN;
+        }
+        mean /= (double)g;
+        ss = 0.0d;
+        for(s=0; s<sources.length; s++){
+            if(!Double.isNaN(changes[i][s])){
+                ss += (changes[i][s] - mean)*(changes[i][s] - mean);
+            }
+        }
+        return Math.sqrt(ss*(double)(g - 1)/(double)g);
+    }
+
+    /**
+     * Returns the results formatted as a table for the report file. The data
+     * sets are numbered, and the column [s] gives the change of each level
+     * energy when data set s is removed ("-" if the level is not determined
+     * without it). The column "Largest" gives the data set whose removal
+     * changes the level energy the most.
+     * @return the results formatted as a table
+     */
+    public synchronized List<String> getReportLines(){
+        textTable result;
+        int linecount, i, s, col, largest;
+        double d;
+
+        result = new textTable();
+        linecount = 0;
+        result.setCell(linecount, 0, "LEAVE-ONE-DATA-SET-OUT LEVEL ENERGIES");
+        result.addHrule(linecount);
+        linecount += 1;
+        for(s=0; s<sources.length; s++){
+            result.setCell(linecount, 0, "[" + (s+1) + "] " + sources[s]);
+            linecount += 1;
+        }
+        linecount += 1;
+        result.setCell(linecount, 0, "Level");
+        result.setCell(linecount, 1, "E (fit)");
+        result.setCell(linecount, 2, "dE (fit)");
+        result.setCell(linecount, 3, "dE (jackknife)");
+        result.setCell(linecount, 4, "Largest");
+        col = 5;
+        for(s=0; s<sources.length; s++){
+            if(leftOut[s]){
+                result.setCell(linecount, col, "[" + (s+1) + "]");
+                col += 1;
+            }
+        }
+        linecount += 1;
+        for(i=0; i<levels.length; i++){
+            result.setCell(linecount, 0, levels[i]);
+            result.setCell(linecount, 1, String.format("%1.4f", fit[i]));
+            result.setCell(linecount, 2, String.format("%1.3g", dFit[i]));
+            d = getJackknifeUncertainty(i);
+            result.setCell(linecount, 3, Double.isNaN(d) ? "-" : String.format("%1.3g", d));
+            largest = -1;
+            col = 5;
+            for(s=0; s<sources.length; s++){
+                if(!leftOut[s]){
+                    continue;
+                }
+                d = changes[i][s];
+                if(Double.isNaN(d)){
+                    result.setCell(linecount, col, "-");
+                }else{
+                    result.setCell(linecount, col, String.format("%1.3g", d));
+                    if(largest < 0 || Math.abs(d) > Math.abs(changes[i][largest])){
+                        largest = s;
+                    }
+                }
+                col += 1;
+            }
+            result.setCell(linecount, 4, largest < 0 ? "-" : "[" + (largest+1) + "]");
+            linecount += 1;
+        }
+        result.addHrule(linecount - 1);
+        return result.toStringList();
+    }
+}
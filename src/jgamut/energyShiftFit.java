@@ -0,0 +1,224 @@
+package jgamut;
+
+import ENSDF_data.averagingContext;
+import ENSDF_data.criticalChiSqTable;
+import Jama.Matrix;
+import ensdf_datapoint.dataPt;
+import java.util.ArrayList;
+import java.util.List;
+import text_io.textTable;
+
+/**
+ * This class holds the linear gamma-ray energy shifts of each data set
+ * relative to one data set, the "standard" (see
+ * {@link GAMUT_Algorithms#fitLinearEnergyShifts(ENSDF_data.ENSDFDataset, java.lang.String, double)
+ * fitLinearEnergyShifts}), together with the residual chi^2 of the fit, so
+ * that the fits using different standards can be compared.
+ *
+ * Date Modified: 18/10/2026
+ *
+ * @author agent
+ */
+public class energyShiftFit {
+
+    private final String standard;
+    private final String[] sources; //all data sets, including the standard
+    private final Matrix slopesAndIntercepts, uncert;
+    private final double chiSq;
+    private final int numComparisons, rank;
+
+    /**
+     * Creates a new set of fitted shifts.
+     * @param standard the title of the standard data set
+     * @param sources the titles of all the data sets, including the standard
+     * @param slopesAndIntercepts the fitted slopes of the data sets other
+     * than the standard (in the order of <code>sources</code>), followed by
+     * the fitted intercepts
+     * @param uncert the uncertainties of the slopes and intercepts
+     * @param chiSq the residual chi^2 of the fit
+     * @param numComparisons the number of gamma-ray energies compared with
+     * the standard
+     * @param rank the rank of the normal matrix of the fit
+     */
+    public energyShiftFit(String standard, String[] sources, Matrix slopesAndIntercepts,
+            Matrix uncert, double chiSq, int numComparisons, int rank){
+        this.standard = standard;
+        this.sources = sources.clone();
+        this.slopesAndIntercepts = slopesAndIntercepts;
+        this.uncert = uncert;
+        this.chiSq = chiSq;
+        this.numComparisons = numComparisons;
+        this.rank = rank;
+    }
+
+    /**
+     * Returns the title of the standard data set.
+     * @return the title of the standard data set
+     */
+    public String getStandard(){
+        return standard;
+    }
+
+    /**
+     * Returns the fitted slopes followed by the fitted intercepts, see
+     * {@link GAMUT_Algorithms#calculateLinearEnergyShifts(ENSDF_data.ENSDFDataset, java.lang.String, double, Jama.Matrix)
+     * calculateLinearEnergyShifts}.
+     * @return the fitted slopes and intercepts
+     */
+    public Matrix getSlopesAndIntercepts(){
+        return slopesAndIntercepts;
+    }
+
+    /**
+     * Returns the uncertainties of the fitted slopes and intercepts.
+     * @return the uncertainties of the fitted slopes and intercepts
+     */
+    public Matrix getUncertainties(){
+        return uncert;
+    }
+
+    /**
+     * Returns the residual chi^2 of the fit.
+     * @return the residual chi^2 of the fit
+     */
+    public double getChiSq(){
+        return chiSq;
+    }
+
+    /**
+     * Returns the number of degrees of freedom of the fit, i.e. the number of
+     * gamma-ray energies compared with the standard less the number of
+     * independent shift parameters.
+     * @return the number of degrees of freedom of the fit
+     */
+    public int getDegreesOfFreedom(){
+        return numComparisons - rank;
+    }
+
+    /**
+     * Returns the residual chi^2 per degree of freedom, or infinity if there
+     * are no degrees of freedom.
+     * @return the residual chi^2 per degree of freedom
+     */
+    public double getReducedChiSq(){
+        if(getDegreesOfFreedom() <= 0){
+            return Double.POSITIVE_INFINITY;
+        }
+        return chiSq/(double)getDegreesOfFreedom();
+    }
+
+    /**
+     * Returns <code>true</code> if the residual chi^2 per degree of freedom
+     * is below the critical value at the given confidence level, i.e. if the
+     * shifted energies of the other data sets are consistent with the
+     * standard. Returns <code>false</code> if there are no degrees of freedom.
+     * @param confidence the confidence level, between 0 and 1
+     * @return <code>true</code> if the residual chi^2 is acceptable
+     */
+    public boolean isConsistent(double confidence){
+        return getDegreesOfFreedom() > 0 &&
+                getReducedChiSq() < criticalChiSqTable.get(getDegreesOfFreedom(), confidence);
+    }
+    
+    /**
+     * Returns <code>true</code> if some of the shifts are not determined by
+     * the gamma-rays in common with the standard.
+     * @return <code>true</code> if some of the shifts are not determined
+     */
+    public boolean isSingular(){
+        return rank < slopesAndIntercepts.getRowDimension();
+    }
+
+    /**
+     * Returns the table of the fitted shifts of each data set.
+     * @return the lines of the table of the fitted shifts
+     */
+    public List<String> getTableLines(){
+        textTable result;
+        int j, offset, n;
+
+        n = sources.length - 1;
+        result = new textTable();
+        result.setCell(0, 0, "Dataset");
+        result.setCell(0, 1, "Shift Constant Term");
+        result.setCell(0, 2, "Shift Linear Term");
+        offset = 0;
+        for(j=0; j<sources.length; j++){
+            result.setCell(j+1, 0, sources[j]);
+            if(sources[j].equals(standard)){
+                result.setCell(j+1, 1, "-");
+                result.setCell(j+1, 2, "-");
+                offset = 1;
+            }else{
+                result.setCell(j+1, 1,
+                        (new dataPt(slopesAndIntercepts.get(j-offset+n, 0),
+                        uncert.get(j-offset+n, 0),
+                        uncert.get(j-offset+n, 0))).toString());
+                result.setCell(j+1, 2,
+                        (new dataPt(slopesAndIntercepts.get(j-offset, 0),
+                        uncert.get(j-offset, 0),
+                        uncert.get(j-offset, 0))).toString());
+            }
+        }
+        return result.toStringList();
+    }
+
+    /**
+     * Sorts the given fits from the best standard to the worst, i.e. by
+     * increasing chi^2 per degree of freedom (the number of gamma-rays
+     * compared differs between standards), then by increasing chi^2.
+     * @param fits the fits to sort
+     */
+    public static void rank(List<energyShiftFit> fits){
+        fits.sort((a, b) -> {
+            int c = Double.compare(a.getReducedChiSq(), b.getReducedChiSq());
+            return c != 0 ? c : Double.compare(a.chiSq, b.chiSq);
+        });
+    }
+
+    /**
+     * Returns a summary of the given (ranked) fits, followed by the table
+     * of shifts of each fit.
+     * @param fits the fits, in order of rank
+     * @return the lines of the summary and tables
+     */
+    public static List<String> getRankingLines(List<energyShiftFit> fits){
+        List<String> result = new ArrayList<>();
+        textTable summary;
+        energyShiftFit f;
+        int i;
+
+        summary = new textTable();
+        summary.setCell(0, 0, "Rank");
+        summary.setCell(0, 1, "Standard");
+        summary.setCell(0, 2, "Chi^2");
+        summary.setCell(0, 3, "DOF");
+        summary.setCell(0, 4, "Chi^2/DOF");
+        summary.setCell(0, 5, "Critical (99%)");
+        summary.addHrule(0);
+        for(i=0; i<fits.size(); i++){
+            f = fits.get(i);
+            summary.setCell(i+1, 0, Integer.toString(i+1));
+            summary.setCell(i+1, 1, f.standard + (f.isSingular() ? " (singular)" : ""));
+            summary.setCell(i+1, 2, String.format("%1.4g", f.chiSq));
+            summary.setCell(i+1, 3, Integer.toString(f.getDegreesOfFreedom()));
+            if(f.getDegreesOfFreedom() > 0){
+                summary.setCell(i+1, 4, String.format("%1.4g", f.getReducedChiSq()) +
+                        (f.isConsistent(averagingContext.DEFAULT_CONFIDENCE) ? "" : " *"));
+                summary.setCell(i+1, 5, String.format("%1.4g", criticalChiSqTable.get(
+                        f.getDegreesOfFreedom(), averagingContext.DEFAULT_CONFIDENCE)));
+            }else{
+                summary.setCell(i+1, 4, "-");
+                summary.setCell(i+1, 5, "-");
+            }
+        }
+        result.addAll(summary.toStringList());
+        result.add("* chi^2/DOF above the critical value");
+        for(i=0; i<fits.size(); i++){
+            result.add("");
+            result.add((i+1) + ". Standard: " + fits.get(i).standard);
+            result.addAll(fits.get(i).getTableLines());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,392 @@
+package jgamut;
+
+import ENSDF_data.gamma;
+import Jama.Matrix;
+import java.util.Arrays;
+
+/**
+ * This class stores the gamma-ray intensity measurements used to fit the
+ * intensity multipliers. It contains the same information as the pair of
+ * matrices I and W filled by {@link GAMUT_Algorithms#setupIntensityMatrices(ENSDF_data.ENSDFDataset, Jama.Matrix, Jama.Matrix, double)
+ * setupIntensityMatrices} (rows are unique gamma-rays, columns are data
+ * sets), but only the cells which contain a measurement are stored. Each
+ * measurement (an "entry") has a value and a weight (reciprocal squared
+ * uncertainty). The entries are stored row by row, sorted by column, and are
+ * also indexed column by column, sorted by row, so both the averages over a
+ * row and the sums over a data set only visit real measurements. The gamma
+ * which gave each measurement may also be stored, in which case the chi^2 of
+ * each measurement with respect to the fit is kept up to date in a heap (see
+ * {@link #getResiduals() getResiduals}) by the outlier analysis. An object
+ * can be refilled (see {@link levelIntensityProblem}), in which case its
+ * arrays are only reallocated when they are too small.
+ *
+ * Date Modified: 18/10/2026
+ *
+ * @author agent
+ */
+public class intensityObservations {
+
+    private int nRows, nCols, count;
+    private int[] rowPtr; //entries of row i are rowPtr[i] to rowPtr[i+1]-1
+    private int[] rows; //row of each entry
+    private int[] cols; //column of each entry
+    private double[] values; //measured intensity of each entry
+    private double[] weights; //weight of each entry
+    private int[] colPtr; //positions of column j in colEntries
+    private int[] colEntries; //entries sorted by column, then row
+    private int[] next; //work space for building colEntries
+    private gamma[] gammas; //gamma of each entry, or null if not known
+    private residualHeap residuals; //created when first needed
+
+    /**
+     * Creates a new set of observations from its row by row representation.
+     * @param nRows the number of rows (unique gamma-rays)
+     * @param nCols the number of columns (data sets)
+     * @param rowPtr array of length at least nRows + 1; the entries of row i
+     * are rowPtr[i] to rowPtr[i+1]-1
+     * @param cols the column of each entry, sorted within each row
+     * @param values the measured intensity of each entry
+     * @param weights the weight of each entry
+     */
+    public intensityObservations(int nRows, int nCols, int[] rowPtr, int[] cols,
+            double[] values, double[] weights){
+        this(nRows, nCols, rowPtr, cols, values, weights, null);
+    }
+
+    /**
+     * Creates a new set of observations from its row by row representation.
+     * @param nRows the number of rows (unique gamma-rays)
+     * @param nCols the number of columns (data sets)
+     * @param rowPtr array of length at least nRows + 1; the entries of row i
+     * are rowPtr[i] to rowPtr[i+1]-1
+     * @param cols the column of each entry, sorted within each row
+     * @param values the measured intensity of each entry
+     * @param weights the weight of each entry
+     * @param gammas the gamma which gave each entry, may be <code>null</code>
+     */
+    public intensityObservations(int nRows, int nCols, int[] rowPtr, int[] cols,
+            double[] values, double[] weights, gamma[] gammas){
+        this.rowPtr = new int[0];
+        this.rows = new int[0];
+        this.cols = new int[0];
+        this.values = new double[0];
+        this.weights = new double[0];
+        this.colPtr = new int[0];
+        this.colEntries = new int[0];
+        this.next = new int[0];
+        load(nRows, nCols, rowPtr, cols, values, weights, gammas);
+    }
+
+    /**
+     * Creates an empty set of observations, to be filled using
+     * {@link #load(int, int, int[], int[], double[], double[], ENSDF_data.gamma[]) load}.
+     */
+    intensityObservations(){
+        this(0, 0, new int[1], new int[0], new double[0], new double[0], null);
+    }
+
+    /**
+     * Replaces the contents of this object. The arguments are copied, so the
+     * caller may reuse them.
+     * @param nRows the number of rows (unique gamma-rays)
+     * @param nCols the number of columns (data sets)
+     * @param rowPtr array of length at least nRows + 1; the entries of row i
+     * are rowPtr[i] to rowPtr[i+1]-1
+     * @param cols the column of each entry, sorted within each row
+     * @param values the measured intensity of each entry
+     * @param weights the weight of each entry
+     * @param gammas the gamma which gave each entry, may be <code>null</code>
+     */
+    final void load(int nRows, int nCols, int[] rowPtr, int[] cols,
+            double[] values, double[] weights, gamma[] gammas){
+        int i, j, k;
+
+        this.nRows = nRows;
+        this.nCols = nCols;
+        this.count = rowPtr[nRows];
+        if(this.rowPtr.length < nRows + 1){
+            this.rowPtr = new int[nRows + 1];
+        }
+        if(this.cols.length < count){
+            this.rows = new int[count];
+            this.cols = new int[count];
+            this.values = new double[count];
+            this.weights = new double[count];
+            this.colEntries = new int[count];
+        }
+        if(gammas == null){
+            this.gammas = null;
+        }else{
+            if(this.gammas == null || this.gammas.length < count){
+                this.gammas = new gamma[count];
+            }
+            System.arraycopy(gammas, 0, this.gammas, 0, count);
+        }
+        if(residuals != null){
+            residuals.reset();
+        }
+        if(this.colPtr.length < nCols + 1){
+            this.colPtr = new int[nCols + 1];
+            this.next = new int[nCols];
+        }
+        System.arraycopy(rowPtr, 0, this.rowPtr, 0, nRows + 1);
+        System.arraycopy(cols, 0, this.cols, 0, count);
+        System.arraycopy(values, 0, this.values, 0, count);
+        System.arraycopy(weights, 0, this.weights, 0, count);
+
+        for(i=0; i<nRows; i++){
+            for(k=rowPtr[i]; k<rowPtr[i+1]; k++){
+                rows[k] = i;
+            }
+        }
+        Arrays.fill(colPtr, 0, nCols + 1, 0);
+        for(k=0; k<count; k++){
+            colPtr[cols[k] + 1] += 1;
+        }
+        for(j=0; j<nCols; j++){
+            colPtr[j+1] += colPtr[j];
+        }
+        System.arraycopy(colPtr, 0, next, 0, nCols);
+        for(k=0; k<count; k++){ //entries are in row order, so each column is too
+            colEntries[next[cols[k]]] = k;
+            next[cols[k]] += 1;
+        }
+    }
+
+    /**
+     * Creates a new set of observations from the matrices filled by
+     * {@link GAMUT_Algorithms#setupIntensityMatrices(ENSDF_data.ENSDFDataset, Jama.Matrix, Jama.Matrix, double)
+     * setupIntensityMatrices}. Only the elements of I which are positive are
+     * measurements.
+     * @param I the matrix of intensities
+     * @param W the matrix of weights
+     * @return the observations contained in I and W
+     */
+    public static intensityObservations fromMatrices(Matrix I, Matrix W){
+        int nRows = I.getRowDimension();
+        int nCols = I.getColumnDimension();
+        int[] rowPtr = new int[nRows + 1];
+        int i, j, count;
+
+        count = 0;
+        for(i=0; i<nRows; i++){
+            for(j=0; j<nCols; j++){
+                if(I.get(i, j) > 0.0d){
+                    count += 1;
+                }
+            }
+        }
+        int[] cols = new int[count];
+        double[] values = new double[count];
+        double[] weights = new double[count];
+        count = 0;
+        for(i=0; i<nRows; i++){
+            for(j=0; j<nCols; j++){
+                if(I.get(i, j) > 0.0d){
+                    cols[count] = j;
+                    values[count] = I.get(i, j);
+                    weights[count] = W.get(i, j);
+                    count += 1;
+                }
+            }
+            rowPtr[i+1] = count;
+        }
+        return new intensityObservations(nRows, nCols, rowPtr, cols, values, weights);
+    }
+
+    /**
+     * Returns a copy of these observations, which can be modified without
+     * affecting this object.
+     * @return a copy of these observations
+     */
+    public intensityObservations copy(){
+        return new intensityObservations(nRows, nCols, rowPtr, cols, values, 
+                weights, gammas);
+    }
+
+    /**
+     * Returns the number of rows (unique gamma-rays).
+     * @return the number of rows
+     */
+    public int getRowDimension(){
+        return nRows;
+    }
+
+    /**
+     * Returns the number of columns (data sets).
+     * @return the number of columns
+     */
+    public int getColumnDimension(){
+        return nCols;
+    }
+
+    /**
+     * Returns the number of measurements.
+     * @return the number of measurements
+     */
+    public int getNumEntries(){
+        return count;
+    }
+
+    /**
+     * Returns the index of the first entry of row i.
+     * @param i the row index
+     * @return the index of the first entry of row i
+     */
+    public int rowStart(int i){
+        return rowPtr[i];
+    }
+
+    /**
+     * Returns one more than the index of the last entry of row i.
+     * @param i the row index
+     * @return one more than the index of the last entry of row i
+     */
+    public int rowEnd(int i){
+        return rowPtr[i+1];
+    }
+
+    /**
+     * Returns the number of entries in column j.
+     * @param j the column index
+     * @return the number of entries in column j
+     */
+    public int getColumnCount(int j){
+        return colPtr[j+1] - colPtr[j];
+    }
+
+    /**
+     * Returns the index of the pth entry (in order of increasing row) of
+     * column j.
+     * @param j the column index
+     * @param p the position within the column
+     * @return the index of the entry
+     */
+    public int getColumnEntry(int j, int p){
+        return colEntries[colPtr[j] + p];
+    }
+
+    /**
+     * Returns the row of the given entry.
+     * @param k the entry index
+     * @return the row of the given entry
+     */
+    public int getRow(int k){
+        return rows[k];
+    }
+
+    /**
+     * Returns the column of the given entry.
+     * @param k the entry index
+     * @return the column of the given entry
+     */
+    public int getColumn(int k){
+        return cols[k];
+    }
+
+    /**
+     * Returns the measured intensity of the given entry.
+     * @param k the entry index
+     * @return the measured intensity of the given entry
+     */
+    public double getValue(int k){
+        return values[k];
+    }
+
+    /**
+     * Sets the measured intensity of the given entry.
+     * @param k the entry index
+     * @param v the new intensity, must be positive
+     */
+    public void setValue(int k, double v){
+        values[k] = v;
+        if(residuals != null){
+            residuals.reset();
+        }
+    }
+
+    /**
+     * Returns the weight of the given entry.
+     * @param k the entry index
+     * @return the weight of the given entry
+     */
+    public double getWeight(int k){
+        return weights[k];
+    }
+
+    /**
+     * Sets the weight of the given entry.
+     * @param k the entry index
+     * @param w the new weight
+     */
+    public void setWeight(int k, double w){
+        weights[k] = w;
+        if(residuals != null){
+            residuals.weightChanged(k);
+        }
+    }
+
+    /**
+     * Returns the gamma which gave the given entry, or <code>null</code> if
+     * it is not known.
+     * @param k the entry index
+     * @return the gamma which gave the given entry
+     */
+    public gamma getGamma(int k){
+        return gammas == null ? null : gammas[k];
+    }
+
+    /**
+     * Returns <code>true</code> if the gamma which gave each entry is known.
+     * @return <code>true</code> if the gamma which gave each entry is known
+     */
+    public boolean hasGammas(){
+        return gammas != null;
+    }
+
+    /**
+     * Returns the heap of the chi^2 of the entries with respect to the fit.
+     * @return the heap of the chi^2 of the entries
+     */
+    residualHeap getResiduals(){
+        if(residuals == null){
+            residuals = new residualHeap(this);
+        }
+        return residuals;
+    }
+
+    /**
+     * Returns the index of the entry in row i and column j, or -1 if there is
+     * no measurement in that cell.
+     * @param i the row index
+     * @param j the column index
+     * @return the index of the entry in row i and column j
+     */
+    public int find(int i, int j){
+        int k = Arrays.binarySearch(cols, rowPtr[i], rowPtr[i+1], j);
+        return k < 0 ? -1 : k;
+    }
+
+    /**
+     * Fills dense matrices in the format produced by
+     * {@link GAMUT_Algorithms#setupIntensityMatrices(ENSDF_data.ENSDFDataset, Jama.Matrix, Jama.Matrix, double)
+     * setupIntensityMatrices}. Cells without a measurement are given an
+     * intensity of -1 and a weight of 1.
+     * @param I the matrix of intensities
+     * @param W the matrix of weights
+     */
+    public void toMatrices(Matrix I, Matrix W){
+        int i, j, k;
+
+        for(i=0; i<nRows; i++){
+            for(j=0; j<nCols; j++){
+                I.set(i, j, -1.0d);
+                W.set(i, j, 1.0d);
+            }
+            for(k=rowPtr[i]; k<rowPtr[i+1]; k++){
+                I.set(i, cols[k], values[k]);
+                W.set(i, cols[k], weights[k]);
+            }
+        }
+    }
+}
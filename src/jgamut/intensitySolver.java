@@ -0,0 +1,293 @@
+package jgamut;
+
+import java.util.ArrayList;
+import java.util.List;
+import text_io.textTable;
+
+/**
+ * This class holds the settings of the iterative solution for the intensity
+ * multipliers (see {@link GAMUT_Algorithms#intensitySolve(Jama.Matrix, Jama.Matrix, boolean, jgamut.intensitySolver)
+ * intensitySolve}) and records how the iterations converged. The multipliers
+ * are the fixed point of the update performed in each iteration. By default
+ * the plain iteration of the original GAMUT code is used. Optionally the
+ * fixed point iteration may be accelerated using Anderson mixing of the last
+ * few iterates. Either way the number of iterations of a solution is limited,
+ * so that a solution which does not converge cannot run forever; the
+ * solutions which stop at the limit are counted and reported (see
+ * {@link #getReportLines() getReportLines}). The same solver may be used for
+ * several solutions one after the other, in which case the statistics are
+ * accumulated.
+ *
+ * Date Modified: 18/10/2026
+ *
+ * @author agent
+ */
+public class intensitySolver {
+
+    /**
+     * The available methods for solving for the intensity multipliers.
+     */
+    public enum Method {
+        /**
+         * Repeat the update until it converges (original GAMUT behaviour).
+         */
+        REFERENCE,
+        /**
+         * Anderson accelerated fixed point iteration.
+         */
+        ANDERSON
+    }
+
+    /**
+     * The default maximum number of iterations for a single solution. The
+     * solutions of the example files converge in fewer than 10 iterations.
+     */
+    public static final int DEFAULT_MAX_ITERATIONS = 1000;
+    /**
+     * The default number of previous iterates used by Anderson acceleration.
+     */
+    public static final int DEFAULT_MEMORY = 5;
+
+    private final Method method;
+    private final int memory;
+    private final int maxIterations;
+    private int solves, notConverged, totalIterations, mostIterations;
+    private int acceleratedSteps, restarts;
+    private List<Double> lastChanges;
+
+    /**
+     * Creates a new solver.
+     * @param method the method to use
+     * @param memory the number of previous iterates used by Anderson
+     * acceleration (ignored by the reference method)
+     * @param maxIterations the maximum number of iterations in a single
+     * solution. Values less than 1 mean there is no limit.
+     */
+    public intensitySolver(Method method, int memory, int maxIterations){
+        if(method == Method.ANDERSON && memory < 1){
+            throw new IllegalArgumentException("Memory must be at least 1.");
+        }
+        this.method = method;
+        this.memory = memory;
+        this.maxIterations = maxIterations;
+        this.lastChanges = new ArrayList<>();
+    }
+
+    /**
+     * Creates a new solver using the method given by the
+     * <code>jgamut.intensitySolver</code> system property (either
+     * <code>reference</code>, the default, or <code>anderson</code>), and the
+     * maximum number of iterations given by the
+     * <code>jgamut.intensitySolverMaxIterations</code> system property
+     * ({@link #DEFAULT_MAX_ITERATIONS} by default, values less than 1 mean
+     * there is no limit).
+     */
+    public intensitySolver(){
+        this("anderson".equalsIgnoreCase(System.getProperty("jgamut.intensitySolver", "reference")) ?
+                Method.ANDERSON : Method.REFERENCE, DEFAULT_MEMORY,
+                Integer.getInteger("jgamut.intensitySolverMaxIterations", DEFAULT_MAX_ITERATIONS));
+    }
+
+    /**
+     * Returns a solver which reproduces the original GAMUT iteration,
+     * with no limit on the number of iterations.
+     * @return a solver which reproduces the original GAMUT iteration
+     */
+    public static intensitySolver reference(){
+        return new intensitySolver(Method.REFERENCE, 0, 0);
+    }
+
+    /**
+     * Returns a new solver with the same settings as this one and no
+     * recorded statistics, e.g. for solutions run in parallel with this one.
+     * @return a new solver with the same settings
+     */
+    public intensitySolver copySettings(){
+        return new intensitySolver(method, memory, maxIterations);
+    }
+
+    /**
+     * Adds the statistics recorded by another solver to those of this one.
+     * The iterations of the most recent solution of the other solver, if it
+     * performed any solutions, become those of the most recent solution of
+     * this solver.
+     * @param other the solver whose statistics are added, it must not be
+     * used while they are added
+     */
+    public synchronized void add(intensitySolver other){
+        if(other.solves == 0){
+            return;
+        }
+        solves += other.solves;
+        notConverged += other.notConverged;
+        totalIterations += other.totalIterations;
+        mostIterations = Math.max(mostIterations, other.mostIterations);
+        acceleratedSteps += other.acceleratedSteps;
+        restarts += other.restarts;
+        lastChanges = new ArrayList<>(other.lastChanges);
+    }
+
+    /**
+     * Returns the method used by this solver.
+     * @return the method used by this solver
+     */
+    public Method getMethod(){
+        return method;
+    }
+
+    /**
+     * Returns the number of previous iterates used by Anderson acceleration.
+     * @return the number of previous iterates used by Anderson acceleration
+     */
+    public int getMemory(){
+        return memory;
+    }
+
+    /**
+     * Returns the maximum number of iterations in a single solution, or a
+     * number less than 1 if there is no limit.
+     * @return the maximum number of iterations in a single solution
+     */
+    public int getMaxIterations(){
+        return maxIterations;
+    }
+
+    /**
+     * Records the start of a new solution.
+     */
+    synchronized void begin(){
+        solves += 1;
+        lastChanges = new ArrayList<>();
+    }
+
+    /**
+     * Records an iteration.
+     * @param change the relative change of the multipliers in the iteration
+     * @param accelerated <code>true</code> if the next iterate was obtained
+     * by Anderson acceleration
+     * @param restarted <code>true</code> if the Anderson history was
+     * discarded in the iteration
+     */
+    synchronized void iteration(double change, boolean accelerated, boolean restarted){
+        lastChanges.add(change);
+        totalIterations += 1;
+        if(accelerated){
+            acceleratedSteps += 1;
+        }
+        if(restarted){
+            restarts += 1;
+        }
+    }
+
+    /**
+     * Records the end of a solution.
+     * @param iterations the number of iterations performed
+     * @param converged <code>true</code> if the solution converged
+     */
+    synchronized void end(int iterations, boolean converged){
+        mostIterations = Math.max(mostIterations, iterations);
+        if(!converged){
+            notConverged += 1;
+        }
+    }
+
+    /**
+     * Returns the number of solutions performed with this solver.
+     * @return the number of solutions performed with this solver
+     */
+    public synchronized int getSolves(){
+        return solves;
+    }
+
+    /**
+     * Returns the number of solutions which stopped at the iteration limit
+     * before converging.
+     * @return the number of solutions which did not converge
+     */
+    public synchronized int getNotConverged(){
+        return notConverged;
+    }
+
+    /**
+     * Returns the total number of iterations over all solutions.
+     * @return the total number of iterations over all solutions
+     */
+    public synchronized int getTotalIterations(){
+        return totalIterations;
+    }
+
+    /**
+     * Returns the largest number of iterations used by a single solution.
+     * @return the largest number of iterations used by a single solution
+     */
+    public synchronized int getMostIterations(){
+        return mostIterations;
+    }
+
+    /**
+     * Returns the number of iterations in which the next iterate was obtained
+     * by Anderson acceleration.
+     * @return the number of accelerated iterations
+     */
+    public synchronized int getAcceleratedSteps(){
+        return acceleratedSteps;
+    }
+
+    /**
+     * Returns the number of times the Anderson history was discarded because
+     * the accelerated iterate was not acceptable.
+     * @return the number of restarts of Anderson acceleration
+     */
+    public synchronized int getRestarts(){
+        return restarts;
+    }
+
+    /**
+     * Returns the relative change of the multipliers in each iteration of
+     * the most recent solution.
+     * @return the relative change in each iteration of the most recent
+     * solution
+     */
+    public synchronized List<Double> getLastChanges(){
+        return new ArrayList<>(lastChanges);
+    }
+
+    /**
+     * Returns a summary of the recorded statistics formatted as a table for
+     * the report file, followed by a warning if any solution stopped at the
+     * iteration limit. The List is empty if no solutions were performed.
+     * @return a summary of the recorded statistics formatted as a table
+     */
+    public synchronized List<String> getReportLines(){
+        textTable result;
+        List<String> lines;
+        int linecount;
+
+        if(solves == 0){
+            return new ArrayList<>();
+        }
+        result = new textTable();
+        linecount = 0;
+        result.setCell(linecount, 0, "INTENSITY MULTIPLIER SOLVER");
+        result.addHrule(linecount);
+        linecount += 1;
+        String[] header = {"Method", "Solutions", "Iterations", "Most Iter.",
+            "Accelerated", "Restarts", "Not Converged"};
+        String[] row = {method.toString(), Integer.toString(solves),
+            Integer.toString(totalIterations), Integer.toString(mostIterations),
+            Integer.toString(acceleratedSteps), Integer.toString(restarts),
+            Integer.toString(notConverged)};
+        for(int j=0; j<header.length; j++){
+            result.setCell(linecount, j, header[j]);
+            result.setCell(linecount + 1, j, row[j]);
+        }
+        linecount += 2;
+        result.addHrule(linecount);
+        lines = result.toStringList();
+        if(notConverged > 0){
+            lines.add("Warning: " + notConverged + " solution(s) stopped at the limit of " +
+                    maxIterations + " iterations before converging; the last iterate was used.");
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,93 @@
+package jgamut;
+
+import Jama.Matrix;
+import Jama.SingularValueDecomposition;
+import java.util.stream.DoubleStream;
+
+/**
+ * Implementation of {@link linearAlgebraBackend} using the JAMA library. 
+ * This is the default backend.
+ * 
+ * Date Modified: 18/10/2026
+ * 
+ * @author agent
+ */
+public class jamaBackend implements linearAlgebraBackend {
+    
+    @Override public String getName(){
+        return "jama";
+    }
+    
+    @Override public Matrix times(Matrix A, Matrix B){
+        return A.times(B);
+    }
+    
+    @Override public Matrix transposeTimes(Matrix A, Matrix B){
+        Matrix C = new Matrix(A.getColumnDimension(), B.getColumnDimension());
+        double[][] a = A.getArray();
+        double[][] b = B.getArray();
+        double[][] c = C.getArray();
+        double[] aRow, bRow, cRow;
+        double x;
+        int i, j, k;
+        
+        if(B.getRowDimension() != A.getRowDimension()){
+            throw new IllegalArgumentException("Matrix inner dimensions must agree.");
+        }
+        //the rows of A and B are taken in order, so each element of the
+        //product is summed in the same order as by A.transpose().times(B)
+        for(k=0; k<a.length; k++){
+            aRow = a[k];
+            bRow = b[k];
+            for(i=0; i<aRow.length; i++){
+                x = aRow[i];
+                if(x == 0.0d){
+                    continue;
+                }
+                cRow = c[i];
+                for(j=0; j<bRow.length; j++){
+                    cRow[j] += x*bRow[j];
+                }
+            }
+        }
+        return C;
+    }
+    
+    @Override public Matrix weightedNormalMatrix(Matrix A, Matrix W){
+        Matrix WA = new Matrix(A.getRowDimension(), A.getColumnDimension());
+        int i, j;
+        
+        for(j=0; j<WA.getColumnDimension(); j++){
+            for(i=0; i<WA.getRowDimension(); i++){
+                WA.set(i, j, W.get(i, 0)*A.get(i, j));
+            }
+        }
+        return transposeTimes(A, WA);
+    }
+    
+    @Override public Matrix pseudoinverse(Matrix M, int[] rank){
+        SingularValueDecomposition svd = M.svd();
+        Matrix S, V, U;
+        double tol = (1e-15)*Math.max(M.getColumnDimension(), M.getRowDimension());
+        double s;
+        int count;
+
+        tol *= DoubleStream.of(svd.getSingularValues()).max().getAsDouble();
+        S = svd.getS();
+        V = svd.getV();
+        U = svd.getU();
+
+        count = 0;
+        for(int i=0; i<S.getRowDimension(); i++){
+            s = S.get(i, i);
+            if(s > tol){
+                S.set(i, i, 1.0d/s);
+                count += 1;
+            }
+        }
+        if(rank != null){
+            rank[0] = count;
+        }
+        return V.times(S.times(U.transpose()));
+    }
+}
@@ -0,0 +1,182 @@
+package jgamut;
+
+import ENSDF_data.ENSDFDataset;
+import ENSDF_data.gamma;
+import ENSDF_data.gammaEquivalenceClass;
+import ENSDF_data.level;
+import ensdf_datapoint.dataPt;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * This class sets up the intensity fit for a single level (see
+ * {@link GAMUT_Algorithms#calcIntensitiesLevelByLevel(ENSDF_data.ENSDFDataset, Jama.Matrix, Jama.Matrix, double, jgamut.outlierPolicy, jgamut.intensitySolver)
+ * calcIntensitiesLevelByLevel}) directly from the gammas of the level. The
+ * measurements are the same as those obtained by copying the level and its
+ * gammas into a temporary dataset, renormalizing it and calling
+ * {@link GAMUT_Algorithms#setupIntensityObservations(ENSDF_data.ENSDFDataset, double)
+ * setupIntensityObservations}, but nothing is copied and no intensities are
+ * formatted as strings. The only difference is that the default uncertainty
+ * of a gamma-ray without a numeric uncertainty is used as is, rather than
+ * after being rounded to ENSDF format. The buffers are reused when the
+ * object is loaded with the next level.
+ *
+ * Date Modified: 18/10/2026
+ *
+ * @author agent
+ */
+public class levelIntensityProblem {
+
+    private final intensityObservations obs;
+    private final TreeSet<String> sourceSet;
+    private String[] sources;
+    private int[] rowPtr, cols;
+    private double[] values, weights;
+    private gamma[] entryGammas; //the gamma of each entry
+    private double[] rowValues, rowWeights; //one row, indexed by column
+    private gamma[] rowGammas;
+
+    /**
+     * Creates a new, empty, problem.
+     */
+    public levelIntensityProblem(){
+        obs = new intensityObservations();
+        sourceSet = new TreeSet<>();
+        sources = new String[0];
+        rowPtr = new int[1];
+        cols = new int[0];
+        values = new double[0];
+        weights = new double[0];
+        entryGammas = new gamma[0];
+        rowValues = new double[0];
+        rowWeights = new double[0];
+        rowGammas = new gamma[0];
+    }
+
+    /**
+     * Fills this problem with the intensity measurements of the gammas
+     * de-exciting the given level.
+     * @param l the level
+     * @param nonNumericDefaultUncertainty the (percent) uncertainty to assign
+     * gamma ray intensities with non-numeric uncertainty (including those with
+     * missing uncertainty)
+     * @return <code>false</code> if the level has no gammas
+     */
+    public boolean load(level l, double nonNumericDefaultUncertainty){
+        List<gamma> out = l.getGammaOutList();
+        List<gammaEquivalenceClass> groups;
+        boolean usable;
+        double maxI, I, w;
+        dataPt dp;
+        int i, j, count, nCols;
+
+        if(out.isEmpty()){
+            return false;
+        }
+        sourceSet.clear();
+        maxI = 0.0d;
+        for(gamma g : out){
+            if(!g.isAdopted()){
+                sourceSet.add(g.getSource());
+            }
+            maxI = Math.max(maxI, g.ig.orElse(0d));
+        }
+        sources = sourceSet.toArray(sources.length == sourceSet.size() ? sources :
+                new String[sourceSet.size()]);
+        nCols = sources.length;
+        if(rowValues.length < nCols){
+            rowValues = new double[nCols];
+            rowWeights = new double[nCols];
+            rowGammas = new gamma[nCols];
+        }
+        //renormalization leaves no uncertainty on the gamma of a level with a
+        //single gamma, or on any gamma of a level without intensities
+        usable = out.size() > 1 && maxI >= 1e-20;
+
+        groups = ENSDFDataset.groupByGamma(l);
+        if(rowPtr.length < groups.size() + 1){
+            rowPtr = new int[groups.size() + 1];
+        }
+        i = 0;
+        count = 0;
+        for(gammaEquivalenceClass G : groups){
+            if(!G.containsNonAdopted()){
+                continue;
+            }
+            Arrays.fill(rowValues, 0, nCols, -1.0d);
+            for(gamma g : G.getGammas()){
+                j = g.isAdopted() ? -1 : Arrays.binarySearch(sources, g.getSource());
+                if(j < 0){
+                    continue; //source not in list, i.e. must be from adopted
+                }
+                if(usable && g.ig.isPresent()){
+                    I = g.ig.get();
+                    if(g.dig.isPresent()){
+                        dp = g.getIntensityDataPt();
+                        w = dp == null ? nonNumericDefaultUncertainty*I : dp.getLower();
+                    }else{
+                        w = nonNumericDefaultUncertainty*I;
+                    }
+                    rowValues[j] = I;
+                    rowWeights[j] = 1.0/(w*w);
+                    rowGammas[j] = g;
+                }else{
+                    rowValues[j] = -1.0d;
+                }
+            }
+            for(j=0; j<nCols; j++){
+                if(rowValues[j] > 0.0d){
+                    if(count == cols.length){
+                        grow(2*count + 4);
+                    }
+                    cols[count] = j;
+                    values[count] = rowValues[j];
+                    weights[count] = rowWeights[j];
+                    entryGammas[count] = rowGammas[j];
+                    count += 1;
+                }
+            }
+            i += 1;
+            rowPtr[i] = count;
+        }
+        obs.load(i, nCols, rowPtr, cols, values, weights, entryGammas);
+        return true;
+    }
+
+    private void grow(int capacity){
+        cols = Arrays.copyOf(cols, capacity);
+        values = Arrays.copyOf(values, capacity);
+        weights = Arrays.copyOf(weights, capacity);
+        entryGammas = Arrays.copyOf(entryGammas, capacity);
+    }
+
+    /**
+     * Returns the measurements of the level which was last loaded. The
+     * object returned is reused by the next call to
+     * {@link #load(ENSDF_data.level, double) load}.
+     * @return the measurements of the level
+     */
+    public intensityObservations getObservations(){
+        return obs;
+    }
+
+    /**
+     * Returns the sorted titles of the data sets (other than the adopted
+     * data set) with gammas from the level, i.e. the columns of the
+     * measurements.
+     * @return the titles of the data sets with gammas from the level
+     */
+    public String[] getSources(){
+        return Arrays.copyOf(sources, sources.length);
+    }
+
+    /**
+     * Returns the gamma which gave the measurement with the given index.
+     * @param k the index of the measurement (see {@link intensityObservations})
+     * @return the gamma which gave the measurement
+     */
+    public gamma getGamma(int k){
+        return obs.getGamma(k);
+    }
+}
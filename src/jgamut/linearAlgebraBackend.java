@@ -0,0 +1,60 @@
+package jgamut;
+
+import Jama.Matrix;
+
+/**
+ * This interface defines the dense matrix operations used by the GAMUT 
+ * algorithms, so that the library which performs them can be chosen at run 
+ * time. Matrices are always passed in and returned as JAMA matrices; a backend
+ * is free to convert them to its own representation internally.
+ * 
+ * Date Modified: 18/10/2026
+ * 
+ * @author agent
+ */
+public interface linearAlgebraBackend {
+    
+    /**
+     * Returns the name of the backend, as used in the <code>jgamut.linalg</code>
+     * system property.
+     * @return the name of the backend
+     */
+    String getName();
+    
+    /**
+     * Returns the matrix product A*B.
+     * @param A the left matrix
+     * @param B the right matrix
+     * @return the matrix product A*B
+     */
+    Matrix times(Matrix A, Matrix B);
+    
+    /**
+     * Returns the matrix product A^T*B, without forming the transpose of A.
+     * @param A the left matrix (before transposition)
+     * @param B the right matrix
+     * @return the matrix product A^T*B
+     */
+    Matrix transposeTimes(Matrix A, Matrix B);
+    
+    /**
+     * Returns the weighted normal matrix A^T*W*A, where W is the diagonal 
+     * matrix with elements given by the column vector W.
+     * @param A the design matrix
+     * @param W the column vector of weights
+     * @return the weighted normal matrix A^T*W*A
+     */
+    Matrix weightedNormalMatrix(Matrix A, Matrix W);
+    
+    /**
+     * Returns the Moore–Penrose pseudoinverse of M, computed using singular 
+     * value decomposition. Singular values smaller than 
+     * <code>1e-15*max(rows, columns)</code> times the largest singular value
+     * are treated as zero.
+     * @param M the matrix to invert
+     * @param rank if not <code>null</code> the zeroth element of this array
+     * is assigned the numerical rank of M
+     * @return the Moore–Penrose pseudoinverse of M
+     */
+    Matrix pseudoinverse(Matrix M, int[] rank);
+}
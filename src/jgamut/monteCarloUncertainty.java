@@ -0,0 +1,291 @@
+package jgamut;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import text_io.textTable;
+
+/**
+ * This class holds the settings of the Monte Carlo check of the fitted
+ * uncertainties (see {@link GAMUT_Algorithms#monteCarloLevelSchemeSystem(ENSDF_data.ENSDFDataset, Jama.Matrix, Jama.Matrix, Jama.Matrix, jgamut.monteCarloUncertainty)
+ * monteCarloLevelSchemeSystem} and {@link GAMUT_Algorithms#monteCarloIntensities(java.util.List, boolean, jgamut.monteCarloUncertainty)
+ * monteCarloIntensities}) and records the results for the report file. In
+ * each sample the measured energies or intensities are replaced by values
+ * drawn from normal distributions with the (final) uncertainties of the
+ * measurements and the fit is repeated. The standard deviation of the fitted
+ * values over all samples is compared with the uncertainty given by the fit.
+ * The samples are split into blocks which are run in parallel. Each block has
+ * its own random number generator, seeded in order from the seed of this
+ * object, so the results do not depend on the number of threads.
+ *
+ * Date Modified: 18/10/2026
+ *
+ * @author agent
+ */
+public class monteCarloUncertainty {
+
+    /**
+     * The default number of samples.
+     */
+    public static final int DEFAULT_SAMPLES = 2000;
+    /**
+     * The default seed of the random number generators.
+     */
+    public static final long DEFAULT_SEED = 1234567L;
+    /**
+     * The number of samples in each block.
+     */
+    static final int BLOCK_SIZE = 50;
+
+    private final int samples;
+    private final long seed;
+    private final List<String[]> levelRows;
+    private final List<String[]> gammaRows;
+    private double energyScale;
+
+    /**
+     * Creates a new Monte Carlo check.
+     * @param samples the number of samples, at least 2
+     * @param seed the seed of the random number generators
+     */
+    public monteCarloUncertainty(int samples, long seed){
+        if(samples < 2){
+            throw new IllegalArgumentException("At least 2 samples are needed.");
+        }
+        this.samples = samples;
+        this.seed = seed;
+        this.levelRows = new ArrayList<>();
+        this.gammaRows = new ArrayList<>();
+        this.energyScale = -1.0d;
+    }
+
+    /**
+     * Creates a new Monte Carlo check with the number of samples and seed
+     * given by the <code>jgamut.monteCarloSamples</code> and
+     * <code>jgamut.monteCarloSeed</code> system properties, if they are set.
+     */
+    public monteCarloUncertainty(){
+        this(Integer.getInteger("jgamut.monteCarloSamples", DEFAULT_SAMPLES),
+                Long.getLong("jgamut.monteCarloSeed", DEFAULT_SEED));
+    }
+
+    /**
+     * Returns the number of samples.
+     * @return the number of samples
+     */
+    public int getSamples(){
+        return samples;
+    }
+
+    /**
+     * Returns the seed of the random number generators.
+     * @return the seed of the random number generators
+     */
+    public long getSeed(){
+        return seed;
+    }
+
+    /**
+     * Returns the number of blocks the samples are split into.
+     * @return the number of blocks
+     */
+    int getNumBlocks(){
+        return (samples + BLOCK_SIZE - 1)/BLOCK_SIZE;
+    }
+
+    /**
+     * Returns the number of samples in the given block.
+     * @param b the block index
+     * @return the number of samples in the block
+     */
+    int getBlockSamples(int b){
+        return Math.min(BLOCK_SIZE, samples - b*BLOCK_SIZE);
+    }
+
+    /**
+     * Creates independent random number generators, one for each task. The
+     * same seed always gives the same generators.
+     * @param n the number of generators
+     * @return the random number generators
+     */
+    Random[] createStreams(int n){
+        SplittableRandom root = new SplittableRandom(seed);
+        Random[] result = new Random[n];
+
+        for(int i=0; i<n; i++){
+            result[i] = new Random(root.nextLong());
+        }
+        return result;
+    }
+
+    /**
+     * Returns a sample from the normal distribution with the given mean and
+     * standard deviation, truncated to positive values. If no positive value
+     * is drawn after 100 tries the mean is returned.
+     * @param rng the random number generator
+     * @param mean the mean
+     * @param sd the standard deviation
+     * @return a positive sample
+     */
+    static double positiveNormal(Random rng, double mean, double sd){
+        double x;
+
+        for(int i=0; i<100; i++){
+            x = mean + sd*rng.nextGaussian();
+            if(x > 0.0d){
+                return x;
+            }
+        }
+        return mean;
+    }
+
+    /**
+     * Records the scale factor, sqrt(chi^2/dof), applied to the uncertainties
+     * of the fitted level energies.
+     * @param scale the scale factor
+     */
+    synchronized void setEnergyScale(double scale){
+        energyScale = scale;
+    }
+
+    /**
+     * Records the result for a level energy.
+     * @param level the energy of the level (as in the input)
+     * @param fit the fitted energy
+     * @param dFit the uncertainty of the fitted energy given by the fit
+     * @param dMonteCarlo the standard deviation over the samples
+     */
+    synchronized void addLevel(String level, double fit, double dFit, double dMonteCarlo){
+        levelRows.add(new String[]{level, String.format("%1.4f", fit),
+            String.format("%1.3g", dFit), String.format("%1.3g", dMonteCarlo),
+            String.format("%1.3f", dMonteCarlo/dFit)});
+    }
+
+    /**
+     * Records the result for an adopted gamma-ray intensity.
+     * @param level the energy of the parent level (as in the input)
+     * @param energy the energy of the gamma-ray (as in the input)
+     * @param fit the fitted intensity
+     * @param dFit the uncertainty of the fitted intensity given by the fit
+     * @param dMonteCarlo the standard deviation over the samples
+     */
+    synchronized void addGamma(String level, String energy, double fit, double dFit,
+            double dMonteCarlo){
+        gammaRows.add(new String[]{level, energy, String.format("%1.4g", fit),
+            String.format("%1.3g", dFit), String.format("%1.3g", dMonteCarlo),
+            String.format("%1.3f", dMonteCarlo/dFit)});
+    }
+
+    /**
+     * Returns the recorded results formatted as tables for the report file.
+     * The List is empty if nothing was recorded.
+     * @return the recorded results formatted as tables
+     */
+    public synchronized List<String> getReportLines(){
+        textTable result;
+        int linecount;
+
+        if(levelRows.isEmpty() && gammaRows.isEmpty()){
+            return new ArrayList<>();
+        }
+        result = new textTable();
+        linecount = 0;
+        result.setCell(linecount, 0, "MONTE CARLO UNCERTAINTIES (" + samples +
+                " samples)");
+        result.addHrule(linecount);
+        linecount += 1;
+        if(!levelRows.isEmpty()){
+            linecount = addRows(result, linecount, new String[]{"Level", "E (fit)",
+                "dE (fit)", "dE (MC)", "MC/fit"}, levelRows);
+            if(energyScale > 0.0d){
+                result.setCell(linecount, 0, String.format(
+                        "dE (fit) scaled by sqrt(chi^2/dof) = %1.3f",
+                        energyScale));
+                linecount += 1;
+            }
+            linecount += 1;
+        }
+        if(!gammaRows.isEmpty()){
+            linecount = addRows(result, linecount, new String[]{"Level", "Eg",
+                "Ig (fit)", "dIg (fit)", "dIg (MC)", "MC/fit"}, gammaRows);
+        }
+        result.addHrule(linecount - 1);
+        return result.toStringList();
+    }
+
+    private static int addRows(textTable table, int linecount, String[] header,
+            List<String[]> rows){
+        int j;
+
+        for(j=0; j<header.length; j++){
+            table.setCell(linecount, j, header[j]);
+        }
+        linecount += 1;
+        for(String[] row : rows){
+            for(j=0; j<row.length; j++){
+                table.setCell(linecount, j, row[j]);
+            }
+            linecount += 1;
+        }
+        return linecount;
+    }
+
+    /**
+     * Sums of the deviations of the fitted values from a reference fit, used
+     * to compute standard deviations over the samples.
+     */
+    static final class moments {
+        private final double[] ref;
+        private final double[] sum, sumSq;
+        private int count;
+
+        /**
+         * Creates empty sums.
+         * @param ref the reference fit, the deviations are taken from these
+         * values to avoid cancellation
+         */
+        moments(double[] ref){
+            this.ref = ref;
+            this.sum = new double[ref.length];
+            this.sumSq = new double[ref.length];
+        }
+
+        /**
+         * Adds the values of one sample.
+         * @param x the fitted values of the sample
+         */
+        void add(double[] x){
+            double d;
+
+            for(int i=0; i<ref.length; i++){
+                d = x[i] - ref[i];
+                sum[i] += d;
+                sumSq[i] += d*d;
+            }
+            count += 1;
+        }
+
+        /**
+         * Adds the sums of another set of samples.
+         * @param other the sums to add
+         */
+        void add(moments other){
+            for(int i=0; i<ref.length; i++){
+                sum[i] += other.sum[i];
+                sumSq[i] += other.sumSq[i];
+            }
+            count += other.count;
+        }
+
+        /**
+         * Returns the sample standard deviation of the ith value.
+         * @param i the index of the value
+         * @return the sample standard deviation of the ith value
+         */
+        double sd(int i){
+            double var = (sumSq[i] - sum[i]*sum[i]/count)/(count - 1);
+            return Math.sqrt(Math.max(var, 0.0d));
+        }
+    }
+}
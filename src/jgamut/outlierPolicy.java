@@ -0,0 +1,272 @@
+package jgamut;
+
+import ENSDF_data.gamma;
+import ENSDF_data.level;
+import java.util.ArrayList;
+import java.util.List;
+import text_io.textTable;
+
+/**
+ * This class defines how the gamma-ray energy and intensity chi^2 analyses
+ * (see {@link GAMUT_Algorithms#EgChiSqAnalysis(ENSDF_data.ENSDFDataset, Jama.Matrix, Jama.Matrix, Jama.Matrix, jgamut.outlierPolicy)
+ * EgChiSqAnalysis} and {@link GAMUT_Algorithms#IgChiSqAnalysis(ENSDF_data.ENSDFDataset, Jama.Matrix, Jama.Matrix, Jama.Matrix, jgamut.outlierPolicy)
+ * IgChiSqAnalysis}) treat measurements which are discrepant with the fit.
+ * The uncertainty of a discrepant measurement can either be changed by asking
+ * the user (the original behaviour), or automatically, in which case it is
+ * inflated so the measurement is either consistent with the fit (within one
+ * standard deviation) or at most N standard deviations away from it. Every
+ * decision is recorded so it can be included in the report file.
+ *
+ * Date Modified: 18/10/2026
+ *
+ * @author agent
+ */
+public class outlierPolicy {
+
+    /**
+     * The ways a discrepant measurement can be treated.
+     */
+    public enum Action {
+        /**
+         * Ask the user whether to change the uncertainty.
+         */
+        ASK,
+        /**
+         * Set the uncertainty equal to the residual, i.e. the measurement is
+         * then one standard deviation from the fit.
+         */
+        INFLATE_TO_RESIDUAL,
+        /**
+         * Set the uncertainty to the residual divided by N, i.e. the measurement
+         * is then N standard deviations from the fit.
+         */
+        CAP_N_SIGMA
+    }
+
+    private final Action action;
+    private final double nSigma;
+    private final boolean batch;
+    private final int maxIterations;
+    private int iterations;
+    private boolean limitLogged;
+    private final List<String[]> log;
+
+    /**
+     * Creates a new outlier policy.
+     * @param action what to do with discrepant measurements
+     * @param nSigma the number of standard deviations a discrepant measurement
+     * is allowed to be from the fit after its uncertainty is changed. Only
+     * used with {@link Action#CAP_N_SIGMA}.
+     * @param batch if <code>true</code> then all discrepant measurements are
+     * treated in one pass, before the fit is repeated. Otherwise only the most
+     * discrepant measurement is treated in each pass.
+     * @param maxIterations the maximum number of passes which may change
+     * uncertainties in a single fit (see {@link #beginFit() beginFit}). Values
+     * less than 1 mean there is no limit.
+     */
+    public outlierPolicy(Action action, double nSigma, boolean batch,
+            int maxIterations){
+        if(action == Action.CAP_N_SIGMA && !(nSigma >= 1.0d)){
+            throw new IllegalArgumentException("N must be at least 1.");
+        }
+        this.action = action;
+        this.nSigma = nSigma;
+        this.batch = batch;
+        this.maxIterations = maxIterations;
+        this.iterations = 0;
+        this.limitLogged = false;
+        this.log = new ArrayList<>();
+    }
+
+    /**
+     * Returns a policy which asks the user about the single most discrepant
+     * measurement in each pass, with no limit on the number of passes.
+     * This is the original GAMUT behaviour.
+     * @return a policy which asks the user about each discrepant measurement
+     */
+    public static outlierPolicy interactive(){
+        return new outlierPolicy(Action.ASK, 1.0d, false, 0);
+    }
+
+    /**
+     * Returns a policy which inflates the uncertainties of all discrepant
+     * measurements to their residuals in one pass, with no user interaction.
+     * @param maxIterations the maximum number of passes in a single fit
+     * @return a policy which inflates the uncertainties of all discrepant
+     * measurements to their residuals
+     */
+    public static outlierPolicy automatic(int maxIterations){
+        return new outlierPolicy(Action.INFLATE_TO_RESIDUAL, 1.0d, true, maxIterations);
+    }
+
+    /**
+     * Returns a new policy with the same settings as this one and no
+     * recorded decisions. Used to treat several fits at the same time.
+     * @return a new policy with the same settings as this one
+     */
+    outlierPolicy copy(){
+        return new outlierPolicy(action, nSigma, batch, maxIterations);
+    }
+
+    /**
+     * Appends the decisions recorded by another policy to this one.
+     * @param other the policy whose decisions are appended
+     */
+    void addDecisions(outlierPolicy other){
+        log.addAll(other.log);
+    }
+
+    /**
+     * Returns what is done to discrepant measurements.
+     * @return what is done to discrepant measurements
+     */
+    public Action getAction(){
+        return action;
+    }
+
+    /**
+     * Returns <code>true</code> if all discrepant measurements are treated in
+     * each pass.
+     * @return <code>true</code> if all discrepant measurements are treated in
+     * each pass
+     */
+    public boolean isBatch(){
+        return batch;
+    }
+
+    /**
+     * Resets the pass counter. Must be called before starting each loop of
+     * fitting and chi^2 analysis.
+     */
+    public void beginFit(){
+        iterations = 0;
+        limitLogged = false;
+    }
+
+    /**
+     * Returns <code>true</code> if another pass which changes uncertainties is
+     * allowed in the current fit. If not, this is recorded in the log (once).
+     * @param quantity the quantity being fitted ("Eg" or "Ig")
+     * @return <code>true</code> if another pass is allowed
+     */
+    boolean canIterate(String quantity){
+        if(maxIterations > 0 && iterations >= maxIterations){
+            if(!limitLogged){
+                log.add(new String[]{quantity, "", "", "", "", "", "",
+                    "Stopped after " + maxIterations + " iterations"});
+                limitLogged = true;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Counts a pass which changed at least one uncertainty.
+     */
+    void countIteration(){
+        iterations += 1;
+    }
+
+    /**
+     * Returns the number of standard deviations from the fit above which a
+     * measurement is treated as discrepant. This is the given default, unless 
+     * measurements are capped at a larger number of standard deviations, 
+     * since otherwise their uncertainties would be reduced.
+     * @param defaultThreshold the usual threshold for the quantity being fitted
+     * @return the number of standard deviations from the fit above which a
+     * measurement is treated as discrepant
+     */
+    double getThreshold(double defaultThreshold){
+        if(action == Action.CAP_N_SIGMA){
+            return Math.max(defaultThreshold, nSigma);
+        }
+        return defaultThreshold;
+    }
+
+    /**
+     * Returns the new (absolute) uncertainty for a measurement with the given
+     * residual, or a negative number if the user has to be asked.
+     * @param residual the difference between the measurement and the fit
+     * @return the new (absolute) uncertainty for a measurement with the given
+     * residual
+     */
+    double newUncertainty(double residual){
+        switch(action){
+            case INFLATE_TO_RESIDUAL:
+                return Math.abs(residual);
+            case CAP_N_SIGMA:
+                return Math.abs(residual)/nSigma;
+            default:
+                return -1.0d;
+        }
+    }
+
+    /**
+     * Records a decision made about a discrepant measurement.
+     * @param quantity the quantity being fitted ("Eg" or "Ig")
+     * @param g the discrepant gamma-ray
+     * @param oldUncert the uncertainty (as written in the data) before the
+     * decision
+     * @param chiSq the chi^2 of the measurement with respect to the fit
+     * @param newUncert the new absolute uncertainty, or a negative number if
+     * it was not changed
+     * @param decision description of who made the decision
+     */
+    void record(String quantity, gamma g, String oldUncert, double chiSq,
+            double newUncert, String decision){
+        level p = g.getParent();
+        String value = quantity.equals("Eg") ? g.getEg() : g.getIg();
+
+        log.add(new String[]{quantity, g.getSource(), g.getEg(),
+            p == null ? "" : p.getLvlRecord().getE() + " " + p.getLvlRecord().getJ(),
+            value + " " + oldUncert,
+            String.format("%1.2f", Math.sqrt(chiSq)),
+            newUncert > 0.0d ? String.format("%1.3f", newUncert) : "unchanged",
+            decision});
+    }
+
+    /**
+     * Returns the recorded decisions. Each element contains, in order, the
+     * quantity, data set, gamma-ray energy, initial level, original value and
+     * uncertainty, number of standard deviations from the fit, new uncertainty
+     * and decision.
+     * @return the recorded decisions
+     */
+    public List<String[]> getDecisions(){
+        return log;
+    }
+
+    /**
+     * Returns the recorded decisions formatted as a table for the report file.
+     * The List is empty if no decisions were made.
+     * @return the recorded decisions formatted as a table
+     */
+    public List<String> getReportLines(){
+        textTable result;
+        int i, j, linecount;
+
+        if(log.isEmpty()){
+            return new ArrayList<>();
+        }
+        result = new textTable();
+        linecount = 0;
+        result.setCell(linecount, 0, "OUTLIER DECISIONS");
+        result.addHrule(linecount);
+        linecount += 1;
+        String[] header = {"Quantity", "Data set", "Eg", "Init. Level",
+            "Original", "Sigmas", "New Uncert.", "Decision"};
+        for(j=0; j<header.length; j++){
+            result.setCell(linecount, j, header[j]);
+        }
+        linecount += 1;
+        for(i=0; i<log.size(); i++){
+            for(j=0; j<log.get(i).length; j++){
+                result.setCell(linecount, j, log.get(i)[j]);
+            }
+            linecount += 1;
+        }
+        result.addHrule(linecount);
+        return result.toStringList();
+    }
+}
@@ -0,0 +1,265 @@
+package jgamut;
+
+import Jama.Matrix;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class keeps the chi^2 of every intensity measurement with respect to
+ * the fit, w (I - beta_j Ibar_i)^2, in an indexed max-heap, so the most
+ * discrepant measurements can be found without recomputing every residual.
+ * After each refit only the measurements in rows whose Ibar changed, columns
+ * whose beta changed, or whose weight changed are rescored.
+ *
+ * Date Modified: 18/10/2026
+ *
+ * @author agent
+ */
+class residualHeap {
+
+    private final intensityObservations obs;
+    private int size;
+    private int[] heap; //entry at each heap position
+    private int[] pos; //heap position of each entry
+    private double[] key; //chi^2 of each entry
+    private double[] lastBeta, lastIbar; //fit used for the current keys
+    private boolean[] pending; //entries whose weight changed
+    private int[] pendingList;
+    private int pendingCount;
+    private int[] stamp; //entries rescored in the current update
+    private int updateCount;
+    private boolean valid;
+
+    /**
+     * Creates an empty heap for the given measurements. The chi^2 values are
+     * computed by the first call to {@link #update(Jama.Matrix, Jama.Matrix) update}.
+     * @param obs the intensity measurements
+     */
+    residualHeap(intensityObservations obs){
+        this.obs = obs;
+        this.heap = new int[0];
+        this.pos = new int[0];
+        this.key = new double[0];
+        this.pending = new boolean[0];
+        this.pendingList = new int[0];
+        this.stamp = new int[0];
+        this.lastBeta = new double[0];
+        this.lastIbar = new double[0];
+        this.valid = false;
+    }
+
+    /**
+     * Discards all chi^2 values, e.g. because the measurements were replaced.
+     */
+    void reset(){
+        valid = false;
+    }
+
+    /**
+     * Marks a measurement whose weight has changed.
+     * @param k the index of the measurement
+     */
+    void weightChanged(int k){
+        if(valid && !pending[k]){
+            pending[k] = true;
+            pendingList[pendingCount] = k;
+            pendingCount += 1;
+        }
+    }
+
+    /**
+     * Brings the chi^2 values up to date with the given fit.
+     * @param beta the fitted scale factors
+     * @param Ibar the fitted intensities
+     */
+    void update(Matrix beta, Matrix Ibar){
+        int nRows = obs.getRowDimension();
+        int nCols = obs.getColumnDimension();
+        int i, j, k, p, changed;
+
+        if(!valid || lastBeta.length != nCols || lastIbar.length != nRows){
+            rebuild(beta, Ibar);
+            return;
+        }
+        //if most measurements are affected it is faster to start again
+        changed = pendingCount;
+        for(j=0; j<nCols; j++){
+            if(beta.get(j, 0) != lastBeta[j]){
+                changed += obs.getColumnCount(j);
+            }
+        }
+        for(i=0; i<nRows; i++){
+            if(Ibar.get(i, 0) != lastIbar[i]){
+                changed += obs.rowEnd(i) - obs.rowStart(i);
+            }
+        }
+        if(2*changed > size){
+            rebuild(beta, Ibar);
+            return;
+        }
+        
+        updateCount += 1;
+        for(j=0; j<nCols; j++){
+            if(beta.get(j, 0) != lastBeta[j]){
+                lastBeta[j] = beta.get(j, 0);
+                for(p=0; p<obs.getColumnCount(j); p++){
+                    rescore(obs.getColumnEntry(j, p), beta, Ibar);
+                }
+            }
+        }
+        for(i=0; i<nRows; i++){
+            if(Ibar.get(i, 0) != lastIbar[i]){
+                lastIbar[i] = Ibar.get(i, 0);
+                for(k=obs.rowStart(i); k<obs.rowEnd(i); k++){
+                    rescore(k, beta, Ibar);
+                }
+            }
+        }
+        for(p=0; p<pendingCount; p++){
+            if(pending[pendingList[p]]){
+                rescore(pendingList[p], beta, Ibar);
+            }
+        }
+        pendingCount = 0;
+    }
+
+    //computes every chi^2 and orders the heap from scratch
+    private void rebuild(Matrix beta, Matrix Ibar){
+        int n = obs.getNumEntries();
+        int i, j, k;
+
+        if(key.length < n){
+            heap = new int[n];
+            pos = new int[n];
+            key = new double[n];
+            pending = new boolean[n];
+            pendingList = new int[n];
+            stamp = new int[n];
+        }
+        if(lastBeta.length != obs.getColumnDimension()){
+            lastBeta = new double[obs.getColumnDimension()];
+        }
+        if(lastIbar.length != obs.getRowDimension()){
+            lastIbar = new double[obs.getRowDimension()];
+        }
+        for(j=0; j<lastBeta.length; j++){
+            lastBeta[j] = beta.get(j, 0);
+        }
+        for(i=0; i<lastIbar.length; i++){
+            lastIbar[i] = Ibar.get(i, 0);
+        }
+        size = n;
+        for(k=0; k<n; k++){
+            key[k] = chiSq(k, beta, Ibar);
+            heap[k] = k;
+            pos[k] = k;
+        }
+        Arrays.fill(pending, 0, n, false);
+        pendingCount = 0;
+        Arrays.fill(stamp, 0, n, 0);
+        updateCount = 0;
+        for(i=n/2 - 1; i>=0; i--){
+            siftDown(i);
+        }
+        valid = true;
+    }
+
+    //recomputes the chi^2 of an entry, unless it was already done in this update
+    private void rescore(int k, Matrix beta, Matrix Ibar){
+        double old;
+
+        if(stamp[k] == updateCount && !pending[k]){
+            return;
+        }
+        stamp[k] = updateCount;
+        pending[k] = false;
+        old = key[k];
+        key[k] = chiSq(k, beta, Ibar);
+        if(key[k] > old){
+            siftUp(pos[k]);
+        }else if(key[k] < old){
+            siftDown(pos[k]);
+        }
+    }
+
+    private double chiSq(int k, Matrix beta, Matrix Ibar){
+        double r = obs.getValue(k) - beta.get(obs.getColumn(k), 0)*Ibar.get(obs.getRow(k), 0);
+        return obs.getWeight(k)*r*r;
+    }
+
+    private void siftUp(int p){
+        int k = heap[p];
+        int parent;
+
+        while(p > 0){
+            parent = (p - 1)/2;
+            if(key[heap[parent]] >= key[k]){
+                break;
+            }
+            heap[p] = heap[parent];
+            pos[heap[p]] = p;
+            p = parent;
+        }
+        heap[p] = k;
+        pos[k] = p;
+    }
+
+    private void siftDown(int p){
+        int k = heap[p];
+        int child;
+
+        while(2*p + 1 < size){
+            child = 2*p + 1;
+            if(child + 1 < size && key[heap[child + 1]] > key[heap[child]]){
+                child += 1;
+            }
+            if(key[heap[child]] <= key[k]){
+                break;
+            }
+            heap[p] = heap[child];
+            pos[heap[p]] = p;
+            p = child;
+        }
+        heap[p] = k;
+        pos[k] = p;
+    }
+
+    /**
+     * Returns the index of the measurement with the largest chi^2, or -1 if
+     * there are no measurements.
+     * @return the index of the measurement with the largest chi^2
+     */
+    int top(){
+        return size == 0 ? -1 : heap[0];
+    }
+
+    /**
+     * Returns the chi^2 of the given measurement for the last fit passed to
+     * {@link #update(Jama.Matrix, Jama.Matrix) update}.
+     * @param k the index of the measurement
+     * @return the chi^2 of the measurement
+     */
+    double getChiSq(int k){
+        return key[k];
+    }
+
+    /**
+     * Adds the indices of all measurements which are more than the given
+     * number of standard deviations from the fit to the given list. Only the
+     * part of the heap above the threshold is visited.
+     * @param threshold the number of standard deviations
+     * @param result the list to add the indices to (in no particular order)
+     */
+    void collectAbove(double threshold, List<Integer> result){
+        collectAbove(0, threshold, result);
+    }
+
+    private void collectAbove(int p, double threshold, List<Integer> result){
+        if(p >= size || !(Math.sqrt(key[heap[p]]) > threshold)){
+            return;
+        }
+        result.add(heap[p]);
+        collectAbove(2*p + 1, threshold, result);
+        collectAbove(2*p + 2, threshold, result);
+    }
+}
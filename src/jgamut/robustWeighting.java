@@ -0,0 +1,61 @@
+package jgamut;
+
+/**
+ * This enumeration defines the weight functions available for the 
+ * iteratively reweighted least squares (robust) level scheme fit, see
+ * {@link GAMUT_Algorithms#solveLevelSchemeSystemRobust(ENSDF_data.ENSDFDataset, Jama.Matrix, Jama.Matrix, Jama.Matrix, Jama.Matrix, Jama.Matrix, Jama.Matrix, jgamut.robustWeighting, Jama.Matrix)
+ * solveLevelSchemeSystemRobust}. The tuning constants are the usual ones 
+ * giving 95% efficiency for normally distributed residuals.
+ * 
+ * Date Modified: 18/10/2026
+ * 
+ * @author agent
+ */
+public enum robustWeighting {
+    /**
+     * Huber weights: measurements within c standard deviations of the fit
+     * keep their full weight, the weight of the others decreases as 1/|u|.
+     */
+    HUBER(1.345d),
+    /**
+     * Tukey biweight: the weight decreases smoothly to zero for measurements
+     * c or more standard deviations from the fit.
+     */
+    TUKEY(4.685d);
+    
+    private final double c;
+    
+    private robustWeighting(double c){
+        this.c = c;
+    }
+    
+    /**
+     * Returns the tuning constant of the weight function.
+     * @return the tuning constant of the weight function
+     */
+    public double getTuningConstant(){
+        return c;
+    }
+    
+    /**
+     * Returns the weight (between 0 and 1) for a measurement which differs 
+     * from the fit by u standard deviations.
+     * @param u the standardized residual
+     * @return the weight for the measurement
+     */
+    public double weight(double u){
+        double a = Math.abs(u);
+        double t;
+        
+        switch(this){
+            case HUBER:
+                return a <= c ? 1.0d : c/a;
+            default:
+                if(a >= c){
+                    return 0.0d;
+                }
+                t = 1.0d - (a/c)*(a/c);
+                return t*t;
+        }
+    }
+}
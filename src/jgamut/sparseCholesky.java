@@ -0,0 +1,391 @@
+package jgamut;
+
+import Jama.Matrix;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class implements a sparse Cholesky factorization of the normal
+ * matrix N = G^T W G arising in the GAMUT level scheme fit. Only the
+ * non-zero entries of the factor are stored, which for a level scheme is
+ * roughly the number of levels plus the number of gamma rays. Selected
+ * elements of the inverse (i.e. the covariance matrix) are obtained
+ * using Takahashi's recurrence, so the full dense inverse is never formed.
+ *
+ * Date Modified: 18/10/2026
+ *
+ * @author agent
+ */
+public class sparseCholesky {
+
+    private final int n; //dimension of N
+    private final Matrix G; //the matrix whose normal matrix is factorized
+    private final int[][] pattern; //non-zero columns of each row of G
+    private final int[] perm; //perm[k] = original index of the kth pivot
+    private final int[] iperm; //inverse of perm
+    private final int[][] colRows; //pattern of the permuted N (rows <= column)
+    private final double[][] colVals; //values of the permuted N
+    private final int[] parent; //elimination tree
+    private final int[] Lp; //column pointers of L
+    private final int[] Li; //row indices of L (diagonal first, then increasing)
+    private final double[] Lx; //values of L
+    private double[] Zx; //selected inverse on the pattern of L, computed lazily
+
+    /**
+     * Returns the indices of the non-zero elements of each row of G.
+     * @param G a JAMA Matrix
+     * @return the indices of the non-zero elements of each row of G
+     */
+    public static int[][] rowPatterns(Matrix G){
+        int nRows = G.getRowDimension();
+        int nCols = G.getColumnDimension();
+        int[][] result = new int[nRows][];
+        int[] buffer = new int[nCols];
+        int count;
+
+        for(int i=0; i<nRows; i++){
+            count = 0;
+            for(int j=0; j<nCols; j++){
+                if(G.get(i, j) != 0.0d){
+                    buffer[count] = j;
+                    count += 1;
+                }
+            }
+            result[i] = Arrays.copyOf(buffer, count);
+        }
+        return result;
+    }
+
+    /**
+     * Factorizes the normal matrix G^T W G, where W is the diagonal
+     * matrix with elements given by the column vector W.
+     * @param G the placement matrix
+     * @param W the column vector of weights
+     * @param pattern the indices of the non-zero elements of each row of G,
+     * as returned by {@link #rowPatterns(Jama.Matrix) rowPatterns}
+     * @throws ArithmeticException if G^T W G is not (numerically) positive
+     * definite
+     */
+    public sparseCholesky(Matrix G, Matrix W, int[][] pattern){
+        int i, j, k, len;
+        List<List<Integer>> adj;
+        int[] degree, colCounts, flag;
+
+        this.n = G.getColumnDimension();
+        this.G = G;
+        this.pattern = pattern;
+
+        //structure of N (full, both triangles)
+        adj = new ArrayList<>(n);
+        for(j=0; j<n; j++){
+            adj.add(new ArrayList<>());
+        }
+        List<List<int[]>> rowsOfColumn = new ArrayList<>(n);
+        for(j=0; j<n; j++){
+            rowsOfColumn.add(new ArrayList<>());
+        }
+        for(int[] row : pattern){
+            for(int c : row){
+                rowsOfColumn.get(c).add(row);
+            }
+        }
+        flag = new int[n];
+        Arrays.fill(flag, -1);
+        for(j=0; j<n; j++){
+            for(int[] row : rowsOfColumn.get(j)){
+                for(int c : row){
+                    if(flag[c] != j){
+                        flag[c] = j;
+                        adj.get(j).add(c);
+                    }
+                }
+            }
+        }
+
+        //order pivots by increasing degree; the ground state, which every
+        //cascade ends in, and any energy shift columns are eliminated last
+        degree = new int[n];
+        for(j=0; j<n; j++){
+            degree[j] = adj.get(j).size();
+        }
+        Integer[] order = new Integer[n];
+        for(j=0; j<n; j++){
+            order[j] = j;
+        }
+        Arrays.sort(order, (u, v) -> degree[u] != degree[v] ?
+                Integer.compare(degree[u], degree[v]) : Integer.compare(u, v));
+        perm = new int[n];
+        iperm = new int[n];
+        for(k=0; k<n; k++){
+            perm[k] = order[k];
+            iperm[order[k]] = k;
+        }
+
+        //pattern of the permuted N, stored by column (rows <= column)
+        colRows = new int[n][];
+        colVals = new double[n][];
+        for(k=0; k<n; k++){
+            List<Integer> nbrs = adj.get(perm[k]);
+            int[] rows = new int[nbrs.size()];
+            len = 0;
+            for(int c : nbrs){
+                if(iperm[c] <= k){
+                    rows[len] = iperm[c];
+                    len += 1;
+                }
+            }
+            colRows[k] = Arrays.copyOf(rows, len);
+            colVals[k] = new double[len];
+        }
+
+        //symbolic factorization: elimination tree and column counts
+        parent = new int[n];
+        colCounts = new int[n];
+        Arrays.fill(flag, -1);
+        for(k=0; k<n; k++){
+            parent[k] = -1;
+            colCounts[k] = 1; //diagonal
+            flag[k] = k;
+            for(int r : colRows[k]){
+                //walk up the elimination tree from r to k
+                for(i=r; flag[i] != k; i=parent[i]){
+                    if(parent[i] == -1){
+                        parent[i] = k;
+                    }
+                    colCounts[i] += 1; //L(k,i) is non-zero
+                    flag[i] = k;
+                }
+            }
+        }
+        Lp = new int[n + 1];
+        for(k=0; k<n; k++){
+            Lp[k+1] = Lp[k] + colCounts[k];
+        }
+        Li = new int[Lp[n]];
+        Lx = new double[Lp[n]];
+        
+        factorize(W);
+    }
+    
+    /**
+     * Factorizes G^T W G again with new weights. The ordering and the 
+     * structure of the factor do not depend on the weights, so they are
+     * reused from the first factorization.
+     * @param W the column vector of weights
+     * @throws ArithmeticException if G^T W G is not (numerically) positive
+     * definite
+     */
+    public final void factorize(Matrix W){
+        int i, k, a, b, p, top, len;
+        int[] flag, stack, cursor;
+        double[] x;
+        double d, lki, wi;
+        
+        Zx = null;
+        
+        //numeric values of the permuted N
+        for(k=0; k<n; k++){
+            Arrays.fill(colVals[k], 0.0d);
+        }
+        for(i=0; i<pattern.length; i++){
+            wi = W.get(i, 0);
+            for(int ca : pattern[i]){
+                a = iperm[ca];
+                for(int cb : pattern[i]){
+                    b = iperm[cb];
+                    if(a > b){
+                        continue;
+                    }
+                    p = indexOf(colRows[b], a);
+                    colVals[b][p] += wi*G.get(i, ca)*G.get(i, cb);
+                }
+            }
+        }
+
+        //numeric factorization (up-looking, one row of L at a time)
+        flag = new int[n];
+        stack = new int[n];
+        cursor = new int[n];
+        x = new double[n];
+        Arrays.fill(flag, -1);
+        for(k=0; k<n; k++){
+            cursor[k] = Lp[k] + 1;
+            Li[Lp[k]] = k;
+
+            //row pattern of L in topological order
+            top = n;
+            flag[k] = k;
+            for(int r : colRows[k]){
+                len = 0;
+                for(i=r; flag[i] != k; i=parent[i]){
+                    stack[len] = i;
+                    len += 1;
+                    flag[i] = k;
+                }
+                while(len > 0){
+                    top -= 1;
+                    len -= 1;
+                    stack[top] = stack[len];
+                }
+            }
+
+            for(p=0; p<colRows[k].length; p++){
+                x[colRows[k][p]] = colVals[k][p];
+            }
+            d = x[k];
+            x[k] = 0.0d;
+            for(; top<n; top++){
+                i = stack[top];
+                lki = x[i]/Lx[Lp[i]];
+                x[i] = 0.0d;
+                for(p=Lp[i]+1; p<cursor[i]; p++){
+                    x[Li[p]] -= Lx[p]*lki;
+                }
+                d -= lki*lki;
+                Li[cursor[i]] = k;
+                Lx[cursor[i]] = lki;
+                cursor[i] += 1;
+            }
+            if(!(d > 1e-12*diagonal(colRows[k], colVals[k], k))){
+                throw new ArithmeticException("Matrix is not positive definite.");
+            }
+            Lx[Lp[k]] = Math.sqrt(d);
+        }
+    }
+
+    //returns the position of r in the array rows, which is short
+    private static int indexOf(int[] rows, int r){
+        for(int p=0; p<rows.length; p++){
+            if(rows[p] == r){
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    //returns the diagonal element of a (permuted) column of N
+    private static double diagonal(int[] rows, double[] vals, int k){
+        int p = indexOf(rows, k);
+        return p < 0 ? 0.0d : vals[p];
+    }
+
+    /**
+     * Returns the dimension of the factorized matrix.
+     * @return the dimension of the factorized matrix
+     */
+    public int getDimension(){
+        return n;
+    }
+
+    /**
+     * Returns the number of non-zero elements stored in the factor. This is
+     * also the number of elements of the covariance matrix that are computed
+     * by the selected inversion.
+     * @return the number of non-zero elements stored in the factor
+     */
+    public int getNonzeroCount(){
+        return Lp[n];
+    }
+
+    /**
+     * Solves N x = b, where N is the factorized matrix.
+     * @param b the right hand side (not modified)
+     * @return the solution x
+     */
+    public double[] solve(double[] b){
+        double[] y = new double[n];
+        double[] result = new double[n];
+        int j, p;
+
+        for(j=0; j<n; j++){
+            y[j] = b[perm[j]];
+        }
+        for(j=0; j<n; j++){ //L y = b
+            y[j] /= Lx[Lp[j]];
+            for(p=Lp[j]+1; p<Lp[j+1]; p++){
+                y[Li[p]] -= Lx[p]*y[j];
+            }
+        }
+        for(j=n-1; j>=0; j--){ //L^T x = y
+            for(p=Lp[j]+1; p<Lp[j+1]; p++){
+                y[j] -= Lx[p]*y[Li[p]];
+            }
+            y[j] /= Lx[Lp[j]];
+        }
+        for(j=0; j<n; j++){
+            result[perm[j]] = y[j];
+        }
+        return result;
+    }
+
+    //position of element (i, j) (permuted indices, i >= j) of the
+    //pattern of L, or -1 if it is not in the pattern
+    private int position(int i, int j){
+        int p = Arrays.binarySearch(Li, Lp[j], Lp[j+1], i);
+        return p < 0 ? -1 : p;
+    }
+
+    //Takahashi recurrence for the inverse of N on the pattern of L
+    private void selectedInverse(){
+        int i, j, p, q, r;
+        double s, ljj;
+
+        Zx = new double[Lx.length];
+        for(j=n-1; j>=0; j--){
+            ljj = Lx[Lp[j]];
+            //off-diagonal elements of column j, every Z(k,i) needed here is
+            //guaranteed to be in the pattern of L and already computed
+            for(p=Lp[j]+1; p<Lp[j+1]; p++){
+                i = Li[p];
+                s = 0.0d;
+                for(q=Lp[j]+1; q<Lp[j+1]; q++){
+                    r = Li[q];
+                    s += Lx[q]*Zx[r >= i ? position(r, i) : position(i, r)];
+                }
+                Zx[p] = -s/ljj;
+            }
+            s = 0.0d;
+            for(p=Lp[j]+1; p<Lp[j+1]; p++){
+                s += Lx[p]*Zx[p];
+            }
+            Zx[Lp[j]] = 1.0d/(ljj*ljj) - s/ljj;
+        }
+    }
+
+    /**
+     * Returns the (i, j) element of the inverse of the factorized matrix.
+     * Elements corresponding to non-zero elements of N (which includes the
+     * diagonal and every parent/final level pair) are taken from the
+     * selected inverse; any other element is computed with a pair of
+     * triangular solves.
+     * @param i the row index
+     * @param j the column index
+     * @return the (i, j) element of the inverse of the factorized matrix
+     */
+    public double covariance(int i, int j){
+        int a = iperm[i];
+        int b = iperm[j];
+        int p;
+
+        if(Zx == null){
+            selectedInverse();
+        }
+        p = a >= b ? position(a, b) : position(b, a);
+        if(p >= 0){
+            return Zx[p];
+        }
+        double[] e = new double[n];
+        e[j] = 1.0d;
+        return solve(e)[i];
+    }
+
+    /**
+     * Returns the ith diagonal element of the inverse of the factorized matrix.
+     * @param i the index of the diagonal element
+     * @return the ith diagonal element of the inverse of the factorized matrix
+     */
+    public double variance(int i){
+        return covariance(i, i);
+    }
+}
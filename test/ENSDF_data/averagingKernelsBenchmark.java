@@ -0,0 +1,246 @@
+package ENSDF_data;
+
+import averagingAlgorithms.averagingMethods;
+import averagingAlgorithms.averagingReport;
+import ensdf_datapoint.dataPt;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import text_io.textFileIO;
+
+/**
+ * This class checks that the averaging kernels (see {@link averagingKernels})
+ * give the results of the averaging library, and compares their speed. The
+ * weighted average, NRM and unweighted average of the energies and
+ * intensities of each group of gammas of the example files, and of random
+ * sets of measurements (with symmetric and asymmetric uncertainties and
+ * occasional outliers), are taken both with
+ * <code>averagingMethods.weightedAverage</code>, <code>nrm</code> and
+ * <code>unweightedAverage</code> and with the kernels. The values,
+ * uncertainties and reduced chi^2 must agree to {@link #TOLERANCE}, and the
+ * averages must be the same when printed in ENSDF format.
+ *
+ * Each method is then timed on random sets of a few sizes: the library on
+ * arrays of <code>dataPt</code>, as it was called before, and the kernels on
+ * the columns of all the sets, as they are called by {@link averagingBatch}.
+ * The best of several rounds is reported, after a few rounds to warm up the
+ * JIT. The program exits with status 1 if any check fails.
+ *
+ * Date Modified: 18/10/2026
+ *
+ * @author agent
+ */
+public class averagingKernelsBenchmark {
+
+    /**
+     * The largest allowed difference between the library and the kernels,
+     * relative to the largest value or uncertainty of the average (or to the
+     * reduced chi^2).
+     */
+    public static final double TOLERANCE = 1e-9;
+    /**
+     * The number of random sets checked.
+     */
+    public static final int CHECK_SETS = 1000;
+    /**
+     * The number of random sets of each size timed.
+     */
+    public static final int TIMED_SETS = 100;
+    /**
+     * The sizes of the random sets timed.
+     */
+    public static final int[] TIMED_SIZES = {3, 10, 20};
+    /**
+     * The number of rounds used to warm up, and the number timed.
+     */
+    public static final int WARMUP_ROUNDS = 2, TIMED_ROUNDS = 3;
+
+    private static final String[] DEFAULT_FILES = {
+        "exampleFiles/simpleExample.intermediate.txt",
+        "exampleFiles/57CoDecayData.intermediate.txt"
+    };
+
+    private static int failures = 0;
+    private static int compared = 0;
+    private static double maxDiff = 0.0d;
+
+    public static void main(String[] args) throws Exception {
+        String[] files = args.length > 0 ? args : DEFAULT_FILES;
+        Random rng = new Random(20261018L);
+        List<String> fileData;
+        List<gammaEquivalenceClass> groups;
+        ENSDFDataset data;
+        averagingBatch batch;
+        double[][] set;
+        int k, n;
+
+        //the library NRM is compared at the confidence level of the kernels
+        averagingMethods.critChiSqConf = 0.99d;
+
+        for(String file : files){
+            fileData = textFileIO.read(file);
+            data = ENSDFDataset.readDatasetTable(fileData, true,
+                    String.join("", fileData).contains("\t"));
+            groups = new ArrayList<>();
+            for(level l : data.getLevels()){
+                groups.addAll(ENSDFDataset.groupByGamma(l));
+            }
+            batch = new averagingBatch(groups);
+            for(k=0; k<batch.getNumRanges(); k++){
+                n = batch.getTo(k) - batch.getFrom(k);
+                if(n < 2){
+                    continue;
+                }
+                set = new double[3][n];
+                System.arraycopy(batch.getValues(), batch.getFrom(k), set[0], 0, n);
+                System.arraycopy(batch.getUpper(), batch.getFrom(k), set[1], 0, n);
+                System.arraycopy(batch.getLower(), batch.getFrom(k), set[2], 0, n);
+                if(averagingKernels.isRegular(set[0], set[1], set[2])){
+                    check(set);
+                }
+            }
+        }
+        for(k=0; k<CHECK_SETS; k++){
+            check(randomSet(rng, 2 + rng.nextInt(14)));
+        }
+        System.out.println("Compared " + compared + " averages, largest relative difference " +
+                maxDiff + ".");
+
+        for(int size : TIMED_SIZES){
+            time(rng, size);
+        }
+        if(failures > 0){
+            System.out.println(failures + " average(s) differ.");
+            System.exit(1);
+        }
+        System.out.println("The kernels agree with the library.");
+    }
+
+    //compares the library and the kernels on one set of measurements
+    private static void check(double[][] set){
+        double[] result = new double[averagingKernels.RESULT_LENGTH];
+        averagingReport rpt;
+        dataPt lib;
+        double scale, diff;
+
+        for(averagingKernels.Method m : averagingKernels.Method.values()){
+            rpt = new averagingReport();
+            lib = library(m, dataPts(set), rpt);
+            averagingKernels.average(m, set[0], set[1], set[2], result);
+            scale = Math.max(Math.abs(lib.getValue()), Math.max(lib.getUpper(), lib.getLower()));
+            diff = Math.abs(lib.getValue() - result[averagingKernels.VALUE]);
+            diff = Math.max(diff, Math.abs(lib.getUpper() - result[averagingKernels.UPPER]));
+            diff = Math.max(diff, Math.abs(lib.getLower() - result[averagingKernels.LOWER]));
+            diff = diff/scale;
+            if(m != averagingKernels.Method.UNWEIGHTED){
+                diff = Math.max(diff, Math.abs(rpt.reducedChiSq - result[averagingKernels.REDUCED_CHISQ])/
+                        Math.max(rpt.reducedChiSq, 1.0d));
+            }
+            compared += 1;
+            maxDiff = Math.max(maxDiff, diff);
+            if(diff > TOLERANCE || !print(lib.getValue(), lib.getUpper()).equals(
+                    print(result[averagingKernels.VALUE], result[averagingKernels.UPPER]))){
+                failures += 1;
+                System.out.println("  FAILED " + m + ": library " + lib.getValue() + " +" +
+                        lib.getUpper() + " -" + lib.getLower() + ", kernel " +
+                        result[averagingKernels.VALUE] + " +" + result[averagingKernels.UPPER] +
+                        " -" + result[averagingKernels.LOWER]);
+            }
+        }
+    }
+
+    //times each method with the library and the kernels on random sets of
+    //the given size
+    private static void time(Random rng, int size){
+        double[][][] sets = new double[TIMED_SETS][][];
+        double[] value = new double[TIMED_SETS*size];
+        double[] upper = new double[TIMED_SETS*size];
+        double[] lower = new double[TIMED_SETS*size];
+        double[] result = new double[averagingKernels.RESULT_LENGTH];
+        dataPt[][] points = new dataPt[TIMED_SETS][];
+        long libTime, kernelTime, t;
+        int i, r;
+
+        for(i=0; i<TIMED_SETS; i++){
+            sets[i] = randomSet(rng, size);
+            System.arraycopy(sets[i][0], 0, value, i*size, size);
+            System.arraycopy(sets[i][1], 0, upper, i*size, size);
+            System.arraycopy(sets[i][2], 0, lower, i*size, size);
+        }
+        System.out.println("Sets of " + size + " measurements:");
+        for(averagingKernels.Method m : averagingKernels.Method.values()){
+            libTime = Long.MAX_VALUE;
+            kernelTime = Long.MAX_VALUE;
+            for(r=0; r<WARMUP_ROUNDS + TIMED_ROUNDS; r++){
+                for(i=0; i<TIMED_SETS; i++){
+                    points[i] = dataPts(sets[i]);
+                }
+                t = System.nanoTime();
+                for(i=0; i<TIMED_SETS; i++){
+                    library(m, points[i], new averagingReport());
+                }
+                t = System.nanoTime() - t;
+                if(r >= WARMUP_ROUNDS){
+                    libTime = Math.min(libTime, t);
+                }
+                t = System.nanoTime();
+                for(i=0; i<TIMED_SETS; i++){
+                    averagingKernels.average(m, value, upper, lower, i*size, (i+1)*size, result);
+                }
+                t = System.nanoTime() - t;
+                if(r >= WARMUP_ROUNDS){
+                    kernelTime = Math.min(kernelTime, t);
+                }
+            }
+            System.out.println(String.format("  %-10s library %10.2f us, kernels %8.2f us per average, speed up %.0f",
+                    m, libTime/1e3/TIMED_SETS, kernelTime/1e3/TIMED_SETS, (double)libTime/kernelTime));
+        }
+    }
+
+    private static dataPt library(averagingKernels.Method m, dataPt[] data,
+            averagingReport rpt){
+        switch(m){
+            case WEIGHTED:
+                return averagingMethods.weightedAverage(data, rpt);
+            case NRM:
+                return averagingMethods.nrm(data, rpt);
+            default:
+                return averagingMethods.unweightedAverage(data, rpt);
+        }
+    }
+
+    private static dataPt[] dataPts(double[][] set){
+        dataPt[] result = new dataPt[set[0].length];
+        int i;
+
+        for(i=0; i<result.length; i++){
+            result[i] = new dataPt(set[0][i], set[1][i], set[2][i]);
+        }
+        return result;
+    }
+
+    private static String print(double value, double uncert){
+        return dataPt.ENSDFprint(String.valueOf(value), String.valueOf(uncert), false);
+    }
+
+    //the values, upper and lower uncertainties of n random measurements of
+    //the same quantity
+    private static double[][] randomSet(Random rng, int n){
+        double[][] result = new double[3][n];
+        boolean asymmetric = rng.nextBoolean();
+        double scale = Math.pow(10, rng.nextInt(5) - 1);
+        double base = 2000.0d*rng.nextDouble();
+        double spread = 5.0d*rng.nextDouble();
+        int i;
+
+        for(i=0; i<n; i++){
+            result[1][i] = scale*(0.1d + rng.nextDouble());
+            result[2][i] = asymmetric ? scale*(0.1d + rng.nextDouble()) : result[1][i];
+            result[0][i] = base + spread*scale*rng.nextGaussian()*(rng.nextInt(6) == 0 ? 10 : 1);
+            if(i > 0 && rng.nextInt(8) == 0){
+                result[0][i] = result[0][i-1]; //equal values
+            }
+        }
+        return result;
+    }
+}
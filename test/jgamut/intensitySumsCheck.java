@@ -0,0 +1,233 @@
+package jgamut;
+
+import ENSDF_data.ENSDFDataset;
+import Jama.Matrix;
+import java.util.List;
+import java.util.Random;
+import text_io.textFileIO;
+
+/**
+ * This class checks the cached sums used by the golden section search for
+ * the intensity multipliers (see {@link GAMUT_Algorithms.intensitySums}) and
+ * measures the speed up over the original search, which evaluated the full
+ * chi^2 of the intensity fit for every trial multiplier.
+ *
+ * For the intensities of the example files and of two larger random problems
+ * (with 20 and 40 data sets), the closed form chi^2 of the rows depending on
+ * each multiplier is checked to change with the multiplier exactly as the
+ * full chi^2 does (they differ by the constant contribution of the other
+ * rows). The multipliers found by the original search and by the search
+ * using the cached sums are then compared, and both are timed. The full
+ * search of the 40 data set problem takes about a minute, so it is timed
+ * only once. The program exits with status 1 if any check fails.
+ *
+ * Date Modified: 18/10/2026
+ *
+ * @author agent
+ */
+public class intensitySumsCheck {
+
+    /**
+     * The largest allowed difference between the changes of the closed form
+     * and full chi^2, relative to the full chi^2.
+     */
+    public static final double CHISQ_TOLERANCE = 1e-9;
+    /**
+     * The largest allowed difference between the multipliers found by the
+     * two searches, the tolerance of the golden section search.
+     */
+    public static final double BETA_TOLERANCE = 1e-5;
+    /**
+     * The number of times each solution is repeated when it is timed.
+     */
+    public static final int REPEATS = 5;
+    /**
+     * The time in nanoseconds above which a single run of the full chi^2
+     * search is timed only once.
+     */
+    public static final long LONG_RUN = 1000000000L;
+
+    private static final String[] DEFAULT_FILES = {
+        "exampleFiles/simpleExample.intermediate.txt",
+        "exampleFiles/57CoDecayData.intermediate.txt"
+    };
+
+    private static int failures = 0;
+
+    public static void main(String[] args) throws Exception {
+        String[] files = args.length > 0 ? args : DEFAULT_FILES;
+        List<String> fileData;
+        ENSDFDataset data;
+
+        for(String file : files){
+            fileData = textFileIO.read(file);
+            data = ENSDFDataset.readDatasetTable(fileData, true,
+                    String.join("", fileData).contains("\t"));
+            data.removeGammasWithBadUncert();
+            data.renormalizeGammaRays(true);
+            check(file, GAMUT_Algorithms.setupIntensityObservations(data, 0.2d));
+        }
+        check("random 2000 x 20", randomObservations(2000, 20, 0.3d, 12345L));
+        check("random 1000 x 40", randomObservations(1000, 40, 0.3d, 54321L));
+        if(failures > 0){
+            System.out.println(failures + " check(s) failed.");
+            System.exit(1);
+        }
+        System.out.println("All checks passed.");
+    }
+
+    private static void check(String name, intensityObservations obs){
+        GAMUT_Algorithms.intensitySums sums = new GAMUT_Algorithms.intensitySums(obs);
+        Matrix I = new Matrix(obs.getRowDimension(), obs.getColumnDimension());
+        Matrix W = new Matrix(obs.getRowDimension(), obs.getColumnDimension());
+        Matrix beta, trial, oldBeta, newBeta;
+        double full0, closed0, full, closed, diff, maxDiff, x, x0;
+        long oldTime, newTime, t;
+        int i, j, r;
+
+        System.out.println(name + ": " + obs.getRowDimension() + " gammas, " +
+                obs.getColumnDimension() + " data sets, " + obs.getNumEntries() +
+                " measurements");
+        if(obs.getColumnDimension() < 2){
+            System.out.println("  only one data set, nothing to check");
+            return;
+        }
+        obs.toMatrices(I, W);
+
+        //closed form against full chi^2, at the multipliers of the normalized
+        //solution (so that they are not all 1)
+        beta = GAMUT_Algorithms.intensitySolve(obs, true, intensitySolver.reference());
+        maxDiff = 0.0d;
+        for(j=1; j<obs.getColumnDimension(); j++){
+            sums.beginColumn(j, beta);
+            x0 = beta.get(j, 0);
+            trial = beta.copy();
+            full0 = fullChiSq(I, W, trial, j, x0);
+            closed0 = sums.columnChiSq(j, x0);
+            for(r=0; r<=10; r++){
+                x = Math.max(x0 - 0.9d, 0.00001d) + 0.18d*r;
+                full = fullChiSq(I, W, trial, j, x);
+                closed = sums.columnChiSq(j, x);
+                diff = Math.abs((closed - closed0) - (full - full0))/Math.max(full0, 1.0d);
+                maxDiff = Math.max(maxDiff, diff);
+            }
+        }
+        report("closed form chi^2", maxDiff, CHISQ_TOLERANCE);
+
+        //the original search against the search using the cached sums
+        oldBeta = null;
+        newBeta = null;
+        oldTime = Long.MAX_VALUE;
+        newTime = Long.MAX_VALUE;
+        for(i=0; i<REPEATS; i++){
+            if(i == 0 || oldTime <= LONG_RUN){
+                t = System.nanoTime();
+                oldBeta = fullSearchSolve(I, W);
+                oldTime = Math.min(oldTime, System.nanoTime() - t);
+            }
+            t = System.nanoTime();
+            newBeta = GAMUT_Algorithms.intensitySolve(obs, false, intensitySolver.reference());
+            newTime = Math.min(newTime, System.nanoTime() - t);
+        }
+        maxDiff = 0.0d;
+        for(j=0; j<oldBeta.getRowDimension(); j++){
+            maxDiff = Math.max(maxDiff, Math.abs(oldBeta.get(j, 0) - newBeta.get(j, 0)));
+        }
+        report("multipliers", maxDiff, BETA_TOLERANCE);
+        System.out.println(String.format("  full chi^2 search %.3f ms, cached sums %.3f ms, speed up %.1f",
+                oldTime/1e6, newTime/1e6, (double)oldTime/newTime));
+    }
+
+    private static void report(String name, double diff, double tolerance){
+        if(diff > tolerance){
+            failures += 1;
+            System.out.println("  FAILED " + name + ": difference " + diff);
+        }else{
+            System.out.println("  " + name + ": difference " + diff);
+        }
+    }
+
+    //the iteration for the multipliers without normalization as it was
+    //before the sums were cached: every trial multiplier of the golden
+    //section search evaluates the full chi^2
+    private static Matrix fullSearchSolve(Matrix I, Matrix W){
+        Matrix beta = new Matrix(I.getColumnDimension(), 1, 1.0d);
+        Matrix oldBeta;
+        double change;
+        int j;
+
+        do{
+            oldBeta = beta.copy();
+            for(j=1; j<beta.getRowDimension(); j++){
+                final double a = Math.max(beta.get(j, 0) - 0.9, 0.00001d);
+                final double b = beta.get(j, 0) + 0.9;
+                final int j_final = j;
+                final Matrix beta_final = beta;
+                beta.set(j, 0, GAMUT_Algorithms.goldenSearch(x -> {
+                    return fullChiSq(I, W, beta_final, j_final, x);
+                }, a, b, 1e-5));
+            }
+            change = beta.minus(oldBeta).normF() / oldBeta.normF();
+        }while(change > 1e-4);
+        return beta;
+    }
+
+    //the total chi^2 of the intensity fit after setting beta_j = x, evaluated
+    //on the dense matrices as in the original code
+    private static double fullChiSq(Matrix I, Matrix W, Matrix beta, int j, double x){
+        double[] Ibar = new double[I.getRowDimension()];
+        double sum_num, sum_denom, sum, r;
+        int i, k;
+
+        beta.set(j, 0, x);
+        for(i=0; i<I.getRowDimension(); i++){
+            sum_num = 0.0d;
+            sum_denom = 0.0d;
+            for(k=0; k<beta.getRowDimension(); k++){
+                if(I.get(i, k) > 0.0d){
+                    sum_num += W.get(i, k)*I.get(i, k)*beta.get(k, 0);
+                    sum_denom += W.get(i, k)*beta.get(k, 0)*beta.get(k, 0);
+                }
+            }
+            Ibar[i] = sum_num <= 0.0d ? -1.0d : sum_num/sum_denom;
+        }
+        sum = 0.0d;
+        for(i=0; i<I.getRowDimension(); i++){
+            for(k=0; k<I.getColumnDimension(); k++){
+                if(I.get(i, k) > 0.0d){
+                    r = I.get(i, k) - beta.get(k, 0)*Ibar[i];
+                    sum += W.get(i, k)*r*r;
+                }
+            }
+        }
+        return sum;
+    }
+
+    //a problem with the given number of gammas and data sets, where each data
+    //set measured each gamma with the given probability. The data sets have
+    //scales between 0.5 and 1.5 and the measurements uncertainties of 5%.
+    private static intensityObservations randomObservations(int nRows, int nCols,
+            double density, long seed){
+        Random rng = new Random(seed);
+        Matrix I = new Matrix(nRows, nCols);
+        Matrix W = new Matrix(nRows, nCols);
+        double[] scale = new double[nCols];
+        double truth, value;
+        int i, j;
+
+        for(j=0; j<nCols; j++){
+            scale[j] = 0.5d + rng.nextDouble();
+        }
+        for(i=0; i<nRows; i++){
+            truth = 1.0d + 99.0d*rng.nextDouble();
+            for(j=0; j<nCols; j++){
+                if(j == 0 || rng.nextDouble() < density){
+                    value = scale[j]*truth*(1.0d + 0.05d*rng.nextGaussian());
+                    I.set(i, j, Math.max(value, 1e-3));
+                    W.set(i, j, 1.0d/Math.pow(0.05d*value, 2));
+                }
+            }
+        }
+        return intensityObservations.fromMatrices(I, W);
+    }
+}
@@ -0,0 +1,140 @@
+package jgamut;
+
+import ENSDF_data.ENSDFDataset;
+import Jama.Matrix;
+import java.util.List;
+import text_io.textFileIO;
+
+/**
+ * This class checks that the linear algebra backends (see
+ * {@link linearAlgebraBackend}) give the same level scheme fit. For each
+ * intermediate file given on the command line (the files in exampleFiles by
+ * default), with and without energy shifts, the normal matrix G^T W G, its
+ * pseudoinverse (the variance matrix), the solution of the normal equations
+ * and the covariances of the parent and final levels of each gamma are
+ * computed with both the JAMA and the Apache Commons Math backend, and the
+ * results are compared. The program exits with status 1 if any of them
+ * differ by more than {@link #TOLERANCE} relative to the largest element.
+ *
+ * Date Modified: 18/10/2026
+ *
+ * @author agent
+ */
+public class linearAlgebraBackendCheck {
+
+    /**
+     * The largest allowed difference between the backends, relative to the
+     * largest element of the quantity compared.
+     */
+    public static final double TOLERANCE = 1e-9;
+
+    private static final String[] DEFAULT_FILES = {
+        "exampleFiles/simpleExample.intermediate.txt",
+        "exampleFiles/57CoDecayData.intermediate.txt"
+    };
+
+    private static int failures = 0;
+
+    public static void main(String[] args) throws Exception {
+        linearAlgebraBackend[] backends = {new jamaBackend(), new commonsMathBackend()};
+        String[] files = args.length > 0 ? args : DEFAULT_FILES;
+        List<String> fileData;
+        ENSDFDataset data;
+        Matrix G, E, W, WE;
+        Matrix[] N, V, x, cov;
+        int[] rank;
+        int b, n;
+
+        for(String file : files){
+            fileData = textFileIO.read(file);
+            for(boolean useShifts : new boolean[]{false, true}){
+                data = ENSDFDataset.readDatasetTable(fileData, true,
+                        String.join("", fileData).contains("\t"));
+                data.removeGammasWithBadUncert();
+                n = data.getNumNonzeroGammas() - data.getNumAdoptedGammas() +
+                        data.getNumZeroLevels();
+                E = new Matrix(n, 1);
+                W = new Matrix(n, 1);
+                G = GAMUT_Algorithms.createPlacementMatrix(data, E, W, 1.0d, useShifts);
+                WE = E.arrayTimes(W);
+
+                N = new Matrix[backends.length];
+                V = new Matrix[backends.length];
+                x = new Matrix[backends.length];
+                cov = new Matrix[backends.length];
+                rank = new int[1];
+                for(b=0; b<backends.length; b++){
+                    N[b] = backends[b].weightedNormalMatrix(G, W);
+                    V[b] = backends[b].pseudoinverse(N[b], rank);
+                    x[b] = backends[b].times(V[b], backends[b].transposeTimes(G, WE));
+                    cov[b] = selectedCovariances(G, V[b]);
+                }
+                System.out.println(file + (useShifts ? " (with shifts)" : "") +
+                        ": " + G.getRowDimension() + " x " + G.getColumnDimension() +
+                        ", rank " + rank[0]);
+                for(b=1; b<backends.length; b++){
+                    compare("G^T W G", backends[0], backends[b], N[0], N[b]);
+                    compare("(G^T W G)^+", backends[0], backends[b], V[0], V[b]);
+                    compare("solution", backends[0], backends[b], x[0], x[b]);
+                    compare("covariances", backends[0], backends[b], cov[0], cov[b]);
+                }
+            }
+        }
+        if(failures > 0){
+            System.out.println(failures + " comparison(s) failed.");
+            System.exit(1);
+        }
+        System.out.println("All backends agree.");
+    }
+
+    //the variances of the levels of each row of G and their covariance
+    private static Matrix selectedCovariances(Matrix G, Matrix V){
+        Matrix result = new Matrix(G.getRowDimension(), 3);
+        int i, j, p, f;
+
+        for(i=0; i<G.getRowDimension(); i++){
+            p = -1;
+            f = -1;
+            for(j=0; j<G.getColumnDimension(); j++){
+                if(G.get(i, j) > 0.0d && p < 0){
+                    p = j;
+                }else if(G.get(i, j) < 0.0d && f < 0){
+                    f = j;
+                }
+            }
+            if(p >= 0){
+                result.set(i, 0, V.get(p, p));
+            }
+            if(f >= 0){
+                result.set(i, 1, V.get(f, f));
+            }
+            if(p >= 0 && f >= 0){
+                result.set(i, 2, V.get(p, f));
+            }
+        }
+        return result;
+    }
+
+    private static void compare(String name, linearAlgebraBackend a,
+            linearAlgebraBackend b, Matrix A, Matrix B){
+        double scale, diff;
+        int i, j;
+
+        scale = 0.0d;
+        diff = 0.0d;
+        for(i=0; i<A.getRowDimension(); i++){
+            for(j=0; j<A.getColumnDimension(); j++){
+                scale = Math.max(scale, Math.abs(A.get(i, j)));
+                diff = Math.max(diff, Math.abs(A.get(i, j) - B.get(i, j)));
+            }
+        }
+        if(diff > TOLERANCE*Math.max(scale, Double.MIN_NORMAL)){
+            failures += 1;
+            System.out.println("  FAILED " + name + ": " + a.getName() + " and " +
+                    b.getName() + " differ by " + diff + " (largest element " + scale + ")");
+        }else{
+            System.out.println("  " + name + ": " + a.getName() + " and " +
+                    b.getName() + " agree to " + diff + " (largest element " + scale + ")");
+        }
+    }
+}